@@ -0,0 +1,198 @@
+package me.coley.recaf;
+
+import me.coley.recaf.search.*;
+import me.coley.recaf.workspace.JarResource;
+import me.coley.recaf.workspace.Workspace;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static me.coley.recaf.search.StringMatchMode.*;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Benchmarks for the Search api, for each {@link QueryType} over the test jars and generated
+ * jars with many classes.
+ * <br>
+ * {@link #visit()} searches every class with the workspace indexes, constant pool filter and method
+ * text cache disabled, so it measures the search visitors alone. {@link #search()} uses the default builder
+ * settings. Run with {@code -prof gc} to also measure the allocation rate.
+ *
+ * @author Matt
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+	private static final String SYNTHETIC = "synthetic-";
+	@Param({"calc.jar", "calls.jar", "inherit.jar", "synthetic-2000", "synthetic-20000"})
+	public String source;
+	@Param
+	public QueryType type;
+	private Workspace workspace;
+	private Path generated;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		Path path;
+		if (source.startsWith(SYNTHETIC)) {
+			generated = Files.createTempFile("recaf-bench", ".jar");
+			generate(generated, Integer.parseInt(source.substring(SYNTHETIC.length())));
+			path = generated;
+		} else {
+			path = new File(URLDecoder.decode(Thread.currentThread().getContextClassLoader()
+					.getResource(source).getFile(), "UTF-8")).toPath();
+		}
+		workspace = new Workspace(new JarResource(path));
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException {
+		if (generated != null)
+			Files.deleteIfExists(generated);
+	}
+
+	@Benchmark
+	public int visit() {
+		return builder().indexed(false).prefilter(false).cacheText(false).build().getAllResults().size();
+	}
+
+	@Benchmark
+	public int search() {
+		return builder().build().getAllResults().size();
+	}
+
+	/**
+	 * @return Single threaded search for a query of the benchmarked type, with the same read flags
+	 * as the matching search command.
+	 */
+	private SearchBuilder builder() {
+		SearchBuilder builder = SearchBuilder.in(workspace).parallel(1).skipDebug();
+		switch(type) {
+			case CLASS_NAME:
+				return builder.skipCode().query(new ClassNameQuery("1", CONTAINS));
+			case CLASS_INHERITANCE:
+				return builder.skipCode().query(new ClassInheritanceQuery(workspace, "java/lang/Object"));
+			case MEMBER_DEFINITION:
+				return builder.skipCode().query(new MemberDefinitionQuery(null, "get", null, STARTS_WITH));
+			case CLASS_REFERENCE:
+				// Local variable types are class references too
+				return SearchBuilder.in(workspace).parallel(1).query(new ClassReferenceQuery("java/lang/String"));
+			case MEMBER_REFERENCE:
+				return builder.query(new MemberReferenceQuery("java/lang/StringBuilder", "append", null, EQUALS));
+			case STRING:
+				return builder.query(new StringQuery("e", CONTAINS));
+			case VALUE:
+				return builder.query(new ValueQuery(1));
+			case INSTRUCTION_TEXT:
+				return builder.query(new InsnTextQuery(Collections.singletonList("INVOKEVIRTUAL"), STARTS_WITH));
+			default:
+				throw new IllegalStateException("Unsupported query type: " + type);
+		}
+	}
+
+	/**
+	 * Writes a jar of classes that extend and call each other, each with fields and a few methods
+	 * using strings, numbers and member references.
+	 *
+	 * @param path
+	 * 		Path to write the jar to.
+	 * @param count
+	 * 		Number of classes to generate.
+	 *
+	 * @throws IOException
+	 * 		When the jar cannot be written.
+	 */
+	private static void generate(Path path, int count) throws IOException {
+		try (OutputStream os = Files.newOutputStream(path); JarOutputStream jos = new JarOutputStream(os)) {
+			for (int i = 0; i < count; i++) {
+				String name = "gen/p" + (i % 50) + "/Gen" + i;
+				String parent = i % 10 == 0 ? "java/lang/Object" : "gen/p" + ((i - 1) % 50) + "/Gen" + (i - 1);
+				String other = "gen/p" + ((i * 7 + 3) % count % 50) + "/Gen" + ((i * 7 + 3) % count);
+				jos.putNextEntry(new JarEntry(name + ".class"));
+				jos.write(generateClass(name, parent, other, i));
+				jos.closeEntry();
+			}
+		}
+	}
+
+	private static byte[] generateClass(String name, String parent, String other, int index) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, name, null, parent, null);
+		cw.visitField(ACC_PUBLIC | ACC_STATIC, "count", "I", null, null).visitEnd();
+		cw.visitField(ACC_PRIVATE, "label", "Ljava/lang/String;", null, null).visitEnd();
+		// Constructor
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, parent, "<init>", "()V", false);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitLdcInsn("label of " + index);
+		mv.visitFieldInsn(PUTFIELD, name, "label", "Ljava/lang/String;");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		// Getter
+		mv = cw.visitMethod(ACC_PUBLIC, "getLabel", "()Ljava/lang/String;", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, name, "label", "Ljava/lang/String;");
+		mv.visitInsn(ARETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		// Method with a loop, string building and calls to another class
+		mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "compute", "(I)Ljava/lang/String;", null, null);
+		mv.visitCode();
+		Label start = new Label();
+		Label loop = new Label();
+		Label end = new Label();
+		mv.visitLabel(start);
+		mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+		mv.visitInsn(DUP);
+		mv.visitLdcInsn("compute " + index + ": ");
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "(Ljava/lang/String;)V", false);
+		mv.visitVarInsn(ASTORE, 1);
+		mv.visitInsn(ICONST_0);
+		mv.visitVarInsn(ISTORE, 2);
+		mv.visitLabel(loop);
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitVarInsn(ILOAD, 0);
+		mv.visitJumpInsn(IF_ICMPGE, end);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitLdcInsn(index * 31 + 17);
+		mv.visitInsn(IMUL);
+		mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(I)Ljava/lang/StringBuilder;", false);
+		mv.visitInsn(POP);
+		mv.visitFieldInsn(GETSTATIC, other, "count", "I");
+		mv.visitInsn(ICONST_1);
+		mv.visitInsn(IADD);
+		mv.visitFieldInsn(PUTSTATIC, other, "count", "I");
+		mv.visitIincInsn(2, 1);
+		mv.visitJumpInsn(GOTO, loop);
+		mv.visitLabel(end);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
+		mv.visitInsn(ARETURN);
+		mv.visitLocalVariable("sb", "Ljava/lang/StringBuilder;", null, start, end, 1);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+}
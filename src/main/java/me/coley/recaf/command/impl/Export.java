@@ -3,12 +3,10 @@ package me.coley.recaf.command.impl;
 import me.coley.recaf.command.ControllerCommand;
 import me.coley.recaf.plugin.PluginsManager;
 import me.coley.recaf.plugin.api.ExportInterceptorPlugin;
+import me.coley.recaf.util.ArchiveWriter;
 import me.coley.recaf.util.IOUtil;
 import me.coley.recaf.util.VMUtil;
-import me.coley.recaf.workspace.ClassResource;
-import me.coley.recaf.workspace.DirectoryResource;
-import me.coley.recaf.workspace.JavaResource;
-import me.coley.recaf.workspace.WarResource;
+import me.coley.recaf.workspace.*;
 import org.apache.commons.io.FileUtils;
 import org.objectweb.asm.ClassReader;
 import picocli.CommandLine;
@@ -22,14 +20,17 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.stream.Collectors;
 import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import static me.coley.recaf.util.CollectionUtil.copySet;
+import static me.coley.recaf.util.Log.debug;
 import static me.coley.recaf.util.Log.info;
 
 /**
@@ -45,15 +46,24 @@ public class Export extends ControllerCommand implements Callable<Void> {
 	public boolean shadeLibs;
 	@CommandLine.Option(names = { "--compression" }, description = "Enable compression.")
 	public boolean compress = true;
+	@CommandLine.Option(names = { "--level" }, description = "Compression level, from 0 to 9.")
+	public int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	@CommandLine.Option(names = { "--incremental" },
+			description = "Copy unmodified entries from the input archive without compressing them again.")
+	public boolean incremental;
 
 	/**
 	 * @return n/a
 	 *
 	 * @throws Exception
-	 * 		<ul><li>IOException, cannot write to output</li></ul>
+	 * 		<ul><li>IllegalStateException, invalid compression level</li>
+	 * 		<li>IOException, cannot write to output</li></ul>
 	 */
 	@Override
 	public Void call() throws Exception {
+		if (!ArchiveWriter.isValidLevel(compressionLevel))
+			throw new IllegalStateException("Invalid compression level " + compressionLevel +
+					", expected a value from 0 to 9");
 		// Ensure parent directory exists
 		File parentDir = output.getParentFile();
 		if (parentDir != null && !parentDir.isDirectory() && !parentDir.mkdirs())
@@ -91,8 +101,16 @@ public class Export extends ControllerCommand implements Callable<Void> {
 		// Write to archive
 		if (output.isDirectory() && primary instanceof DirectoryResource)
 			writeDirectory(output, outContent);
-		else
-			writeArchive(compress, output, outContent);
+		else if (incremental && primary instanceof ArchiveResource) {
+			Set<String> modifiedEntries = new HashSet<>(modifiedResources);
+			modifiedEntries.addAll(primary.getDirtyFiles());
+			String prefix = primary instanceof WarResource ? WarResource.WAR_CLASS_PREFIX : "";
+			for (String name : modifiedClasses)
+				modifiedEntries.add(prefix + name + ".class");
+			writeArchive(compress, compressionLevel, output, outContent,
+					((ArchiveResource) primary).getPath(), name -> !modifiedEntries.contains(name));
+		} else
+			writeArchive(compress, compressionLevel, output, outContent, null, null);
 		info("Saved to {}.\n - Modified classes: {}\n - Modified resources: {}",
 				output.getName(), modifiedClasses.size(), modifiedResources.size());
 		return null;
@@ -137,13 +155,81 @@ public class Export extends ControllerCommand implements Callable<Void> {
 	 * 		When the jar file cannot be written to.
 	 */
 	public static void writeArchive(boolean compress, File output, Map<String, byte[]> content) throws IOException {
+		writeArchive(compress, Deflater.DEFAULT_COMPRESSION, output, content, null, null);
+	}
+
+	/**
+	 * Writes a map to an archive. Entries are compressed on multiple threads.
+	 *
+	 * @param compress
+	 * 		Enable zip compression.
+	 * @param level
+	 * 		Compression level, see {@link Deflater#setLevel(int)}.
+	 * @param output
+	 * 		File location of jar.
+	 * @param content
+	 * 		Contents to write to location.
+	 * @param source
+	 * 		Archive to copy unmodified entries from, without compressing them again.
+	 * 		May be {@code null} to compress all entries.
+	 * @param unmodified
+	 * 		Filter for entry names that are not modified compared to the source archive.
+	 * 		The content is still compared against the source entry before it is copied.
+	 *
+	 * @throws IOException
+	 * 		When the jar file cannot be written to.
+	 */
+	public static void writeArchive(boolean compress, int level, File output, Map<String, byte[]> content,
+									Path source, Predicate<String> unmodified) throws IOException {
+		// Interceptors are run before handing the content off to worker threads
+		Collection<ExportInterceptorPlugin> interceptors =
+				PluginsManager.getInstance().ofType(ExportInterceptorPlugin.class);
+		SortedMap<String, byte[]> intercepted = new TreeMap<>();
+		for (Map.Entry<String, byte[]> entry : content.entrySet()) {
+			String key = entry.getKey();
+			byte[] out = entry.getValue();
+			for (ExportInterceptorPlugin interceptor : interceptors) {
+				out = interceptor.intercept(key, out);
+			}
+			intercepted.put(key, out);
+		}
+		// Archives over 4GB need zip64 entry sizes and offsets, which only the stream writer supports
+		if (!ArchiveWriter.canWrite(intercepted)) {
+			writeArchiveStream(compress, level, output, intercepted);
+			return;
+		}
+		ArchiveWriter writer = new ArchiveWriter(compress, level, Runtime.getRuntime().availableProcessors());
+		MappedArchive archive = null;
+		// Cannot copy from the file being overwritten
+		if (source != null && unmodified != null && Files.isRegularFile(source) &&
+				!(output.exists() && Files.isSameFile(source, output.toPath()))) {
+			try {
+				archive = MappedArchive.open(source);
+				writer.setSource(archive, unmodified);
+			} catch (IOException ex) {
+				debug("Cannot copy entries from '{}', compressing all entries instead: {}",
+						source.getFileName(), ex.getMessage());
+			}
+		}
+		try {
+			writer.write(output.toPath(), intercepted);
+			if (archive != null)
+				debug("Copied {} unmodified entries from '{}'", writer.getCopiedCount(), source.getFileName());
+		} finally {
+			if (archive != null)
+				archive.close();
+		}
+	}
+
+	private static void writeArchiveStream(boolean compress, int level, File output, Map<String, byte[]> content)
+			throws IOException {
 		String extension = IOUtil.getExtension(output.toPath());
 		// Use buffered streams, reduce overall file write operations
 		OutputStream os = new BufferedOutputStream(Files.newOutputStream(output.toPath()), 1048576);
 		try (ZipOutputStream jos = ("zip".equals(extension)) ? new ZipOutputStream(os) :
 				/* Let's assume it's a jar */ new JarOutputStream(os)) {
 			VMUtil.patchZipOutput(jos);
-			PluginsManager pluginsManager = PluginsManager.getInstance();
+			jos.setLevel(level);
 			Set<String> dirsVisited = new HashSet<>();
 			// Contents is iterated in sorted order (because 'archiveContent' is TreeMap).
 			// This allows us to insert directory entries before file entries of that directory occur.
@@ -151,9 +237,6 @@ public class Export extends ControllerCommand implements Callable<Void> {
 			for (Map.Entry<String, byte[]> entry : content.entrySet()) {
 				String key = entry.getKey();
 				byte[] out = entry.getValue();
-				for (ExportInterceptorPlugin interceptor : pluginsManager.ofType(ExportInterceptorPlugin.class)) {
-					out = interceptor.intercept(key, out);
-				}
 				// Write directories for upcoming entries if necessary
 				// - Ugly, but does the job.
 				if (key.contains("/")) {
@@ -2,12 +2,19 @@ package me.coley.recaf.command.impl;
 
 import me.coley.recaf.command.ControllerCommand;
 import me.coley.recaf.command.MetaCommand;
+import me.coley.recaf.command.completion.FileCompletions;
 import me.coley.recaf.command.completion.WorkspaceNameCompletions;
+import me.coley.recaf.parse.bytecode.parser.NumericParser;
 import me.coley.recaf.search.*;
+import me.coley.recaf.util.RegexUtil;
 import picocli.CommandLine;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
@@ -27,7 +34,8 @@ import static me.coley.recaf.util.Log.*;
 				Search.MemberUsage.class,
 				Search.Text.class,
 				Search.Value.class,
-				Search.Disass.class
+				Search.Disass.class,
+				Search.Batch.class
 		}
 )
 public class Search extends MetaCommand implements Callable<Void> {
@@ -47,13 +55,26 @@ public class Search extends MetaCommand implements Callable<Void> {
 		return null;
 	}
 
+	/**
+	 * Sub-command that searches with a single query, so that it can also be used in a
+	 * {@link Batch batch search}.
+	 *
+	 * @author Matt
+	 */
+	public interface QueryCommand {
+		/**
+		 * @return Query of the command's parameters.
+		 */
+		Query getQuery();
+	}
+
 	/**
 	 * Command for searching for class declarations.
 	 *
 	 * @author Matt
 	 */
 	@CommandLine.Command(name = "class", description = "Find class definitions.")
-	public static class ClassName extends ControllerCommand implements Callable<SearchCollector> {
+	public static class ClassName extends ControllerCommand implements Callable<SearchCollector>, QueryCommand {
 		@CommandLine.Parameters(index = "0",  description = "The string matching mode.")
 		public StringMatchMode mode;
 		@CommandLine.Parameters(index = "1",  description = "The name to search for.",
@@ -64,9 +85,14 @@ public class Search extends MetaCommand implements Callable<Void> {
 		public SearchCollector call() throws Exception {
 			return SearchBuilder.in(getWorkspace())
 					.skipDebug().skipCode()
-					.query(new ClassNameQuery(name, mode))
+					.query(getQuery())
 					.build();
 		}
+
+		@Override
+		public Query getQuery() {
+			return new ClassNameQuery(name, mode);
+		}
 	}
 
 	/**
@@ -75,7 +101,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 	 * @author Matt
 	 */
 	@CommandLine.Command(name = "classtree", description = "Find classes extending the given name.")
-	public static class ClassInheritance extends ControllerCommand implements Callable<SearchCollector> {
+	public static class ClassInheritance extends ControllerCommand implements Callable<SearchCollector>, QueryCommand {
 		@CommandLine.Parameters(index = "0",  description = "The class name to search for.",
 				completionCandidates = WorkspaceNameCompletions.class)
 		public String name;
@@ -84,9 +110,14 @@ public class Search extends MetaCommand implements Callable<Void> {
 		public SearchCollector call() throws Exception {
 			return SearchBuilder.in(getWorkspace())
 					.skipDebug().skipCode()
-					.query(new ClassInheritanceQuery(getWorkspace(), name))
+					.query(getQuery())
 					.build();
 		}
+
+		@Override
+		public Query getQuery() {
+			return new ClassInheritanceQuery(getWorkspace(), name);
+		}
 	}
 
 	/**
@@ -95,7 +126,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 	 * @author Matt
 	 */
 	@CommandLine.Command(name = "member", description = "Find member definitions.")
-	public static class Member extends ControllerCommand implements Callable<SearchCollector> {
+	public static class Member extends ControllerCommand implements Callable<SearchCollector>, QueryCommand {
 		@CommandLine.Parameters(index = "0",  description = "The string matching mode.")
 		public StringMatchMode mode;
 		@CommandLine.Parameters(index = "1",  description = "The class containing the member.",
@@ -110,9 +141,14 @@ public class Search extends MetaCommand implements Callable<Void> {
 		public SearchCollector call() throws Exception {
 			return SearchBuilder.in(getWorkspace())
 					.skipDebug().skipCode()
-					.query(new MemberDefinitionQuery(owner, name, desc, mode))
+					.query(getQuery())
 					.build();
 		}
+
+		@Override
+		public Query getQuery() {
+			return new MemberDefinitionQuery(owner, name, desc, mode);
+		}
 	}
 
 	/**
@@ -121,7 +157,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 	 * @author Matt
 	 */
 	@CommandLine.Command(name = "cref", description = "Find class references.")
-	public static class ClassUsage extends ControllerCommand implements Callable<SearchCollector> {
+	public static class ClassUsage extends ControllerCommand implements Callable<SearchCollector>, QueryCommand {
 		@CommandLine.Parameters(index = "0",  description = "The class name.",
 				completionCandidates = WorkspaceNameCompletions.class)
 		public String name;
@@ -129,9 +165,14 @@ public class Search extends MetaCommand implements Callable<Void> {
 		@Override
 		public SearchCollector call() throws Exception {
 			return SearchBuilder.in(getWorkspace())
-					.query(new ClassReferenceQuery(name))
+					.query(getQuery())
 					.build();
 		}
+
+		@Override
+		public Query getQuery() {
+			return new ClassReferenceQuery(name);
+		}
 	}
 
 	/**
@@ -140,7 +181,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 	 * @author Matt
 	 */
 	@CommandLine.Command(name = "mref", description = "Find member references.")
-	public static class MemberUsage extends ControllerCommand implements Callable<SearchCollector> {
+	public static class MemberUsage extends ControllerCommand implements Callable<SearchCollector>, QueryCommand {
 		@CommandLine.Parameters(index = "0",  description = "The string matching mode.")
 		public StringMatchMode mode;
 		@CommandLine.Option(names = "--owner", description = "The class name.",
@@ -159,9 +200,16 @@ public class Search extends MetaCommand implements Callable<Void> {
 			}
 			return SearchBuilder.in(getWorkspace())
 					.skipDebug()
-					.query(new MemberReferenceQuery(owner, name, desc, mode))
+					.query(getQuery())
 					.build();
 		}
+
+		@Override
+		public Query getQuery() {
+			if(owner == null && name == null && desc == null)
+				throw new IllegalArgumentException("Please give at least one parameter.");
+			return new MemberReferenceQuery(owner, name, desc, mode);
+		}
 	}
 
 	/**
@@ -170,7 +218,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 	 * @author Matt
 	 */
 	@CommandLine.Command(name = "string", description = "Find strings.")
-	public static class Text extends ControllerCommand implements Callable<SearchCollector> {
+	public static class Text extends ControllerCommand implements Callable<SearchCollector>, QueryCommand {
 		@CommandLine.Parameters(index = "0",  description = "The string matching mode.")
 		public StringMatchMode mode;
 		@CommandLine.Parameters(index = "1", description = "The text to match.")
@@ -180,9 +228,14 @@ public class Search extends MetaCommand implements Callable<Void> {
 		public SearchCollector call() throws Exception {
 			return SearchBuilder.in(getWorkspace())
 					.skipDebug()
-					.query(new StringQuery(text, mode))
+					.query(getQuery())
 					.build();
 		}
+
+		@Override
+		public Query getQuery() {
+			return new StringQuery(text, mode);
+		}
 	}
 
 	/**
@@ -191,7 +244,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 	 * @author Matt
 	 */
 	@CommandLine.Command(name = "value", description = "Find value constants.")
-	public static class Value extends ControllerCommand implements Callable<SearchCollector> {
+	public static class Value extends ControllerCommand implements Callable<SearchCollector>, QueryCommand {
 		@CommandLine.Parameters(index = "0",  description = "The value to search for.")
 		public Number value;
 
@@ -199,9 +252,14 @@ public class Search extends MetaCommand implements Callable<Void> {
 		public SearchCollector call() throws Exception {
 			return SearchBuilder.in(getWorkspace())
 					.skipDebug()
-					.query(new ValueQuery(value))
+					.query(getQuery())
 					.build();
 		}
+
+		@Override
+		public Query getQuery() {
+			return new ValueQuery(value);
+		}
 	}
 
 	/**
@@ -210,7 +268,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 	 * @author Matt
 	 */
 	@CommandLine.Command(name = "code", description = "Find code matches.")
-	public static class Disass extends ControllerCommand implements Callable<SearchCollector> {
+	public static class Disass extends ControllerCommand implements Callable<SearchCollector>, QueryCommand {
 		@CommandLine.Parameters(index = "0",  description = "The string matching mode.")
 		public StringMatchMode mode;
 		@CommandLine.Parameters(index = "1", description = "The lines of code to match, separated by ':'.")
@@ -223,8 +281,71 @@ public class Search extends MetaCommand implements Callable<Void> {
 			// ... Although it will still always o "ALOAD this" where possible
 			return SearchBuilder.in(getWorkspace())
 					.skipDebug()
-					.query(new InsnTextQuery(Arrays.asList(text.split(":")), mode))
+					.query(getQuery())
 					.build();
 		}
+
+		@Override
+		public Query getQuery() {
+			return new InsnTextQuery(Arrays.asList(text.split(":")), mode);
+		}
+	}
+
+	/**
+	 * Command for running many searches in a single pass over the workspace.
+	 *
+	 * @author Matt
+	 */
+	@CommandLine.Command(name = "batch", description = "Run the searches listed in a file together.")
+	public static class Batch extends ControllerCommand implements Callable<List<BatchSearch.QueryResults>> {
+		@CommandLine.Parameters(index = "0",  description = "File with one search sub-command per line.",
+				completionCandidates = FileCompletions.class)
+		public Path queryFile;
+
+		/**
+		 * @return Results of each search in the file.
+		 *
+		 * @throws Exception
+		 * 		<ul><li>IllegalStateException, Invalid query file given</li>
+		 * 		<li>IllegalArgumentException, Invalid search in query file</li></ul>
+		 */
+		@Override
+		public List<BatchSearch.QueryResults> call() throws Exception {
+			if(queryFile == null || !Files.exists(queryFile))
+				throw new IllegalStateException("No query file provided!");
+			BatchSearch batch = BatchSearch.in(getWorkspace());
+			List<String> lines = Files.readAllLines(queryFile, StandardCharsets.UTF_8);
+			for(String line : lines) {
+				line = line.trim();
+				// Skip empty lines and comments
+				if(line.isEmpty() || line.startsWith("#"))
+					continue;
+				batch.query(line, parse(line));
+			}
+			return batch.search();
+		}
+
+		private Query parse(String line) {
+			String[] split = RegexUtil.wordSplit(line);
+			CommandLine.Command comm = Search.class.getDeclaredAnnotation(CommandLine.Command.class);
+			for(Class<?> sub : comm.subcommands()) {
+				if(!QueryCommand.class.isAssignableFrom(sub) ||
+						!sub.getDeclaredAnnotation(CommandLine.Command.class).name().equals(split[0]))
+					continue;
+				try {
+					QueryCommand command = (QueryCommand) sub.newInstance();
+					((ControllerCommand) command).setController(getController());
+					CommandLine cmd = new CommandLine(command);
+					cmd.registerConverter(Number.class, s -> new NumericParser().visit(0, s).getValue());
+					cmd.parseArgs(Arrays.copyOfRange(split, 1, split.length));
+					return command.getQuery();
+				} catch(ReflectiveOperationException ex) {
+					throw new IllegalStateException("Failed to create search command: " + split[0], ex);
+				} catch(CommandLine.ParameterException ex) {
+					throw new IllegalArgumentException("Invalid search '" + line + "': " + ex.getMessage(), ex);
+				}
+			}
+			throw new IllegalArgumentException("No such search: '" + split[0] + "'");
+		}
 	}
 }
@@ -5,6 +5,7 @@ import me.coley.recaf.util.IOUtil;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.zip.Deflater;
 
 /**
  * Private configuration that are intended for user-access.
@@ -48,6 +49,63 @@ public class ConfBackend extends Config {
 	 */
 	@Conf("backend.compressexport")
 	public boolean compress = true;
+	/**
+	 * Compression level of exported archives, from 0 to 9. {@code -1} uses the default level.
+	 */
+	@Conf("backend.compressionlevel")
+	public int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	/**
+	 * Copy unmodified entries from the input archive on export instead of compressing them again.
+	 */
+	@Conf("backend.incrementalexport")
+	public boolean incrementalExport;
+	/**
+	 * Read and validate archive classes on multiple threads.
+	 */
+	@Conf("backend.parallelload")
+	public boolean parallelLoad;
+	/**
+	 * Read archives through memory-mapped files instead of zip streams. Entries are read straight from
+	 * the mapping, but loaded classes and files are still copied to the heap. Only libraries loaded with
+	 * {@link #lazyLibraries} defer reading classes until they are requested. The mapping is released once
+	 * it is garbage collected, so on Windows the archive stays locked until then.
+	 */
+	@Conf("backend.mappedload")
+	public boolean mappedLoad;
+	/**
+	 * Only read library classes once they are requested. Classes are indexed by the name in their header,
+	 * and the first entry of each name is used. Invalid classes are patched when they are read, the same
+	 * way they are when loading normally. Entries that still cannot be parsed are dropped instead of being
+	 * added as files, and the number of library classes drops as they are found.
+	 */
+	@Conf("backend.lazylibraries")
+	public boolean lazyLibraries;
+	/**
+	 * Memory budget for the bytecode of lazily read library classes in megabytes, see {@link #lazyLibraries}.
+	 * The least recently used classes are dropped beyond this, and read again when requested.
+	 */
+	@Conf("backend.lazycachememory")
+	public long lazyCacheMemory = 64;
+	/**
+	 * Memory budget for compressed history states in megabytes. Older states are moved to disk beyond this.
+	 */
+	@Conf("backend.historymemory")
+	public long historyMemory = 64;
+	/**
+	 * Cache loaded archive content so unchanged archives open faster.
+	 */
+	@Conf("backend.snapshotcache")
+	public boolean snapshotCache;
+	/**
+	 * Search classes on multiple threads.
+	 */
+	@Conf("backend.parallelsearch")
+	public boolean parallelSearch;
+	/**
+	 * Apply mappings to classes on multiple threads.
+	 */
+	@Conf("backend.parallelremap")
+	public boolean parallelRemap;
 
 	ConfBackend() {
 		super("backend");
@@ -51,6 +51,8 @@ public abstract class Controller implements Runnable {
 		Workspace old = this.workspace;
 		if (old != null) {
 			plugins.forEach(plugin -> plugin.onClosed(old));
+			if (old != workspace)
+				old.close();
 		}
 		this.workspace = workspace;
 		Recaf.setCurrentWorkspace(workspace);
@@ -194,6 +196,8 @@ public abstract class Controller implements Runnable {
 				.ofType(ExitPlugin.class)
 				.forEach(plugin -> plugin.onExit(this));
 		config().save();
+		if (workspace != null)
+			workspace.close();
 		ThreadUtil.shutdown();
 		if (!InstrumentationResource.isActive()) {
 			System.exit(0);
@@ -5,6 +5,7 @@ import me.coley.recaf.command.MetaCommand;
 import me.coley.recaf.command.impl.*;
 import me.coley.recaf.control.Controller;
 import me.coley.recaf.parse.bytecode.parser.NumericParser;
+import me.coley.recaf.search.BatchSearch;
 import me.coley.recaf.search.SearchCollector;
 import me.coley.recaf.search.SearchResult;
 import me.coley.recaf.util.Log;
@@ -212,6 +213,8 @@ public class HeadlessController extends Controller {
 		Consumer<SearchCollector> printResults = r -> {
 			for (SearchResult res : r.getAllResults())
 				info("{}\n{}", res.getContext(), res.toString());
+			if (r.getPrunedCount() > 0)
+				debug("Skipped {} classes that could not match", r.getPrunedCount());
 		};
 		//
 		registerHandler(Disassemble.class, v -> {
@@ -232,6 +235,14 @@ public class HeadlessController extends Controller {
 		registerHandler(Search.Text.class, printResults);
 		registerHandler(Search.Value.class, printResults);
 		registerHandler(Search.Disass.class, printResults);
+		registerHandler(Search.Batch.class, r -> {
+			for (BatchSearch.QueryResults query : r) {
+				info("{}: {} results (pass {}, {}ms)", query.getLabel(), query.getResults().size(),
+						query.getPass() + 1, query.getTime());
+				for (SearchResult res : query.getResults())
+					info("{}\n{}", res.getContext(), res.toString());
+			}
+		});
 		registerHandler(Quit.class, v -> running = false);
 		return success;
 	}
@@ -2,28 +2,61 @@ package me.coley.recaf.graph.inheritance;
 
 import me.coley.recaf.graph.*;
 import me.coley.recaf.util.ClassUtil;
+import me.coley.recaf.util.struct.BulkBiConsumer;
+import me.coley.recaf.util.struct.ListeningMap;
+import me.coley.recaf.util.struct.Pair;
 import me.coley.recaf.workspace.Workspace;
 import org.objectweb.asm.ClassReader;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static java.util.stream.Stream.*;
-
 /**
  * Graph model to represent the class inheritance of a loaded input. <br>
- * The graph is generative, meaning the graph's vertices and edges are dynamically generated when
- * requested. The relations are not stored due to their modifiable nature.
+ * The direct parents and children of classes are stored and kept up to date as classes in the
+ * primary resource are put or removed. Parents of library, classpath and phantom classes are read
+ * once when first requested. Transitive relations such as all parents or all descendants of a class
+ * are cached until the hierarchy changes, as are the results of {@link #getCommon(String, String)}.
+ * <br>
+ * Only classes in the primary resource are recorded as children of their parents.
  *
  * @author Matt
  */
 public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
+	private static final String OBJECT = "java/lang/Object";
+	private static final String[] NO_PARENTS = new String[0];
+	private static final String[] UNKNOWN = new String[0];
 	/**
 	 * Map of parent to children names.
 	 */
-	private final Map<String, Set<String>> descendents = new HashMap<>();
+	private final Map<String, Set<String>> descendents = new ConcurrentHashMap<>();
+	/**
+	 * Map of primary class names to their direct parents.
+	 */
+	private final Map<String, String[]> primaryParents = new ConcurrentHashMap<>();
+	/**
+	 * Map of other class names to their direct parents. Reset when libraries or phantoms change.
+	 */
+	private volatile Map<String, String[]> externalParents = new ConcurrentHashMap<>();
+	/**
+	 * Transitive relations, replaced whenever the hierarchy changes.
+	 */
+	private volatile Relations relations = new Relations();
+	private final BiConsumer<String, byte[]> putListener = BulkBiConsumer.of(this::onPut, this::onPutAll);
+	private final Consumer<Object> removeListener = this::onRemove;
+	private final BiConsumer<String, byte[]> phantomPutListener =
+			BulkBiConsumer.of((k, v) -> resetExternal(), m -> resetExternal());
+	private final Consumer<Object> phantomRemoveListener = k -> resetExternal();
+	private final AtomicLong commonHits = new AtomicLong();
+	private final AtomicLong commonMisses = new AtomicLong();
+	private volatile int libraryCount;
 
 	/**
 	 * Constructs a hierarchy graph from the given workspace.
@@ -33,9 +66,27 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 */
 	public HierarchyGraph(Workspace workspace) {
 		super(workspace);
+		ListeningMap<String, byte[]> classes = workspace.getPrimary().getClasses();
+		classes.getPutListeners().add(putListener);
+		classes.getRemoveListeners().add(removeListener);
+		ListeningMap<String, byte[]> phantoms = workspace.getPhantoms().getClasses();
+		phantoms.getPutListeners().add(phantomPutListener);
+		phantoms.getRemoveListeners().add(phantomRemoveListener);
 		refresh();
 	}
 
+	/**
+	 * Stop tracking changes to the workspace's primary classes and phantoms.
+	 */
+	public void close() {
+		ListeningMap<String, byte[]> classes = getWorkspace().getPrimary().getClasses();
+		classes.getPutListeners().remove(putListener);
+		classes.getRemoveListeners().remove(removeListener);
+		ListeningMap<String, byte[]> phantoms = getWorkspace().getPhantoms().getClasses();
+		phantoms.getPutListeners().remove(phantomPutListener);
+		phantoms.getRemoveListeners().remove(phantomRemoveListener);
+	}
+
 	@Override
 	public HierarchyVertex getVertex(ClassReader key) {
 		return getVertexFast(key);
@@ -53,7 +104,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Inheritance hierarchy containing the given class.
 	 */
 	public Set<HierarchyVertex> getHierarchy(String name) {
-		return getHierarchy(getVertex(name));
+		return toVertices(getHierarchyNames(name));
 	}
 
 	/**
@@ -65,8 +116,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	public Set<HierarchyVertex> getHierarchy(HierarchyVertex vertex) {
 		if(vertex == null)
 			return Collections.emptySet();
-		ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
-		return builder.build(vertex);
+		return toVertices(getHierarchyNames(vertex));
 	}
 
 	/**
@@ -76,7 +126,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Inheritance hierarchy containing the given class.
 	 */
 	public Set<String> getHierarchyNames(String name) {
-		return getHierarchyNames(getVertex(name));
+		return getComponent(name).names;
 	}
 
 	/**
@@ -86,7 +136,9 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Inheritance hierarchy containing the given class.
 	 */
 	public Set<String> getHierarchyNames(HierarchyVertex vertex) {
-		return getHierarchy(vertex).stream().map(v -> v.getData().getClassName()).collect(Collectors.toSet());
+		if(vertex == null)
+			return Collections.emptySet();
+		return getHierarchyNames(vertex.getClassName());
 	}
 
 	/**
@@ -96,10 +148,11 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Direct descendants of the class.
 	 */
 	public Stream<String> getDescendants(String name) {
-		if (descendents.containsKey(name))
-			return descendents.get(name).stream();
+		Set<String> children = descendents.get(name);
+		if (children != null)
+			return children.stream();
 		// Empty stream
-		return empty();
+		return Stream.empty();
 	}
 
 	/**
@@ -109,11 +162,13 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return All descendants of the class.
 	 */
 	public Stream<String> getAllDescendants(String name) {
-		Set<String> descendentNames = descendents.get(name);
-		if (descendentNames == null)
-			return empty();
-		return concat(descendentNames.stream(),
-				descendentNames.stream().flatMap(this::getAllDescendants));
+		Relations current = relations;
+		Set<String> names = current.descendants.get(name);
+		if (names == null) {
+			names = Collections.unmodifiableSet(collectDescendants(name, n -> false));
+			current.descendants.putIfAbsent(name, names);
+		}
+		return names.stream();
 	}
 
 	/**
@@ -125,12 +180,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return All descendants of the class, up until a point specified by the check condition.
 	 */
 	public Stream<String> getAllDescendantsWithBreakCondition(String name, Predicate<String> breakCheck) {
-		Set<String> descendentNames = descendents.get(name);
-		if (descendentNames == null)
-			return empty();
-		descendentNames.removeIf(breakCheck);
-		return concat(descendentNames.stream(),
-				descendentNames.stream().flatMap(d -> getAllDescendantsWithBreakCondition(d, breakCheck)));
+		return collectDescendants(name, breakCheck).stream();
 	}
 
 	/**
@@ -140,11 +190,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Direct parents of the class.
 	 */
 	public Stream<String> getParents(String name) {
-		HierarchyVertex vert = getVertex(name);
-		if (vert != null)
-			return getParents(vert);
-		// Empty stream
-		return empty();
+		return Arrays.stream(parentsOf(name));
 	}
 
 	/**
@@ -154,9 +200,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Direct parents of the class.
 	 */
 	public Stream<String> getParents(HierarchyVertex vertex) {
-		return concat(
-				of(vertex.getData().getSuperName()),
-				of(vertex.getData().getInterfaces()));
+		return getParents(vertex.getClassName());
 	}
 
 	/**
@@ -166,8 +210,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return All parents of the class.
 	 */
 	public Stream<String> getAllParents(String name) {
-		return (getParents(name).map(this::getAllParents)
-				.reduce(getParents(name), Stream::concat));
+		return getAncestors(name).stream();
 	}
 
 	/**
@@ -179,31 +222,45 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Common parent of the classes.
 	 */
 	public String getCommon(String first, String second) {
-		// Full upwards hierarchy for the first
-		Set<String> firstParents = getAllParents(first).collect(Collectors.toSet());
-		firstParents.add(first);
-		// Base case
-		if (firstParents.contains(second))
-			return second;
-		// Iterate over second's parents via breadth-first-search
-		Queue<String> queue = new LinkedList<>();
-		queue.add(second);
-		do {
-			// Item to fetch parents of
-			String next = queue.poll();
-			if (next == null || next.equals("java/lang/Object"))
-				break;
-			for (String parent : getParents(next).collect(Collectors.toSet())) {
-				// Parent in the set of visited classes? Then its valid.
-				if(firstParents.contains(parent))
-					return parent;
-				// Queue up the parent
-				if (!parent.equals("java/lang/Object"))
-					queue.add(parent);
-			}
-		} while(!queue.isEmpty());
-		// Fallback option
-		return "java/lang/Object";
+		Relations current = relations;
+		// Semicolons cannot appear in class names
+		String key = first + ';' + second;
+		String common = current.common.get(key);
+		if (common != null) {
+			commonHits.incrementAndGet();
+			return common;
+		}
+		commonMisses.incrementAndGet();
+		common = computeCommon(first, second);
+		current.common.putIfAbsent(key, common);
+		return common;
+	}
+
+	/**
+	 * @param ancestor
+	 * 		Potential parent class name.
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return {@code true} if the class inherits from the given parent, directly or indirectly.
+	 */
+	public boolean isAncestor(String ancestor, String name) {
+		Relations current = relations;
+		return hasId(current, getAncestorIds(current, name), ancestor);
+	}
+
+	/**
+	 * @return Number of {@link #getCommon(String, String)} calls answered from the cache.
+	 */
+	public long getCommonCacheHits() {
+		return commonHits.get();
+	}
+
+	/**
+	 * @return Number of {@link #getCommon(String, String)} calls that had to be computed.
+	 */
+	public long getCommonCacheMisses() {
+		return commonMisses.get();
 	}
 
 	/**
@@ -220,15 +277,8 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * defines the given method,
 	 */
 	public boolean isLibrary(String owner, String name, String desc) {
-		// Get classes that are considered "library" classes (not included in Input)
-		Stream<HierarchyVertex> hierarchy = getHierarchy(owner).stream();
-		Stream<HierarchyVertex> libClasses = hierarchy.filter(vertex -> !getWorkspace()
-				.getPrimaryClassNames().contains(vertex.getClassName()));
-		// Check if the library classes have a matching method.
-		return libClasses
-					.map(ClassVertex::getData)
-					.flatMap(cr -> ClassUtil.getMethodDefs(cr).stream())
-					.anyMatch(method -> name.equals(method.getKey()) && desc.equals(method.getValue()));
+		// Check if the library classes in the hierarchy have a matching method.
+		return getLibraryMethods(getComponent(owner)).contains(name + desc);
 	}
 
 	/**
@@ -268,27 +318,331 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 */
 	public boolean areLinked(String name1, String name2) {
 		// Check if name2 is in the same hierarchy as name1.
-		return getHierarchy(name1).stream()
-				.anyMatch(vertex -> name2.equals(vertex.getClassName()));
+		return getHierarchyNames(name1).contains(name2);
 	}
 
 	// ============================== UTILITY =================================== //
 
 	/**
-	 * Populate {@link #descendents} map.
+	 * Rebuild the hierarchy from the primary resource. Changes made through the primary resource's
+	 * class map are tracked automatically, so this is only needed when the map's backing is replaced.
 	 */
-	public void refresh() {
-		// TODO: Call this when the inheritance tree is modified.
-		//  - Already called by mappings
-		//  - But later if user changes a class name WITHOUT remappping this needs to be called too
+	public synchronized void refresh() {
 		descendents.clear();
-		for (ClassReader reader : getWorkspace().getPrimaryClassReaders()) {
-			String superName = reader.getSuperName();
-			if (superName == null || !superName.equals("java/lang/Object"))
-				descendents.computeIfAbsent(superName, k -> new HashSet<>()).add(reader.getClassName());
-			for (String inter : reader.getInterfaces()) {
-				descendents.computeIfAbsent(inter, k -> new HashSet<>()).add(reader.getClassName());
+		primaryParents.clear();
+		for (Map.Entry<String, byte[]> e : getWorkspace().getPrimary().getClasses().entrySet())
+			link(e.getKey(), readParents(e.getValue()));
+		resetExternal();
+	}
+
+	private void onPut(String name, byte[] value) {
+		synchronized(this) {
+			link(name, readParents(value));
+		}
+		changed();
+	}
+
+	private void onPutAll(Map<String, byte[]> items) {
+		synchronized(this) {
+			items.forEach((name, value) -> link(name, readParents(value)));
+		}
+		changed();
+	}
+
+	private void onRemove(Object key) {
+		synchronized(this) {
+			unlink((String) key);
+		}
+		changed();
+	}
+
+	/**
+	 * Record a primary class's parents, replacing any previous record.
+	 */
+	private void link(String name, String[] parents) {
+		unlink(name);
+		primaryParents.put(name, parents);
+		for (String parent : parents)
+			if (!parent.equals(OBJECT))
+				descendents.computeIfAbsent(parent, k -> ConcurrentHashMap.newKeySet()).add(name);
+	}
+
+	private void unlink(String name) {
+		String[] parents = primaryParents.remove(name);
+		if (parents == null)
+			return;
+		for (String parent : parents) {
+			Set<String> children = descendents.get(parent);
+			if (children != null && children.remove(name) && children.isEmpty())
+				descendents.remove(parent);
+		}
+	}
+
+	/**
+	 * Drop cached transitive relations.
+	 */
+	private void changed() {
+		relations = new Relations();
+	}
+
+	/**
+	 * Drop the parents read from non-primary classes along with cached transitive relations.
+	 */
+	private void resetExternal() {
+		libraryCount = getWorkspace().getLibraries().size();
+		externalParents = new ConcurrentHashMap<>();
+		changed();
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Direct parents of the class, or {@link #UNKNOWN} if the class cannot be found.
+	 */
+	private String[] parentsOf(String name) {
+		String[] parents = primaryParents.get(name);
+		if (parents != null)
+			return parents;
+		// Libraries can be added to the workspace after the graph was built
+		if (libraryCount != getWorkspace().getLibraries().size())
+			resetExternal();
+		Map<String, String[]> external = externalParents;
+		parents = external.get(name);
+		if (parents == null) {
+			ClassReader reader = readerOf(name);
+			parents = reader == null ? UNKNOWN : readParents(reader);
+			external.put(name, parents);
+		}
+		return parents;
+	}
+
+	private boolean isKnown(String name) {
+		return parentsOf(name) != UNKNOWN;
+	}
+
+	private Set<String> getAncestors(String name) {
+		Relations current = relations;
+		Set<String> names = current.ancestors.get(name);
+		if (names != null)
+			return names;
+		names = new LinkedHashSet<>();
+		Queue<String> queue = new ArrayDeque<>();
+		queue.add(name);
+		while (!queue.isEmpty()) {
+			for (String parent : parentsOf(queue.poll())) {
+				if (!names.add(parent))
+					continue;
+				// Reuse already computed results
+				Set<String> cached = current.ancestors.get(parent);
+				if (cached != null)
+					names.addAll(cached);
+				else
+					queue.add(parent);
+			}
+		}
+		names = Collections.unmodifiableSet(names);
+		current.ancestors.putIfAbsent(name, names);
+		return names;
+	}
+
+	/**
+	 * @param current
+	 * 		Relations generation to assign ids in.
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Sorted ids of all parents of the class, not including the class itself.
+	 */
+	private int[] getAncestorIds(Relations current, String name) {
+		int[] ids = current.ancestorIds.get(name);
+		if (ids == null) {
+			Set<String> ancestors = getAncestors(name);
+			ids = new int[ancestors.size()];
+			int i = 0;
+			for (String parent : ancestors)
+				ids[i++] = current.idOf(parent);
+			Arrays.sort(ids);
+			current.ancestorIds.putIfAbsent(name, ids);
+		}
+		return ids;
+	}
+
+	private static boolean hasId(Relations current, int[] ids, String name) {
+		// Names without an id are not the parent of any class yet
+		Integer id = current.typeIds.get(name);
+		return id != null && Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	private String computeCommon(String first, String second) {
+		Relations current = relations;
+		// Full upwards hierarchy for the first
+		int[] firstParents = getAncestorIds(current, first);
+		// Base case
+		if (second.equals(first) || hasId(current, firstParents, second))
+			return second;
+		// Iterate over second's parents via breadth-first-search
+		Set<String> visited = new HashSet<>();
+		Queue<String> queue = new ArrayDeque<>();
+		queue.add(second);
+		do {
+			// Item to fetch parents of
+			String next = queue.poll();
+			if (next.equals(OBJECT))
+				break;
+			for (String parent : parentsOf(next)) {
+				// Parent in the set of visited classes? Then its valid.
+				if (parent.equals(first) || hasId(current, firstParents, parent))
+					return parent;
+				// Queue up the parent
+				if (!parent.equals(OBJECT) && visited.add(parent))
+					queue.add(parent);
+			}
+		} while(!queue.isEmpty());
+		// Fallback option
+		return OBJECT;
+	}
+
+	private Set<String> collectDescendants(String name, Predicate<String> breakCheck) {
+		Set<String> names = new LinkedHashSet<>();
+		Queue<String> queue = new ArrayDeque<>();
+		queue.add(name);
+		while (!queue.isEmpty()) {
+			Set<String> children = descendents.get(queue.poll());
+			if (children == null)
+				continue;
+			for (String child : children)
+				if (!breakCheck.test(child) && names.add(child))
+					queue.add(child);
+		}
+		return names;
+	}
+
+	private Component getComponent(String name) {
+		Relations current = relations;
+		Component component = current.components.get(name);
+		if (component != null)
+			return component;
+		if (!isKnown(name))
+			return Component.EMPTY;
+		// Walk both parent and child edges
+		Set<String> names = new HashSet<>();
+		Queue<String> queue = new ArrayDeque<>();
+		names.add(name);
+		queue.add(name);
+		while (!queue.isEmpty()) {
+			String next = queue.poll();
+			for (String parent : parentsOf(next))
+				if (isKnown(parent) && names.add(parent))
+					queue.add(parent);
+			Set<String> children = descendents.get(next);
+			if (children != null)
+				for (String child : children)
+					if (isKnown(child) && names.add(child))
+						queue.add(child);
+		}
+		component = new Component(Collections.unmodifiableSet(names));
+		for (String member : names)
+			current.components.putIfAbsent(member, component);
+		return component;
+	}
+
+	/**
+	 * @param component
+	 * 		Set of connected classes.
+	 *
+	 * @return Name and descriptor of methods defined by non-primary classes in the component.
+	 */
+	private Set<String> getLibraryMethods(Component component) {
+		Set<String> methods = component.libraryMethods;
+		if (methods == null) {
+			methods = new HashSet<>();
+			for (String name : component.names) {
+				// Get classes that are considered "library" classes (not included in Input)
+				if (primaryParents.containsKey(name))
+					continue;
+				ClassReader reader = readerOf(name);
+				if (reader != null)
+					for (Pair<String, String> method : ClassUtil.getMethodDefs(reader))
+						methods.add(method.getKey() + method.getValue());
 			}
+			component.libraryMethods = methods;
+		}
+		return methods;
+	}
+
+	private Set<HierarchyVertex> toVertices(Set<String> names) {
+		Set<HierarchyVertex> vertices = new HashSet<>();
+		for (String name : names) {
+			ClassReader reader = readerOf(name);
+			if (reader != null)
+				vertices.add(new HierarchyVertex(this, reader));
+		}
+		return vertices;
+	}
+
+	private ClassReader readerOf(String name) {
+		// Try loading from workspace
+		ClassReader reader = getWorkspace().getClassReader(name);
+		if (reader != null)
+			return reader;
+		// Try loading from runtime
+		return ClassUtil.fromRuntime(name);
+	}
+
+	private static String[] readParents(byte[] value) {
+		try {
+			return readParents(new ClassReader(value));
+		} catch(Exception ex) {
+			// Not a parsable class, so it has no known parents
+			return NO_PARENTS;
+		}
+	}
+
+	private static String[] readParents(ClassReader reader) {
+		String superName = reader.getSuperName();
+		String[] interfaces = reader.getInterfaces();
+		if (superName == null)
+			return interfaces.length == 0 ? NO_PARENTS : interfaces;
+		String[] parents = new String[interfaces.length + 1];
+		parents[0] = superName;
+		System.arraycopy(interfaces, 0, parents, 1, interfaces.length);
+		return parents;
+	}
+
+	/**
+	 * Transitive relations computed from the current direct relations.
+	 */
+	private static final class Relations {
+		private final Map<String, Set<String>> ancestors = new ConcurrentHashMap<>();
+		private final Map<String, Set<String>> descendants = new ConcurrentHashMap<>();
+		private final Map<String, Component> components = new ConcurrentHashMap<>();
+		private final Map<String, int[]> ancestorIds = new ConcurrentHashMap<>();
+		private final Map<String, String> common = new ConcurrentHashMap<>();
+		/**
+		 * Dense ids of the classes that are parents of another class in this generation.
+		 */
+		private final Map<String, Integer> typeIds = new ConcurrentHashMap<>();
+		private final AtomicInteger nextTypeId = new AtomicInteger();
+
+		private int idOf(String name) {
+			Integer id = typeIds.get(name);
+			if (id == null)
+				id = typeIds.computeIfAbsent(name, k -> nextTypeId.getAndIncrement());
+			return id;
+		}
+	}
+
+	/**
+	 * Set of classes connected through inheritance.
+	 */
+	private static final class Component {
+		private static final Component EMPTY = new Component(Collections.emptySet());
+		private final Set<String> names;
+		private volatile Set<String> libraryMethods;
+
+		private Component(Set<String> names) {
+			this.names = names;
 		}
 	}
 }
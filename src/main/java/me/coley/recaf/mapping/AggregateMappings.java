@@ -0,0 +1,167 @@
+package me.coley.recaf.mapping;
+
+import org.objectweb.asm.commons.Remapper;
+
+import java.util.*;
+
+/**
+ * Aggregate of every mapping applied to a workspace. Keys use the original names, so the mappings
+ * can be applied to the original classes to get the same result again.
+ * <br>
+ * The current names of the mapped classes and members are indexed along with the mappings, and
+ * both are updated as new mappings are applied. So applying new mappings costs as much as the new
+ * mappings themselves, rather than the size of the aggregate.
+ *
+ * @author Matt
+ */
+public class AggregateMappings {
+	private final Map<String, String> mappings = new TreeMap<>();
+	// <Current name in key format, Original keys>
+	private final Map<String, List<String>> preimages = new HashMap<>();
+	// <Current class name, Original class name>
+	private final Map<String, String> classPreimages = new HashMap<>();
+	private final Remapper preimageRemapper = new Remapper() {
+		@Override
+		public String map(String internalName) {
+			return getClassPreimage(internalName);
+		}
+	};
+
+	/**
+	 * Constructs empty aggregate mappings.
+	 */
+	public AggregateMappings() {
+	}
+
+	/**
+	 * @param existing
+	 * 		Existing aggregate ASM mappings.
+	 */
+	public AggregateMappings(Map<String, String> existing) {
+		existing.forEach(this::put);
+	}
+
+	/**
+	 * @return ASM formatted mappings from the original names to the current names.
+	 */
+	public Map<String, String> getMappings() {
+		return Collections.unmodifiableMap(mappings);
+	}
+
+	/**
+	 * Applies new mappings in ASM format to the aggregate. Keys of the new mappings use the current
+	 * names, and are traced back to the original names. Transitive renames ({@code a -> b -> c}) are
+	 * compressed to their ultimate result ({@code a -> c}).
+	 *
+	 * @param additional
+	 * 		Additional ASM mappings, using the current names.
+	 *
+	 * @return Mappings that were put into the aggregate, keyed by the original names.
+	 */
+	public Map<String, String> apply(Map<String, String> additional) {
+		// Resolved against the aggregate before any of the new mappings are put into it
+		Map<String, String> updates = new HashMap<>();
+		for (Map.Entry<String, String> entry : additional.entrySet()) {
+			String key = entry.getKey();
+			String value = entry.getValue();
+			int dot = key.indexOf('.');
+			if (dot >= 0) {
+				/* With members we need to take special care:
+				   The user might have renamed com/example/MyClass to com/example/MyAwesomeClass before and now renamed
+				   com/example/MyAwesomeClass.MY_CONSTANT to com/example/MyAwesomeClass.MY_AWESOME_CONSTANT.
+				   In this case we want to create the mapping "com/example/MyClass.MY_CONSTANT MY_AWESOME_CONSTANT". */
+				String className = AsmMappingUtils.getClassNameFromAsmKey(key);
+				// Constructors and invoke-dynamic calls are not mapped
+				if (className == null)
+					continue;
+				// if we have a preimage for the class, apply the mapping to that preimage class name
+				// otherwise use given name
+				String targetClassName = getPreimage(className);
+				if (targetClassName == null)
+					targetClassName = className;
+				String memberInfo = key.substring(dot + 1);
+				int x;
+				if ((x = memberInfo.indexOf(' ')) >= 0) {
+					String fieldDesc = memberInfo.substring(x + 1);
+					key = targetClassName + "." + memberInfo.substring(0, x) + " " +
+							preimageRemapper.mapDesc(fieldDesc);
+				} else if ((x = memberInfo.indexOf('(')) >= 0) {
+					String methodDesc = memberInfo.substring(x);
+					key = targetClassName + "." + memberInfo.substring(0, x) +
+							preimageRemapper.mapMethodDesc(methodDesc);
+				} else {
+					key = targetClassName + "." + memberInfo;
+				}
+			}
+			// check if this class/member has been mapped before and transform the mapping accordingly
+			String preimage = getPreimage(key);
+			updates.put(preimage == null ? key : preimage, value);
+		}
+		updates.forEach(this::put);
+		return updates;
+	}
+
+	/**
+	 * @param current
+	 * 		Current name of a class or member, in ASM key format.
+	 *
+	 * @return Original key of the mapping that renamed the class or member to the current name,
+	 * or {@code null} if it is not renamed.
+	 */
+	private String getPreimage(String current) {
+		List<String> keys = preimages.get(current);
+		if (keys == null)
+			return null;
+		if (keys.size() > 1)
+			throw new IllegalStateException("Reverse mapping of " + current
+					+ " gave more than 1 result: " + String.join(", ", keys));
+		return keys.get(0);
+	}
+
+	/**
+	 * @param name
+	 * 		Current internal class name.
+	 *
+	 * @return Original name of the class, or {@code null} if it is not renamed.
+	 */
+	private String getClassPreimage(String name) {
+		String preimage = classPreimages.get(name);
+		if (preimage == null) {
+			// Inner classes of renamed outer classes are renamed with them
+			int index = name.lastIndexOf('$');
+			if (index > 1) {
+				String outer = getClassPreimage(name.substring(0, index));
+				if (outer != null)
+					return outer + name.substring(index);
+			}
+		}
+		return preimage;
+	}
+
+	private void put(String key, String value) {
+		String old = mappings.put(key, value);
+		if (old != null)
+			unindex(key, old);
+		index(key, value);
+	}
+
+	private void index(String key, String value) {
+		String current = AsmMappingUtils.toKeyFormat(key, value);
+		if (current == null)
+			return;
+		preimages.computeIfAbsent(current, k -> new ArrayList<>(1)).add(key);
+		if (key.indexOf('.') < 0)
+			classPreimages.put(value, key);
+	}
+
+	private void unindex(String key, String value) {
+		String current = AsmMappingUtils.toKeyFormat(key, value);
+		if (current == null)
+			return;
+		List<String> keys = preimages.get(current);
+		if (keys != null && keys.remove(key) && keys.isEmpty())
+			preimages.remove(current);
+		if (key.indexOf('.') < 0)
+			classPreimages.remove(value, key);
+	}
+}
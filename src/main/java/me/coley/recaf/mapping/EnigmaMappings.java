@@ -1,8 +1,8 @@
 package me.coley.recaf.mapping;
 
-import me.coley.recaf.util.StringUtil;
 import me.coley.recaf.workspace.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -39,12 +39,12 @@ public class EnigmaMappings extends FileMappings {
 	}
 
 	@Override
-	protected Map<String, String> parse(String text) {
+	protected Map<String, String> parse(BufferedReader reader) throws IOException {
 		Map<String, String> map = new HashMap<>();
-		String[] lines = StringUtil.splitNewline(text);
 		int line = 0;
 		Stack<String> currentClass = new Stack<>();
-		for(String lineStr : lines) {
+		String lineStr;
+		while ((lineStr = reader.readLine()) != null) {
 			line++;
 			String lineStrTrim = lineStr.trim();
 			int strIndent = lineStr.indexOf(lineStrTrim) + 1;
@@ -77,7 +77,7 @@ public class EnigmaMappings extends FileMappings {
 							throw new IllegalArgumentException(FAIL + "could not map field, no class context");
 						String currentField = removeNonePackage(args[1]);
 						String renamedField = removeNonePackage(args[2]);
-						map.put(currentClass.peek() + "." + currentField, renamedField);
+						map.put(currentClass.peek() + "." + currentField, dedup(renamedField));
 						break;
 					case "METHOD":
 						// Check if no longer within inner-class scope
@@ -94,7 +94,7 @@ public class EnigmaMappings extends FileMappings {
 						if (args.length >= 4) {
 							String renamedMethod = args[2];
 							String methodType = args[3];
-							map.put(currentClass.peek() + "." + currentMethod + methodType, renamedMethod);
+							map.put(currentClass.peek() + "." + currentMethod + methodType, dedup(renamedMethod));
 						}
 						break;
 					case "ARG":
@@ -1,20 +1,30 @@
 package me.coley.recaf.mapping;
 
 import me.coley.recaf.workspace.Workspace;
-import org.apache.commons.io.FileUtils;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Extended base for mappings that load mappings from a given file.
  * Implementations will create file-loading logic for different mapping types.
+ * <br>
+ * Files are parsed line by line as they are read, so the text of large mapping files is never
+ * held in memory all at once.
  *
  * @author Matt
  */
 public abstract class FileMappings extends Mappings {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private Map<String, String> tokens;
 	/**
 	 * @param path
 	 * 		A path to a text file containing mappings.
@@ -54,8 +64,12 @@ public abstract class FileMappings extends Mappings {
 	 * 		Thrown if the file could not be read.
 	 */
 	protected void read(File file) throws IOException {
-		String text = FileUtils.readFileToString(file, "UTF-8");
-		setMappings(parse(text));
+		try (BufferedReader reader = newReader(file.toPath())) {
+			tokens = new HashMap<>();
+			setMappings(parse(reader));
+		} finally {
+			tokens = null;
+		}
 	}
 
 	/**
@@ -68,5 +82,51 @@ public abstract class FileMappings extends Mappings {
 	 *
 	 * @return ASM formatted mappings.
 	 */
-	protected abstract Map<String, String> parse(String text);
+	protected Map<String, String> parse(String text) {
+		try {
+			return parse(new BufferedReader(new StringReader(text)));
+		} catch(IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Parses the mappings into the standard ASM format. See the
+	 * {@link org.objectweb.asm.commons.SimpleRemapper#SimpleRemapper(Map)} docs for more
+	 * information.
+	 *
+	 * @param reader
+	 * 		Reader of the mappings text, to be read line by line.
+	 *
+	 * @return ASM formatted mappings.
+	 *
+	 * @throws IOException
+	 * 		Thrown if the text could not be read.
+	 */
+	protected abstract Map<String, String> parse(BufferedReader reader) throws IOException;
+
+	/**
+	 * Mapped names are often repeated, such as the names of overriding methods. So while a file is
+	 * read, parsers share a single instance of each name.
+	 *
+	 * @param token
+	 * 		Name read from the mappings.
+	 *
+	 * @return Shared instance of the name.
+	 */
+	protected String dedup(String token) {
+		if (tokens == null)
+			return token;
+		String existing = tokens.putIfAbsent(token, token);
+		return existing == null ? token : existing;
+	}
+
+	private static BufferedReader newReader(Path path) throws IOException {
+		// Malformed input is replaced rather than failing the whole file
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		return new BufferedReader(Channels.newReader(channel, decoder, BUFFER_SIZE), BUFFER_SIZE);
+	}
 }
@@ -1,12 +1,13 @@
 package me.coley.recaf.mapping;
 
-import me.coley.recaf.util.StringUtil;
 import me.coley.recaf.workspace.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * JADX deobfuscation mapping file implementation.
@@ -15,6 +16,9 @@ import java.util.Map;
  */
 public class JadxMappings extends FileMappings {
 	private static final String FAIL = "Invalid JADX mappings, ";
+	private static final Pattern SPLITTER = Pattern.compile("[\\s=:]+");
+	// All "." except the last one
+	private static final Pattern OWNER_DOTS = Pattern.compile("\\.(?=.+\\..+$)");
 
 	/**
 	 * Constructs mappings from a given file.
@@ -32,17 +36,17 @@ public class JadxMappings extends FileMappings {
 	}
 
 	@Override
-	protected Map<String, String> parse(String text) {
+	protected Map<String, String> parse(BufferedReader reader) throws IOException {
 		// Example:
 		// c android.support.a.b.a = C0005a
 		// f android.support.a.b.a.a:Ljava/lang/Object; = f3a
 		// m android.support.a.a.a.a(Landroid/app/Activity;[Ljava/lang/String;I)V = m0a
 		Map<String, String> map = new HashMap<>();
-		String[] lines = StringUtil.splitNewline(text);
 		int line = 0;
-		for (String lineStr : lines) {
+		String lineStr;
+		while ((lineStr = reader.readLine()) != null) {
 			line++;
-			String[] args = lineStr.trim().split("[\\s=:]+");
+			String[] args = SPLITTER.split(lineStr.trim());
 			String type = args[0];
 			try {
 				switch (type) {
@@ -60,13 +64,13 @@ public class JadxMappings extends FileMappings {
 						// 2: field-type
 						// 3: renamed
 						// Replace all "." except last one
-						map.put(args[1].replaceAll("\\.(?=.+\\..+$)", "/"), args[3]);
+						map.put(OWNER_DOTS.matcher(args[1]).replaceAll("/"), dedup(args[3]));
 						break;
 					case "m":
 						// 1: class-name.method-name + method-desc
 						// 2: renamed
 						// Replace all "." except last one
-						map.put(args[1].replaceAll("\\.(?=.+\\..+$)", "/"), args[2]);
+						map.put(OWNER_DOTS.matcher(args[1]).replaceAll("/"), dedup(args[2]));
 						break;
 					default:
 						break;
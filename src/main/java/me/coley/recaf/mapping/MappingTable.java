@@ -0,0 +1,258 @@
+package me.coley.recaf.mapping;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Structured view of ASM formatted mappings. Mappings are grouped by class, and the members of
+ * each class by name and then by descriptor, so lookups do not need to build keys. The table does
+ * not keep the mappings it was created from, so they are only held once.
+ * <br>
+ * Lookups that need the workspace hierarchy, such as members inherited from a parent class, are
+ * remembered in the table by {@link SimpleRecordingRemapper}. These are only valid for the
+ * workspace the table is applied to, and are reset with {@link #resetResolved()}.
+ *
+ * @author Matt
+ */
+public final class MappingTable {
+	/**
+	 * Descriptor key of field mappings that match fields of any descriptor.
+	 */
+	private static final String ANY_DESC = "";
+	/**
+	 * Resolved value of lookups without a mapping. Compared by identity.
+	 */
+	static final String NOT_MAPPED = new String("");
+	private final Map<String, ClassEntry> classes = new HashMap<>();
+	private final Set<String> fieldNames = new HashSet<>();
+	private final Set<String> methodNames = new HashSet<>();
+	private final Map<String, String> resolvedClasses = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Map<String, String>>> resolvedFields = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Map<String, String>>> resolvedMethods = new ConcurrentHashMap<>();
+	// Constructor and static-initializer keys, which are never mapped
+	private final Map<String, String> skipped = new HashMap<>(0);
+
+	/**
+	 * @param mappings
+	 * 		ASM formatted mappings. See
+	 *        {@link org.objectweb.asm.commons.SimpleRemapper#SimpleRemapper(Map)}.
+	 */
+	public MappingTable(Map<String, String> mappings) {
+		// Owners and descriptors are repeated across many keys, so the table keeps one copy of each
+		Map<String, String> tokens = new HashMap<>();
+		for (Map.Entry<String, String> e : mappings.entrySet()) {
+			String key = e.getKey();
+			// Don't map constructors/static-initializers
+			if (key.indexOf('<') >= 0) {
+				skipped.put(key, e.getValue());
+				continue;
+			}
+			int dot = key.indexOf('.');
+			if (dot < 0) {
+				entry(key).name = e.getValue();
+				continue;
+			}
+			String owner = dedup(tokens, key.substring(0, dot));
+			int descStart = key.indexOf('(', dot);
+			boolean method = descStart > 0;
+			String desc = ANY_DESC;
+			if (method) {
+				desc = dedup(tokens, key.substring(descStart));
+			} else if ((descStart = key.indexOf(' ', dot)) > 0) {
+				// Descriptor qualified field format
+				desc = dedup(tokens, key.substring(descStart + 1));
+			}
+			String name = dedup(tokens, key.substring(dot + 1, descStart > 0 ? descStart : key.length()));
+			ClassEntry entry = entry(owner);
+			(method ? entry.methods : entry.fields).computeIfAbsent(name, n -> new HashMap<>(2))
+					.put(desc, e.getValue());
+			(method ? methodNames : fieldNames).add(name);
+		}
+	}
+
+	/**
+	 * @return ASM formatted mappings the table was created from. The map is built from the table on
+	 * each call.
+	 */
+	public Map<String, String> getMappings() {
+		Map<String, String> mappings = new HashMap<>(skipped);
+		for (Map.Entry<String, ClassEntry> e : classes.entrySet()) {
+			String owner = e.getKey();
+			ClassEntry entry = e.getValue();
+			if (entry.name != null)
+				mappings.put(owner, entry.name);
+			entry.fields.forEach((name, descs) -> descs.forEach((desc, mapped) ->
+					mappings.put(desc.equals(ANY_DESC) ? owner + '.' + name : owner + '.' + name + ' ' + desc,
+							mapped)));
+			entry.methods.forEach((name, descs) -> descs.forEach((desc, mapped) ->
+					mappings.put(owner + '.' + name + desc, mapped)));
+		}
+		return mappings;
+	}
+
+	/**
+	 * @param name
+	 * 		Internal class name.
+	 *
+	 * @return Mapped name of the class, or {@code null} if the class is not mapped.
+	 */
+	public String mapClass(String name) {
+		ClassEntry entry = classes.get(name);
+		return entry == null ? null : entry.name;
+	}
+
+	/**
+	 * @param owner
+	 * 		Internal name of the field's owner.
+	 * @param name
+	 * 		Field name.
+	 * @param desc
+	 * 		Field descriptor, or {@code null} to only match mappings of any descriptor.
+	 *
+	 * @return Mapped name of the field declared in the owner, or {@code null} if the field is
+	 * not mapped in the owner.
+	 */
+	public String mapField(String owner, String name, String desc) {
+		ClassEntry entry = classes.get(owner);
+		Map<String, String> descs = entry == null ? null : entry.fields.get(name);
+		return descs == null ? null : descs.get(desc == null ? ANY_DESC : desc);
+	}
+
+	/**
+	 * @param owner
+	 * 		Internal name of the method's owner.
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 *
+	 * @return Mapped name of the method declared in the owner, or {@code null} if the method is
+	 * not mapped in the owner.
+	 */
+	public String mapMethod(String owner, String name, String desc) {
+		ClassEntry entry = classes.get(owner);
+		Map<String, String> descs = entry == null ? null : entry.methods.get(name);
+		return descs == null ? null : descs.get(desc);
+	}
+
+	/**
+	 * @param name
+	 * 		Field name.
+	 *
+	 * @return {@code true} if a field of the name is mapped in any class.
+	 */
+	public boolean hasField(String name) {
+		return fieldNames.contains(name);
+	}
+
+	/**
+	 * @param name
+	 * 		Method name.
+	 *
+	 * @return {@code true} if a method of the name is mapped in any class.
+	 */
+	public boolean hasMethod(String name) {
+		return methodNames.contains(name);
+	}
+
+	/**
+	 * @return Internal names of the classes that are mapped or own mapped members.
+	 */
+	public Set<String> getOwners() {
+		return Collections.unmodifiableSet(classes.keySet());
+	}
+
+	/**
+	 * @param owner
+	 * 		Internal name of a class.
+	 *
+	 * @return Names of the mapped fields declared in the class.
+	 */
+	public Set<String> getFieldNames(String owner) {
+		ClassEntry entry = classes.get(owner);
+		return entry == null ? Collections.emptySet() : Collections.unmodifiableSet(entry.fields.keySet());
+	}
+
+	/**
+	 * @param owner
+	 * 		Internal name of a class.
+	 *
+	 * @return Names of the mapped methods declared in the class.
+	 */
+	public Set<String> getMethodNames(String owner) {
+		ClassEntry entry = classes.get(owner);
+		return entry == null ? Collections.emptySet() : Collections.unmodifiableSet(entry.methods.keySet());
+	}
+
+	/**
+	 * Clears resolved lookups, required when the workspace has changed since they were resolved.
+	 */
+	public void resetResolved() {
+		resolvedClasses.clear();
+		resolvedFields.clear();
+		resolvedMethods.clear();
+	}
+
+	/**
+	 * @param name
+	 * 		Internal class name.
+	 *
+	 * @return Resolved mapping of the class, {@link #NOT_MAPPED} if it has no mapping,
+	 * or {@code null} if it has not been resolved.
+	 */
+	String getResolvedClass(String name) {
+		return resolvedClasses.get(name);
+	}
+
+	void putResolvedClass(String name, String mapped) {
+		resolvedClasses.put(name, orNotMapped(mapped));
+	}
+
+	/**
+	 * @param method
+	 * 		Flag for if the member is a method.
+	 * @param owner
+	 * 		Internal name of the class the member is referenced by.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor, or {@code null} for fields matched by name only.
+	 *
+	 * @return Resolved mapping of the member, {@link #NOT_MAPPED} if it has no mapping,
+	 * or {@code null} if it has not been resolved.
+	 */
+	String getResolvedMember(boolean method, String owner, String name, String desc) {
+		Map<String, Map<String, String>> names = (method ? resolvedMethods : resolvedFields).get(owner);
+		Map<String, String> descs = names == null ? null : names.get(name);
+		return descs == null ? null : descs.get(desc == null ? ANY_DESC : desc);
+	}
+
+	void putResolvedMember(boolean method, String owner, String name, String desc, String mapped) {
+		(method ? resolvedMethods : resolvedFields)
+				.computeIfAbsent(owner, o -> new ConcurrentHashMap<>())
+				.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+				.put(desc == null ? ANY_DESC : desc, orNotMapped(mapped));
+	}
+
+	private ClassEntry entry(String name) {
+		return classes.computeIfAbsent(name, n -> new ClassEntry());
+	}
+
+	private static String orNotMapped(String mapped) {
+		return mapped == null ? NOT_MAPPED : mapped;
+	}
+
+	private static String dedup(Map<String, String> tokens, String token) {
+		String existing = tokens.putIfAbsent(token, token);
+		return existing == null ? token : existing;
+	}
+
+	/**
+	 * Mappings of a class and its members.
+	 */
+	private static final class ClassEntry {
+		private final Map<String, Map<String, String>> fields = new HashMap<>(4);
+		private final Map<String, Map<String, String>> methods = new HashMap<>(4);
+		private String name;
+	}
+}
@@ -1,7 +1,10 @@
 package me.coley.recaf.mapping;
 
+import me.coley.recaf.Recaf;
+import me.coley.recaf.control.Controller;
 import me.coley.recaf.plugin.PluginsManager;
 import me.coley.recaf.plugin.api.ClassVisitorPlugin;
+import me.coley.recaf.search.NameIndex;
 import me.coley.recaf.workspace.*;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -9,21 +12,29 @@ import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.commons.ClassRemapper;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
+import static me.coley.recaf.util.Log.*;
+
 /**
  * Base for mapppings.
  *
  * @author Matt
  */
 public class Mappings {
-	private Map<String, String> mappings;
+	private MappingTable mappingTable;
+	private Map<String, String> classMappings;
 	private Map<String, String> reverseClassMappings;
 	private Workspace workspace;
 	private boolean checkFieldHierarchy;
 	private boolean checkMethodHierarchy;
 	private boolean checkWonkyOuterRelation;
 	private boolean clearDebugInfo;
+	private boolean incremental;
+	private int threads = isParallelRemapEnabled() ? Runtime.getRuntime().availableProcessors() : 1;
 
 	/**
 	 * @param workspace
@@ -38,10 +49,10 @@ public class Mappings {
 	 * {@link org.objectweb.asm.commons.SimpleRemapper#SimpleRemapper(Map)} docs for more
 	 * information.
 	 *
-	 * @return ASM formatted mappings.
+	 * @return ASM formatted mappings. Built from the {@link #getMappingTable() table} on each call.
 	 */
 	public Map<String, String> getMappings() {
-		return mappings;
+		return mappingTable == null ? null : mappingTable.getMappings();
 	}
 
 	/**
@@ -49,15 +60,25 @@ public class Mappings {
 	 * @param mappings Mappings to use.
 	 */
 	public void setMappings(Map<String, String> mappings) {
-		this.mappings = mappings;
-		// Save inverted class name mappings for class-writing (requires ancestor analysis)
+		this.mappingTable = new MappingTable(mappings);
+		// Save class name mappings and their inverse for class-writing (requires ancestor analysis)
 		// - Allows us to not have to recompile in ancestral order
-		reverseClassMappings = mappings.entrySet()
+		classMappings = mappings.entrySet()
 				.stream()
 				.filter(e -> !e.getKey().contains("."))
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+		reverseClassMappings = classMappings.entrySet()
+				.stream()
 				.collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
 	}
 
+	/**
+	 * @return Structured table of the {@link #getMappings() mappings}, used when applying them.
+	 */
+	public MappingTable getMappingTable() {
+		return mappingTable;
+	}
+
 	/**
 	 * The inverted mappings of {@link #getMappings()}.
 	 *
@@ -139,6 +160,45 @@ public class Mappings {
 		this.clearDebugInfo = clearDebugInfo;
 	}
 
+	/**
+	 * Visiting every class to find the ones referencing the mappings is wasteful when only a few
+	 * names are mapped, such as when renaming from the UI. Enabling this flag will only visit the
+	 * classes of the workspace's primary resource that mention the mapped names in their constant
+	 * pool, found with the {@link NameIndex}. All other classes are left as they are.
+	 *
+	 * @return Flag for if only classes mentioning the mapped names should be visited.
+	 */
+	public boolean doIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * @param incremental
+	 * 		Flag for if only classes mentioning the mapped names should be visited.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * @return Number of threads to apply mappings with.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Classes are remapped independently of each other, so they can be remapped in parallel.
+	 * Class visitor plugins are not expected to be thread-safe, so classes are remapped on a
+	 * single thread while any are loaded.
+	 *
+	 * @param threads
+	 * 		Number of threads to apply mappings with.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
 	/**
 	 * Applies mappings to all classes in the given resource. Return value is the map of updated
 	 * classes.
@@ -149,56 +209,169 @@ public class Mappings {
 	 * @return Map of updated classes. Keys of the old names, values of the updated code.
 	 */
 	public Map<String, byte[]> accept(JavaResource resource) {
-		// Collect: <OldName, NewBytecode>
+		long start = System.currentTimeMillis();
+		// Lookups resolved in a prior pass may refer to classes that have since been renamed
+		mappingTable.resetResolved();
+		// The name index only covers the primary resource
+		List<byte[]> classes = incremental && resource == workspace.getPrimary() ?
+				getAffectedClasses(resource) : new ArrayList<>(resource.getClasses().values());
+		// Collect: <OldName, <NewName, NewBytecode>>
+		Map<String, Remapped> remappedClasses = new HashMap<>();
+		int threads = PluginsManager.getInstance().ofType(ClassVisitorPlugin.class).isEmpty() ? this.threads : 1;
+		if (threads <= 1 || classes.size() < 2)
+			accept(remappedClasses, classes);
+		else
+			acceptParallel(remappedClasses, classes, threads);
+		long remapped = System.currentTimeMillis();
+		// Update the resource's classes map, renamed classes are removed first so that
+		// the new classes are put in a single bulk update
 		Map<String, byte[]> updated = new HashMap<>();
-		for(Map.Entry<String, byte[]> e : resource.getClasses().entrySet()) {
-			byte[] old = e.getValue();
-			ClassReader cr = new ClassReader(old);
-			accept(updated, cr);
-		}
-		// Update the resource's classes map
-		for(Map.Entry<String, byte[]> e : updated.entrySet()) {
+		Map<String, byte[]> renamed = new HashMap<>();
+		for(Map.Entry<String, Remapped> e : remappedClasses.entrySet()) {
 			String oldKey = e.getKey();
-			String newKey = new ClassReader(e.getValue()).getClassName();
-			if (!oldKey.equals(newKey))
+			Remapped value = e.getValue();
+			if (!oldKey.equals(value.name))
 				resource.getClasses().remove(oldKey);
-			resource.getClasses().put(newKey, e.getValue());
+			renamed.put(value.name, value.value);
+			updated.put(oldKey, value.value);
 		}
+		resource.getClasses().putAll(renamed);
+		long stored = System.currentTimeMillis();
 		// Tell the workspace we've finished renaming classes
 		workspace.onPrimaryDefinitionChanges(updated.keySet());
-		// Update hierarchy graph
-		workspace.getHierarchyGraph().refresh();
 		// Update saved mappings
 		workspace.updateAggregateMappings(getMappings(), updated.keySet());
+		long end = System.currentTimeMillis();
+		debug("Remapped {} of {} classes on {} thread(s) in {}ms (remap: {}ms, update: {}ms, workspace: {}ms)",
+				updated.size(), classes.size(), threads, end - start, remapped - start, stored - remapped,
+				end - stored);
 		return updated;
 	}
 
 	/**
-	 * Applies mappings to the given class and puts the modified bytecode in the map.
+	 * @param resource
+	 * 		Primary resource of the workspace.
+	 *
+	 * @return Classes in the resource that mention a mapped class, or the name of a mapped member
+	 * along with its owner.
+	 */
+	private List<byte[]> getAffectedClasses(JavaResource resource) {
+		NameIndex index = workspace.getNameIndex();
+		Set<String> affected = new HashSet<>();
+		Deque<String> mappedClasses = new ArrayDeque<>();
+		for (String owner : mappingTable.getOwners()) {
+			if (mappingTable.mapClass(owner) != null)
+				mappedClasses.add(owner);
+			for (String name : mappingTable.getFieldNames(owner))
+				addMemberReferences(affected, index, owner, name, checkFieldHierarchy);
+			for (String name : mappingTable.getMethodNames(owner))
+				addMemberReferences(affected, index, owner, name, checkMethodHierarchy);
+		}
+		// Inner classes with unrelated names are mapped along with the outer class their inner class
+		// attribute mentions, so they are treated as mapped classes too
+		SimpleRecordingRemapper mapper = checkWonkyOuterRelation ? new SimpleRecordingRemapper(mappingTable,
+				checkFieldHierarchy, checkMethodHierarchy, true, workspace) : null;
+		Set<String> visited = new HashSet<>(mappedClasses);
+		while (!mappedClasses.isEmpty()) {
+			for (String name : index.getClasses(mappedClasses.poll())) {
+				affected.add(name);
+				if (mapper != null && visited.add(name) && mapper.map(name) != null)
+					mappedClasses.add(name);
+			}
+		}
+		List<byte[]> classes = new ArrayList<>(affected.size());
+		for (String name : affected) {
+			byte[] value = resource.getClasses().get(name);
+			if (value != null)
+				classes.add(value);
+		}
+		return classes;
+	}
+
+	private void addMemberReferences(Set<String> affected, NameIndex index, String owner, String name,
+									 boolean hierarchy) {
+		Set<String> classes = index.getClasses(name);
+		// Inherited members can be referenced through any child of the owner, including children of
+		// library classes that are not in the hierarchy graph, so only the name can be checked.
+		// Invoke-dynamic names have no owner at all.
+		if (hierarchy || owner.isEmpty()) {
+			affected.addAll(classes);
+			return;
+		}
+		// Otherwise references and declarations of the member mention its owner
+		Set<String> ownerReferences = index.getClasses(owner);
+		Set<String> smaller = classes.size() < ownerReferences.size() ? classes : ownerReferences;
+		Set<String> larger = smaller == classes ? ownerReferences : classes;
+		for (String cls : smaller)
+			if (larger.contains(cls))
+				affected.add(cls);
+	}
+
+	private void accept(Map<String, Remapped> remapped, List<byte[]> classes) {
+		for(byte[] old : classes) {
+			ClassReader cr = new ClassReader(old);
+			byte[] value = accept(cr);
+			// Read the new name here, so that it is done by the workers of a parallel remap
+			if (value != null)
+				remapped.put(cr.getClassName(), new Remapped(new ClassReader(value).getClassName(), value));
+		}
+	}
+
+	private void acceptParallel(Map<String, Remapped> remapped, List<byte[]> classes, int threads) {
+		// Workers collect their own results, which are merged once all classes are remapped
+		int partitionSize = Math.max(1, classes.size() / (threads * 4));
+		List<Future<Map<String, Remapped>>> partitions = new ArrayList<>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int i = 0; i < classes.size(); i += partitionSize) {
+				List<byte[]> partition = classes.subList(i, Math.min(classes.size(), i + partitionSize));
+				partitions.add(pool.submit(() -> {
+					Map<String, Remapped> partial = new HashMap<>();
+					accept(partial, partition);
+					return partial;
+				}));
+			}
+			for (Future<Map<String, Remapped>> partition : partitions)
+				remapped.putAll(partition.get());
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while applying mappings", ex);
+		} catch(ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IllegalStateException("Failed to apply mappings", cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Applies mappings to the given class.
 	 *
-	 * @param updated
-	 * 		Map to collect updated values in.
 	 * @param cr
 	 * 		Class bytecode reader.
+	 *
+	 * @return Modified bytecode, or {@code null} if the class has no references to the mappings.
 	 */
-	private void accept(Map<String, byte[]> updated, ClassReader cr) {
+	private byte[] accept(ClassReader cr) {
 		try {
-			accept(updated, cr, ClassReader.SKIP_FRAMES, ClassWriter.COMPUTE_FRAMES);
+			return accept(cr, ClassReader.SKIP_FRAMES, ClassWriter.COMPUTE_FRAMES);
 		} catch(IllegalArgumentException ex) {
 			// ASM throws: "JSR/RET are not supported with computeFrames option"
 			if (ex.getMessage() != null && ex.getMessage().contains("JSR/RET")) {
-				accept(updated, cr, ClassReader.EXPAND_FRAMES, ClassWriter.COMPUTE_MAXS);
+				return accept(cr, ClassReader.EXPAND_FRAMES, ClassWriter.COMPUTE_MAXS);
 			}
+			return null;
 		}
 	}
 
-	private void accept(Map<String, byte[]> updated, ClassReader cr, int readFlags, int writeFlags) {
-		String name = cr.getClassName();
+	private byte[] accept(ClassReader cr, int readFlags, int writeFlags) {
 		// Apply with mapper
-		SimpleRecordingRemapper mapper = new SimpleRecordingRemapper(getMappings(),
+		SimpleRecordingRemapper mapper = new SimpleRecordingRemapper(mappingTable,
 				checkFieldHierarchy, checkMethodHierarchy, checkWonkyOuterRelation, workspace);
 		WorkspaceClassWriter cw = workspace.createWriter(writeFlags);
-		cw.setMappings(getMappings(), reverseClassMappings);
+		cw.setMappings(classMappings, reverseClassMappings);
 		ClassVisitor visitor = cw;
 		for (ClassVisitorPlugin visitorPlugin : PluginsManager.getInstance()
 				.ofType(ClassVisitorPlugin.class)) {
@@ -210,6 +383,25 @@ public class Mappings {
 		cr.accept(adapter, readFlags);
 		// Only return the modified class if any references to the mappings were found.
 		if (mapper.isDirty())
-			updated.put(name, cw.toByteArray());
+			return cw.toByteArray();
+		return null;
+	}
+
+	private static boolean isParallelRemapEnabled() {
+		Controller controller = Recaf.getController();
+		return controller != null && controller.config().backend().parallelRemap;
+	}
+
+	/**
+	 * Remapped class.
+	 */
+	private static final class Remapped {
+		private final String name;
+		private final byte[] value;
+
+		private Remapped(String name, byte[] value) {
+			this.name = name;
+			this.value = value;
+		}
 	}
 }
@@ -1,12 +1,12 @@
 package me.coley.recaf.mapping;
 
-import me.coley.recaf.util.StringUtil;
 import me.coley.recaf.workspace.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.regex.Pattern;
 
 /**
  * Proguard mappings file implementation. <br>
@@ -18,8 +18,8 @@ import java.util.Map;
  */
 public class ProguardMappings extends FileMappings {
 	private static final String FAIL = "Invalid Proguard mappings, ";
-	private static final String NAME_LINE = "^.+:";
-	private static final String SPLITTER = "( |->)+";
+	private static final Pattern NAME_LINE = Pattern.compile("^.+:");
+	private static final Pattern SPLITTER = Pattern.compile("( |->)+");
 	private Map<String, String> obfToClean = new HashMap<>();
 	private Map<String, String> cleanToObf = new HashMap<>();
 
@@ -39,49 +39,24 @@ public class ProguardMappings extends FileMappings {
 	}
 
 	@Override
-	protected Map<String, String> parse(String text) {
+	protected Map<String, String> parse(BufferedReader reader) throws IOException {
 		obfToClean = new HashMap<>();
 		cleanToObf = new HashMap<>();
-		String[] lines = StringUtil.splitNewline(text);
-		collectNames(lines);
-		parseMembers(lines);
-		return obfToClean;
-	}
-
-	private void collectNames(String[] lines) {
-		int line = 0;
-		for(String lineStr : lines) {
-			line++;
-			// Skip comments line
-			if(lineStr.startsWith("#"))
-				continue;
-			// Only look at name lines
-			if(lineStr.matches(NAME_LINE)) {
-				try {
-					String[] split = lineStr.split("( |->)+");
-					String clean = internalize(split[0]);
-					String obf = internalize(split[1]);
-					obf = obf.substring(0, obf.indexOf(':'));
-					obfToClean.put(obf, clean);
-					cleanToObf.put(clean, obf);
-				} catch(IndexOutOfBoundsException ex) {
-					throw new IllegalArgumentException(FAIL + "failed parsing line " + line, ex);
-				}
-			}
-		}
-	}
-
-	private void parseMembers(String[] lines) {
+		// Method descriptors may use classes that are named further down in the file,
+		// so they are completed once all class names are known. Until then the parts of each
+		// method are held separately, so that repeated names and types share one instance.
+		List<String[]> methods = new ArrayList<>();
 		int line = 0;
 		String currentObf = null;
-		for(String lineStr : lines) {
+		String lineStr;
+		while ((lineStr = reader.readLine()) != null) {
 			line++;
-			// Skip comments line
-			if(lineStr.startsWith("#"))
+			// Skip comments and empty lines
+			if(lineStr.startsWith("#") || lineStr.trim().isEmpty())
 				continue;
 			// Mark current class
-			if(lineStr.matches(NAME_LINE)) {
-				currentObf = internalize(lineStr.substring(lineStr.lastIndexOf(' ') + 1, lineStr.indexOf(':')));
+			if(NAME_LINE.matcher(lineStr).matches()) {
+				currentObf = parseName(lineStr, line);
 				continue;
 			}
 			if(currentObf == null)
@@ -90,7 +65,7 @@ public class ProguardMappings extends FileMappings {
 			if(!lineStr.contains("(")) {
 				// Field
 				// <type> <clean-name> -> <obf-name>
-				String[] split = lineStr.trim().split(SPLITTER);
+				String[] split = SPLITTER.split(lineStr.trim());
 				String clean = split[1];
 				String obf = split[2];
 				/*
@@ -100,7 +75,7 @@ public class ProguardMappings extends FileMappings {
 				else
 					type = internalize(type);
 				*/
-				obfToClean.put(currentObf + "." + obf, clean);
+				obfToClean.put(currentObf + "." + obf, dedup(clean));
 			} else {
 				// Skip constructors
 				if (lineStr.contains("init>"))
@@ -110,45 +85,79 @@ public class ProguardMappings extends FileMappings {
 				// <ret-type> <name::qualified-desc> -> <obf-name>
 				String[] split = null;
 				if (lineStr.contains(":"))
-					split = lineStr.substring(lineStr.lastIndexOf(":") + 1).trim().split(SPLITTER);
+					split = SPLITTER.split(lineStr.substring(lineStr.lastIndexOf(":") + 1).trim());
 				else
-					split = lineStr.trim().split(SPLITTER);
-				// Return type
-				// - Internalize the type (void -> V, or com.Type -> com/Type))
-				// - Map to obf if the type is not primitive
-				String proRet = split[0];
-				String cleanRet = internalize(proRet);
-				String obfRet = isPrimitive(proRet) ? cleanRet :
-						"L" + cleanToObf.getOrDefault(cleanRet, cleanRet) + ";";
+					split = SPLITTER.split(lineStr.trim());
 				// Parse the desc
 				// name(name,name)
 				String cleanDefintion = split[1];
 				String clean = cleanDefintion.substring(0, cleanDefintion.indexOf('('));
-				String[] progaurdArgs = cleanDefintion
-						.substring(cleanDefintion.indexOf('(') + 1, cleanDefintion.length() - 1)
-						.split(",");
-				if (progaurdArgs.length == 1 && progaurdArgs[0].isEmpty())
-					progaurdArgs = new String[0];
-				for (int i = 0; i < progaurdArgs.length; i++) {
-					String type = progaurdArgs[i];
-					// Swap clean name with obf name (already internalized)
-					String typeObf = cleanToObf.get(type.replace(".", "/"));
-					if (typeObf != null) {
-						progaurdArgs[i] = "L" + typeObf + ";";
-						continue;
-					}
-					// Internalize the type
-					if (isPrimitive(type))
-						progaurdArgs[i] = internalize(progaurdArgs[i]);
-					else
-						progaurdArgs[i] = "L" + internalize(progaurdArgs[i]) + ";";
-				}
+				String progaurdArgs = cleanDefintion
+						.substring(cleanDefintion.indexOf('(') + 1, cleanDefintion.length() - 1);
 				String obf = split[2];
-				String obfDesc = "(" + String.join("", progaurdArgs) + ")" + obfRet;
-				String obfKey = currentObf + "." + obf + obfDesc;
-				obfToClean.put(obfKey, clean);
+				methods.add(new String[]{currentObf, dedup(obf), dedup(clean), dedup(split[0]), dedup(progaurdArgs)});
+			}
+		}
+		for (String[] method : methods)
+			obfToClean.put(method[0] + "." + method[1] + getObfDesc(method[3], method[4]), method[2]);
+		return obfToClean;
+	}
+
+	/**
+	 * @param lineStr
+	 * 		Line of a class name, {@code <clean-name> -> <obf-name>:}.
+	 * @param line
+	 * 		Line number.
+	 *
+	 * @return Obfuscated name of the class.
+	 */
+	private String parseName(String lineStr, int line) {
+		try {
+			String[] split = SPLITTER.split(lineStr);
+			String clean = internalize(split[0]);
+			String obf = internalize(split[1]);
+			obf = obf.substring(0, obf.indexOf(':'));
+			obfToClean.put(obf, clean);
+			cleanToObf.put(clean, obf);
+			return internalize(lineStr.substring(lineStr.lastIndexOf(' ') + 1, lineStr.indexOf(':')));
+		} catch(IndexOutOfBoundsException ex) {
+			throw new IllegalArgumentException(FAIL + "failed parsing line " + line, ex);
+		}
+	}
+
+	/**
+	 * @param proRet
+	 * 		Proguard return type.
+	 * @param args
+	 * 		Proguard argument types, split by commas.
+	 *
+	 * @return Method descriptor using the obfuscated class names.
+	 */
+	private String getObfDesc(String proRet, String args) {
+		// Return type
+		// - Internalize the type (void -> V, or com.Type -> com/Type))
+		// - Map to obf if the type is not primitive
+		String cleanRet = internalize(proRet);
+		String obfRet = isPrimitive(proRet) ? cleanRet :
+				"L" + cleanToObf.getOrDefault(cleanRet, cleanRet) + ";";
+		String[] progaurdArgs = args.split(",");
+		if (progaurdArgs.length == 1 && progaurdArgs[0].isEmpty())
+			progaurdArgs = new String[0];
+		for (int i = 0; i < progaurdArgs.length; i++) {
+			String type = progaurdArgs[i];
+			// Swap clean name with obf name (already internalized)
+			String typeObf = cleanToObf.get(type.replace(".", "/"));
+			if (typeObf != null) {
+				progaurdArgs[i] = "L" + typeObf + ";";
+				continue;
 			}
+			// Internalize the type
+			if (isPrimitive(type))
+				progaurdArgs[i] = internalize(progaurdArgs[i]);
+			else
+				progaurdArgs[i] = "L" + internalize(progaurdArgs[i]) + ";";
 		}
+		return "(" + String.join("", progaurdArgs) + ")" + obfRet;
 	}
 
 	private String internalize(String name) {
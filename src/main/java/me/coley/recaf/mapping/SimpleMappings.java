@@ -2,12 +2,12 @@ package me.coley.recaf.mapping;
 
 import me.coley.recaf.workspace.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
-import static me.coley.recaf.util.StringUtil.splitNewline;
 import static me.coley.recaf.util.EscapeUtil.*;
 
 /**
@@ -42,15 +42,15 @@ public class SimpleMappings extends FileMappings {
 	}
 
 	@Override
-	protected Map<String, String> parse(String text) {
-		String[] lines = splitNewline(text);
-		Map<String, String> map = new HashMap<>(lines.length);
+	protected Map<String, String> parse(BufferedReader reader) throws IOException {
+		Map<String, String> map = new HashMap<>();
 		// # Comment
 		// BaseClass TargetClass
 		// BaseClass.baseField targetField
 		// BaseClass.baseField baseDesc targetField
 		// BaseClass.baseMethod(BaseMethodDesc) targetMethod
-		for (String line : lines) {
+		String line;
+		while ((line = reader.readLine()) != null) {
 			// Skip comments and empty lines
 			if (line.trim().startsWith("#") || line.trim().isEmpty())
 				continue;
@@ -60,11 +60,11 @@ public class SimpleMappings extends FileMappings {
 				// Descriptor qualified field format
 				String baseDesc = unescape(args[1]);
 				String targetName = unescape(args[2]);
-				map.put(baseName + " " + baseDesc, targetName);
+				map.put(baseName + " " + baseDesc, dedup(targetName));
 			} else {
 				// Any other format
 				String targetName = unescape(args[1]);
-				map.put(baseName, targetName);
+				map.put(baseName, dedup(targetName));
 			}
 		}
 		return map;
@@ -7,9 +7,10 @@ import org.objectweb.asm.commons.SimpleRemapper;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InnerClassNode;
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * An extension of the SimpleRemapper that logs if a class has been modified in the renaming
@@ -18,6 +19,7 @@ import java.util.stream.Collectors;
  * @author Matt
  */
 public class SimpleRecordingRemapper extends SimpleRemapper {
+	private final MappingTable table;
 	private final boolean checkFieldHierarchy;
 	private final boolean checkMethodHierarchy;
 	private final boolean checkWonkyOuterRelation;
@@ -42,7 +44,31 @@ public class SimpleRecordingRemapper extends SimpleRemapper {
 	public SimpleRecordingRemapper(Map<String, String> mapping, boolean checkFieldHierarchy,
 								   boolean checkMethodHierarchy, boolean checkWonkyOuterRelation,
 								   Workspace workspace) {
-		super(mapping);
+		this(new MappingTable(mapping), checkFieldHierarchy, checkMethodHierarchy, checkWonkyOuterRelation,
+				workspace);
+	}
+
+	/**
+	 * Constructs a recording remapper.
+	 *
+	 * @param table
+	 * 		Table of the mappings. Lookups resolved with the workspace are remembered in the table,
+	 * 		so remappers sharing a table should use the same flags.
+	 * @param checkFieldHierarchy
+	 * 		Flag for checking for field keys using super-classes.
+	 * @param checkMethodHierarchy
+	 * 		Flag for checking for method keys using super-classes.
+	 * @param checkWonkyOuterRelation
+	 * 		Flag for if outer class resolving should account for wonky renaming.
+	 * @param workspace
+	 * 		Workspace to pull names from when using hierarchy lookups.
+	 */
+	public SimpleRecordingRemapper(MappingTable table, boolean checkFieldHierarchy,
+								   boolean checkMethodHierarchy, boolean checkWonkyOuterRelation,
+								   Workspace workspace) {
+		// Lookups are done through the table, see map(String)
+		super(Collections.emptyMap());
+		this.table = table;
 		this.checkFieldHierarchy = checkFieldHierarchy;
 		this.checkMethodHierarchy = checkMethodHierarchy;
 		this.checkWonkyOuterRelation = checkWonkyOuterRelation;
@@ -63,65 +89,85 @@ public class SimpleRecordingRemapper extends SimpleRemapper {
 	@Override
 	public String mapFieldName(String owner, String name, String descriptor) {
 		// Standard format
-		String remappedName = map(owner + '.' + name);
+		String remappedName = mapMember(false, owner, name, null);
 		// Check if we are also using descriptors in keys, in cases where name overloading occurs
 		if (remappedName == null)
-			remappedName = map(owner + '.' + name + ' ' + descriptor);
+			remappedName = mapMember(false, owner, name, descriptor);
+		return remappedName == null ? name : remappedName;
+	}
+
+	@Override
+	public String mapMethodName(String owner, String name, String descriptor) {
+		String remappedName = mapMember(true, owner, name, descriptor);
+		return remappedName == null ? name : remappedName;
+	}
+
+	@Override
+	public String mapInvokeDynamicMethodName(String name, String descriptor) {
+		// Invoke-dynamic keys have no owner, so no parent checking is done
+		String remappedName = mapMember(true, "", name, descriptor);
 		return remappedName == null ? name : remappedName;
 	}
 
 	@Override
 	public String map(final String key) {
+		int dot = key.indexOf('.');
+		if (dot >= 0) {
+			// Member keys of other lookups, such as annotation attributes
+			String owner = key.substring(0, dot);
+			int descStart = key.indexOf('(', dot);
+			if (descStart > 0)
+				return mapMember(true, owner, key.substring(dot + 1, descStart), key.substring(descStart));
+			descStart = key.indexOf(' ', dot);
+			if (descStart > 0)
+				return mapMember(false, owner, key.substring(dot + 1, descStart), key.substring(descStart + 1));
+			return mapMember(false, owner, key.substring(dot + 1), null);
+		}
+		// Not a member, so this is a class definition.
+		String mapped = table.mapClass(key);
+		if (mapped == null) {
+			mapped = table.getResolvedClass(key);
+			if (mapped == null) {
+				mapped = mapOuter(key);
+				table.putResolvedClass(key, mapped);
+			} else if (mapped == MappingTable.NOT_MAPPED) {
+				mapped = null;
+			}
+		}
+		// Mark as dirty if mappings found
+		if(mapped != null)
+			dirty = true;
+		return mapped;
+	}
+
+	/**
+	 * @param method
+	 * 		Flag for if the member is a method.
+	 * @param owner
+	 * 		Internal name of the class the member is referenced by.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor, or {@code null} for fields matched by name only.
+	 *
+	 * @return Mapped name of the member, or {@code null} if the member is not mapped.
+	 */
+	private String mapMember(boolean method, String owner, String name, String desc) {
 		// Don't map constructors/static-initializers
-		if (key.contains("<"))
+		if (name.startsWith("<"))
 			return null;
 		// Get mapped value from key
-		String mapped = super.map(key);
-		// No direct key mapping found?
-		if (mapped == null) {
-			boolean member = key.contains(".");
-			// Check if the key indicates if the value is a member (field/method)
-			if (member) {
-				// Check if the key indicates an invoke-dynamic call
-				// Don't do any parent checking if its an invoke-dynamic.
-				if (key.charAt(0) == '.')
-					return null;
-				// No direct mapping for this member is found, perhaps it was mapped in a super-class
-				boolean method = key.contains("(");
-				String memberDef = key.substring(key.indexOf(".") + 1);
-				// Normally we would check the whole hierarchy, but the mappings should at least be
-				// correct enough for this to work.
-				if ((!method && checkFieldHierarchy) || (method && checkMethodHierarchy)) {
-					for (String parent : getParents(key)) {
-						// Attempt to map with parent name
-						mapped = map(parent + "." + memberDef);
-						// If found, break so we can return the discovered mapping.
-						if (mapped != null)
-							break;
-					}
-				}
-			} else {
-				// Not a member, so this is a class definition.
-				// Is this an inner class? If so ensure the qualified outer name is mapped
-				int index = key.lastIndexOf("$");
-				if(index > 1) {
-					// key is an inner class
-					String outer = key.substring(0, index);
-					String inner = key.substring(index);
-					String mappedOuter = map(outer);
-					if(mappedOuter != null)
-						return mappedOuter + inner;
-				} else if (checkWonkyOuterRelation && workspace.getPrimary().getClasses().containsKey(key)){
-					// Check if the class is just obfuscated and does not respect the "outer$inner" pattern.
-					String outer = getUnmatchedOuter(key);
-					if (outer != null) {
-						// key is an inner class
-						String inner = key.substring(key.lastIndexOf('/') + 1);
-						String mappedOuter = map(outer);
-						if (mappedOuter != null)
-							return mappedOuter + inner;
-					}
-				}
+		String mapped = method ? table.mapMethod(owner, name, desc) : table.mapField(owner, name, desc);
+		// No direct mapping for this member is found, perhaps it was mapped in a super-class.
+		// Don't do any parent checking if its an invoke-dynamic, or if no class maps the name.
+		if (mapped == null && !owner.isEmpty() && (method ? checkMethodHierarchy : checkFieldHierarchy) &&
+				(method ? table.hasMethod(name) : table.hasField(name))) {
+			mapped = table.getResolvedMember(method, owner, name, desc);
+			if (mapped == null) {
+				mapped = mapInherited(method, owner, name, desc);
+				table.putResolvedMember(method, owner, name, desc, mapped);
+			} else if (mapped == MappingTable.NOT_MAPPED) {
+				mapped = null;
 			}
 		}
 		// Mark as dirty if mappings found
@@ -130,6 +176,80 @@ public class SimpleRecordingRemapper extends SimpleRemapper {
 		return mapped;
 	}
 
+	/**
+	 * @param method
+	 * 		Flag for if the member is a method.
+	 * @param owner
+	 * 		Internal name of the class the member is referenced by.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor, or {@code null} for fields matched by name only.
+	 *
+	 * @return Mapping of the member in the first parent that has a mapping for it, or {@code null} if
+	 * there is none. Parents that declare the member are checked before the other parents.
+	 */
+	private String mapInherited(boolean method, String owner, String name, String desc) {
+		// Parents declaring the member are the most likely to be mapped, so check them first.
+		// Resolved through the shared member table, so the hierarchy is not walked again
+		// for every reference to an inherited member.
+		List<String> declaring = workspace.getMemberTable().getDeclaringClasses(owner, name, desc);
+		for (String parent : declaring) {
+			String mapped = mapParent(method, owner, parent, name, desc);
+			if (mapped != null)
+				return mapped;
+		}
+		// Mappings may also be keyed on a parent that only inherits the member
+		Iterator<String> parents = workspace.getHierarchyGraph().getAllParents(owner).iterator();
+		while (parents.hasNext()) {
+			String parent = parents.next();
+			if (declaring.contains(parent))
+				continue;
+			String mapped = mapParent(method, owner, parent, name, desc);
+			if (mapped != null)
+				return mapped;
+		}
+		return null;
+	}
+
+	private String mapParent(boolean method, String owner, String parent, String name, String desc) {
+		if (parent.equals(owner))
+			return null;
+		// Attempt to map with parent name
+		return method ? table.mapMethod(parent, name, desc) : table.mapField(parent, name, desc);
+	}
+
+	/**
+	 * @param key
+	 * 		Internal class name, without a direct mapping.
+	 *
+	 * @return Mapped name of the class based on its outer class, or {@code null} if the class is
+	 * not an inner class of a mapped class.
+	 */
+	private String mapOuter(String key) {
+		// Is this an inner class? If so ensure the qualified outer name is mapped
+		int index = key.lastIndexOf("$");
+		if(index > 1) {
+			// key is an inner class
+			String outer = key.substring(0, index);
+			String inner = key.substring(index);
+			String mappedOuter = map(outer);
+			if(mappedOuter != null)
+				return mappedOuter + inner;
+		} else if (checkWonkyOuterRelation && workspace.getPrimary().getClasses().containsKey(key)){
+			// Check if the class is just obfuscated and does not respect the "outer$inner" pattern.
+			String outer = getUnmatchedOuter(key);
+			if (outer != null) {
+				// key is an inner class
+				String inner = key.substring(key.lastIndexOf('/') + 1);
+				String mappedOuter = map(outer);
+				if (mappedOuter != null)
+					return mappedOuter + inner;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Sometimes obfuscators rename inner classes and do not retain the {@code outer$inner} pattern.
 	 * So we need to check for that here.
@@ -153,18 +273,4 @@ public class SimpleRecordingRemapper extends SimpleRemapper {
 		}
 		return null;
 	}
-
-	/**
-	 * @param key
-	 * 		Mapping key.
-	 *
-	 * @return Stream of super classes.
-	 */
-	private Set<String> getParents(String key) {
-		// Get class from key
-		String className = key.contains(".") ? key.substring(0, key.indexOf(".")) : key;
-		// Get parents in hierarchy
-		return workspace.getHierarchyGraph().getParents(className)
-				.collect(Collectors.toSet());
-	}
 }
@@ -1,8 +1,8 @@
 package me.coley.recaf.mapping;
 
-import me.coley.recaf.util.StringUtil;
 import me.coley.recaf.workspace.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -34,11 +34,11 @@ public class SrgMappings extends FileMappings {
 	}
 
 	@Override
-	protected Map<String, String> parse(String text) {
+	protected Map<String, String> parse(BufferedReader reader) throws IOException {
 		Map<String, String> map = new HashMap<>();
-		String[] lines = StringUtil.splitNewline(text);
 		int line = 0;
-		for(String lineStr : lines) {
+		String lineStr;
+		while ((lineStr = reader.readLine()) != null) {
 			line++;
 			String[] args = lineStr.trim().split(" ");
 			String type = args[0];
@@ -57,7 +57,7 @@ public class SrgMappings extends FileMappings {
 						String renamedKey = args[2];
 						splitPos = renamedKey.lastIndexOf('/');
 						String renamedName = renamedKey.substring(splitPos + 1);
-						map.put(obfOwner + "." + obfName, renamedName);
+						map.put(obfOwner + "." + obfName, dedup(renamedName));
 						break;
 					}
 					case "MD:": {
@@ -69,7 +69,7 @@ public class SrgMappings extends FileMappings {
 						String renamedKey = args[3];
 						splitPos = renamedKey.lastIndexOf('/');
 						String renamedName = renamedKey.substring(splitPos + 1);
-						map.put(obfOwner + "." + obfName + obfDesc, renamedName);
+						map.put(obfOwner + "." + obfName + obfDesc, dedup(renamedName));
 						break;
 					}
 					default:
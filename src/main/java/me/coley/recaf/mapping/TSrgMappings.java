@@ -1,8 +1,8 @@
 package me.coley.recaf.mapping;
 
-import me.coley.recaf.util.StringUtil;
 import me.coley.recaf.workspace.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -28,13 +28,16 @@ public class TSrgMappings extends FileMappings {
     }
 
     @Override
-    protected Map<String, String> parse(String text) {
-        String[] lines = StringUtil.splitNewline(text);
-        Map<String, String> map = new HashMap<>(lines.length);
+    protected Map<String, String> parse(BufferedReader reader) throws IOException {
+        Map<String, String> map = new HashMap<>();
         int line = 0;
         String obfOwner = null;
-        for (String lineStr : lines) {
+        String lineStr;
+        while ((lineStr = reader.readLine()) != null) {
             line++;
+            // Skip empty lines
+            if (lineStr.trim().isEmpty())
+                continue;
             String[] args = lineStr.trim().split(" ");
             try {
                 // Fields and Methods start with a tab
@@ -49,12 +52,12 @@ public class TSrgMappings extends FileMappings {
                     if (args.length == 2) { // Field
                         String obfName = args[0];
                         String renamedName = args[1];
-                        map.put(obfOwner + "." + obfName, renamedName);
+                        map.put(obfOwner + "." + obfName, dedup(renamedName));
                     } else if (args.length == 3) { // Method
                         String obfName = args[0];
                         String obfDesc = args[1];
                         String renamedName = args[2];
-                        map.put(obfOwner + "." + obfName + obfDesc, renamedName);
+                        map.put(obfOwner + "." + obfName + obfDesc, dedup(renamedName));
                     }
                 }
             } catch (IndexOutOfBoundsException ex) {
@@ -1,8 +1,8 @@
 package me.coley.recaf.mapping;
 
-import me.coley.recaf.util.StringUtil;
 import me.coley.recaf.workspace.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -34,11 +34,11 @@ public class TinyV1Mappings extends FileMappings {
 	}
 
 	@Override
-	protected Map<String, String> parse(String text) {
+	protected Map<String, String> parse(BufferedReader reader) throws IOException {
 		Map<String, String> map = new HashMap<>();
-		String[] lines = StringUtil.splitNewline(text);
 		int line = 0;
-		for(String lineStr : lines) {
+		String lineStr;
+		while ((lineStr = reader.readLine()) != null) {
 			line++;
 			// Skip initial header
 			if (lineStr.startsWith("v1\t"))
@@ -56,7 +56,7 @@ public class TinyV1Mappings extends FileMappings {
 						String obfOwner = args[1];
 						String obfName =  args[3];
 						String renamed = args[4];
-						map.put(obfOwner + "." + obfName, renamed);
+						map.put(obfOwner + "." + obfName, dedup(renamed));
 						break;
 					}
 					case "METHOD": {
@@ -64,7 +64,7 @@ public class TinyV1Mappings extends FileMappings {
 						String obfDesc =  args[2];
 						String obfName =  args[3];
 						String renamed = args[4];
-						map.put(obfOwner + "." + obfName + obfDesc, renamed);
+						map.put(obfOwner + "." + obfName + obfDesc, dedup(renamed));
 						break;
 					}
 					default:
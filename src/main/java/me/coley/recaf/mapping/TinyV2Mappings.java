@@ -1,8 +1,8 @@
 package me.coley.recaf.mapping;
 
-import me.coley.recaf.util.StringUtil;
 import me.coley.recaf.workspace.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -41,12 +41,12 @@ public class TinyV2Mappings extends FileMappings {
 	}
 
 	@Override
-	protected Map<String, String> parse(String text) {
+	protected Map<String, String> parse(BufferedReader reader) throws IOException {
 		Map<String, String> map = new HashMap<>();
-		String[] lines = StringUtil.splitNewline(text);
 		int line = 0;
 		String currentClass = null;
-		for(String lineStr : lines) {
+		String lineStr;
+		while ((lineStr = reader.readLine()) != null) {
 			line++;
 			// Skip initial header
 			if (lineStr.startsWith("tiny\t"))
@@ -83,7 +83,7 @@ public class TinyV2Mappings extends FileMappings {
 						int[] fldRenameIndices = subType.getFromXToYOffsets(Context.FIELD, args.length);
 						String currentField = args[fldRenameIndices[0]];
 						String renamedField = args[fldRenameIndices[1]];
-						map.put(currentClass + "." + currentField, renamedField);
+						map.put(currentClass + "." + currentField, dedup(renamedField));
 						break;
 					case "m":
 						if (currentClass == null)
@@ -96,7 +96,7 @@ public class TinyV2Mappings extends FileMappings {
 						String methodType = args[1];
 						String currentMethod = args[mtdRenameIndices[0]];
 						String renamedMethod = args[mtdRenameIndices[1]];
-						map.put(currentClass + "." + currentMethod + methodType, renamedMethod);
+						map.put(currentClass + "." + currentMethod + methodType, dedup(renamedMethod));
 						break;
 					default:
 						trace("Unknown Tiny-V2 mappings line type: \"{}\" @line {}", type, line);
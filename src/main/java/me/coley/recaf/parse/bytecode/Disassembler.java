@@ -10,6 +10,7 @@ import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.objectweb.asm.tree.AbstractInsnNode.*;
@@ -22,6 +23,8 @@ import static org.objectweb.asm.tree.AbstractInsnNode.*;
 public class Disassembler {
 	private final Map<LabelNode, String> labelToName = new HashMap<>();
 	private final List<String> out = new ArrayList<>();
+	private final StringBuilder insnLine = new StringBuilder();
+	private Consumer<String> sink = out::add;
 	private final Set<Integer> paramVariables = new HashSet<>();
 	private Comments comments;
 	private MethodNode method;
@@ -40,6 +43,24 @@ public class Disassembler {
 		return String.join("\n", out);
 	}
 
+	/**
+	 * Disassembles a method one line at a time, without building the full text.
+	 *
+	 * @param method
+	 * 		Method to disassemble.
+	 * @param lines
+	 * 		Consumer of each line of the {@link #disassemble(MethodNode) method's text}.
+	 */
+	public void disassemble(MethodNode method, Consumer<String> lines) {
+		sink = lines;
+		try {
+			setup(method);
+			visit(method);
+		} finally {
+			sink = out::add;
+		}
+	}
+
 	/**
 	 * @param field
 	 * 		Field to disassemble.
@@ -124,21 +145,21 @@ public class Disassembler {
 					new NameAST(0,0,name)));
 			paramVar += arg.getSize();
 		}
-		out.add(def.print());
+		sink.accept(def.print());
 		// Visit signature
 		if (value.signature != null)
-			out.add("SIGNATURE " + value.signature);
+			sink.accept("SIGNATURE " + value.signature);
 		// Visit aliases
 		if(doInsertIndyAlias) {
 			StringBuilder line = new StringBuilder("ALIAS H_META \"");
 			visitHandle(line, HandleParser.DEFAULT_HANDLE, true);
 			line.append('"');
-			out.add(line.toString());
+			sink.accept(line.toString());
 		}
 		// Visit exceptions
 		if(value.exceptions != null)
 			for(String type : value.exceptions)
-				out.add("THROWS " + type);
+				sink.accept("THROWS " + type);
 		// Visit try-catches
 		if (value.tryCatchBlocks != null)
 			for (TryCatchBlockNode block : value.tryCatchBlocks) {
@@ -146,9 +167,9 @@ public class Disassembler {
 				String end = labelToName.get(block.end);
 				String handler = labelToName.get(block.handler);
 				if (block.type != null)
-					out.add(String.format("TRY %s %s CATCH(%s) %s", start, end, block.type, handler));
+					sink.accept(String.format("TRY %s %s CATCH(%s) %s", start, end, block.type, handler));
 				else
-					out.add(String.format("TRY %s %s CATCH(*) %s", start, end, handler));
+					sink.accept(String.format("TRY %s %s CATCH(*) %s", start, end, handler));
 			}
 		// Visit instructions
 		int offset = 0;
@@ -171,10 +192,10 @@ public class Disassembler {
 		for (AccessFlag flag : AccessFlag.values())
 			if (flag.getTypes().contains(AccessFlag.Type.FIELD) && (value.access & flag.getMask()) == flag.getMask())
 				def.getModifiers().add(new DefinitionModifierAST(0, 0, flag.getName().toUpperCase()));
-		out.add(def.print());
+		sink.accept(def.print());
 		// Visit signature
 		if (value.signature != null)
-			out.add("SIGNATURE " + value.signature);
+			sink.accept("SIGNATURE " + value.signature);
 		// Visit default-value
 		if(value.value != null) {
 			StringBuilder line = new StringBuilder("VALUE ");
@@ -196,56 +217,58 @@ public class Disassembler {
 				line.append(o).append('F');
 			} else
 				line.append(o);
-			out.add(line.toString());
+			sink.accept(line.toString());
 		}
 	}
 
 	private void appendLine(AbstractInsnNode insn) {
-		StringBuilder line = new StringBuilder(OpcodeUtil.opcodeToName(insn.getOpcode()));
+		// Reuse the same builder for every instruction
+		insnLine.setLength(0);
+		insnLine.append(OpcodeUtil.opcodeToName(insn.getOpcode()));
 		switch(insn.getType()) {
 			case INSN:
 				break;
 			case INT_INSN:
-				visitIntInsn(line, (IntInsnNode) insn);
+				visitIntInsn(insnLine, (IntInsnNode) insn);
 				break;
 			case VAR_INSN:
-				visitVarInsn(line, (VarInsnNode) insn);
+				visitVarInsn(insnLine, (VarInsnNode) insn);
 				break;
 			case TYPE_INSN:
-				visitTypeInsn(line, (TypeInsnNode) insn);
+				visitTypeInsn(insnLine, (TypeInsnNode) insn);
 				break;
 			case FIELD_INSN:
-				visitFieldInsn(line, (FieldInsnNode) insn);
+				visitFieldInsn(insnLine, (FieldInsnNode) insn);
 				break;
 			case METHOD_INSN:
-				visitMethodInsn(line, (MethodInsnNode) insn);
+				visitMethodInsn(insnLine, (MethodInsnNode) insn);
 				break;
 			case JUMP_INSN:
-				visitJumpInsn(line, (JumpInsnNode) insn);
+				visitJumpInsn(insnLine, (JumpInsnNode) insn);
 				break;
 			case LABEL:
-				visitLabel(line, (LabelNode) insn);
+				visitLabel(insnLine, (LabelNode) insn);
 				break;
 			case LDC_INSN:
-				visitLdcInsn(line, (LdcInsnNode) insn);
+				visitLdcInsn(insnLine, (LdcInsnNode) insn);
 				break;
 			case IINC_INSN:
-				visitIincInsn(line, (IincInsnNode) insn);
+				visitIincInsn(insnLine, (IincInsnNode) insn);
 				break;
 			case TABLESWITCH_INSN:
-				visitTableSwitchInsn(line, (TableSwitchInsnNode) insn);
+				visitTableSwitchInsn(insnLine, (TableSwitchInsnNode) insn);
 				break;
 			case LOOKUPSWITCH_INSN:
-				visitLookupSwitchInsn(line, (LookupSwitchInsnNode) insn);
+				visitLookupSwitchInsn(insnLine, (LookupSwitchInsnNode) insn);
 				break;
 			case MULTIANEWARRAY_INSN:
-				visitMultiANewArrayInsn(line, (MultiANewArrayInsnNode) insn);
+				visitMultiANewArrayInsn(insnLine, (MultiANewArrayInsnNode) insn);
 				break;
 			case LINE:
-				visitLine(line, (LineNumberNode) insn);
+				visitLine(insnLine, (LineNumberNode) insn);
 				break;
 			case INVOKE_DYNAMIC_INSN:
-				visitIndyInsn(line, (InvokeDynamicInsnNode) insn);
+				visitIndyInsn(insnLine, (InvokeDynamicInsnNode) insn);
 				break;
 			case FRAME:
 				// Do nothing
@@ -253,14 +276,15 @@ public class Disassembler {
 			default:
 				throw new IllegalStateException("Unknown instruction type: " + insn.getType());
 		}
-		out.add(line.toString());
+		sink.accept(insnLine.toString());
 	}
 
 	private void appendComment(int offset) {
 		String prefix = "// ";
 		String comment = comments.get(offset);
 		if (comment != null)
-			out.add(prefix + String.join("\n" + prefix, comment.split("\n")));
+			for (String commentLine : comment.split("\n"))
+				sink.accept(prefix + commentLine);
 	}
 
 	private void visitIntInsn(StringBuilder line, IntInsnNode insn) {
@@ -27,9 +27,7 @@ public class MethodAnalyzer extends SimAnalyzer {
 
 	@Override
 	protected TypeChecker createTypeChecker() {
-		return (parent, child) -> getGraph()
-				.getAllParents(child.getInternalName())
-					.anyMatch(n -> n != null && n.equals(parent.getInternalName()));
+		return (parent, child) -> getGraph().isAncestor(parent.getInternalName(), child.getInternalName());
 	}
 
 	@Override
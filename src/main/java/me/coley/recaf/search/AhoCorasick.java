@@ -0,0 +1,160 @@
+package me.coley.recaf.search;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a set of keys, finding every key contained in a text in a single
+ * scan of the text.
+ * <br>
+ * The keyword trie of the automaton is also used to check if a text starts with any key.
+ *
+ * @author Matt
+ */
+final class AhoCorasick {
+	private static final int ROOT = 0;
+	private final char[][] chars;
+	private final int[][] targets;
+	private final int[] fail;
+	private final int[][] outputs;
+	private final boolean[] terminal;
+
+	/**
+	 * @param keys
+	 * 		Keys to find. The index of each key identifies it in {@link #find(String, BitSet)}.
+	 */
+	AhoCorasick(List<String> keys) {
+		// Build the keyword trie
+		List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+		List<List<Integer>> keyOutputs = new ArrayList<>();
+		edges.add(new TreeMap<>());
+		keyOutputs.add(new ArrayList<>());
+		for (int k = 0; k < keys.size(); k++) {
+			String key = keys.get(k);
+			int node = ROOT;
+			for (int i = 0; i < key.length(); i++) {
+				Integer next = edges.get(node).get(key.charAt(i));
+				if (next == null) {
+					next = edges.size();
+					edges.get(node).put(key.charAt(i), next);
+					edges.add(new TreeMap<>());
+					keyOutputs.add(new ArrayList<>());
+				}
+				node = next;
+			}
+			keyOutputs.get(node).add(k);
+		}
+		int size = edges.size();
+		chars = new char[size][];
+		targets = new int[size][];
+		terminal = new boolean[size];
+		for (int node = 0; node < size; node++) {
+			TreeMap<Character, Integer> map = edges.get(node);
+			chars[node] = new char[map.size()];
+			targets[node] = new int[map.size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> e : map.entrySet()) {
+				chars[node][i] = e.getKey();
+				targets[node][i++] = e.getValue();
+			}
+			terminal[node] = !keyOutputs.get(node).isEmpty();
+		}
+		// Breadth first, link each node to the longest proper suffix of it that is also in the trie
+		fail = new int[size];
+		List<Set<Integer>> found = new ArrayList<>();
+		for (List<Integer> out : keyOutputs)
+			found.add(new TreeSet<>(out));
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int child : targets[ROOT])
+			queue.add(child);
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (int i = 0; i < chars[node].length; i++) {
+				char c = chars[node][i];
+				int child = targets[node][i];
+				int link = fail[node];
+				while (link != ROOT && next(link, c) < 0)
+					link = fail[link];
+				int target = next(link, c);
+				fail[child] = target >= 0 && target != child ? target : ROOT;
+				queue.add(child);
+			}
+			// Parents are done before their children, so the suffix's outputs are complete
+			found.get(node).addAll(found.get(fail[node]));
+		}
+		outputs = new int[size][];
+		for (int node = 0; node < size; node++)
+			outputs[node] = found.get(node).stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * @param text
+	 * 		Text to scan.
+	 *
+	 * @return {@code true} if the text contains any key.
+	 */
+	boolean containsAny(String text) {
+		if (terminal[ROOT])
+			return true;
+		int node = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			node = step(node, text.charAt(i));
+			if (outputs[node].length > 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param text
+	 * 		Text to scan.
+	 * @param found
+	 * 		Set to add the indices of the keys contained in the text to.
+	 */
+	void find(String text, BitSet found) {
+		for (int k : outputs[ROOT])
+			found.set(k);
+		int node = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			node = step(node, text.charAt(i));
+			for (int k : outputs[node])
+				found.set(k);
+		}
+	}
+
+	/**
+	 * @param text
+	 * 		Text to check.
+	 * @param reverse
+	 * 		{@code true} to walk the text from its end, for keys added in reverse.
+	 *
+	 * @return {@code true} if the text starts with any key, or ends with any reversed key.
+	 */
+	boolean hasPrefix(String text, boolean reverse) {
+		int node = ROOT;
+		int length = text.length();
+		for (int i = 0; !terminal[node]; i++) {
+			if (i == length)
+				return false;
+			node = next(node, text.charAt(reverse ? length - 1 - i : i));
+			if (node < 0)
+				return false;
+		}
+		return true;
+	}
+
+	private int step(int node, char c) {
+		while (true) {
+			int target = next(node, c);
+			if (target >= 0)
+				return target;
+			if (node == ROOT)
+				return ROOT;
+			node = fail[node];
+		}
+	}
+
+	private int next(int node, char c) {
+		int i = Arrays.binarySearch(chars[node], c);
+		return i >= 0 ? targets[node][i] : -1;
+	}
+}
@@ -0,0 +1,194 @@
+package me.coley.recaf.search;
+
+import me.coley.recaf.workspace.Workspace;
+import org.objectweb.asm.ClassReader;
+
+import java.util.*;
+
+/**
+ * Runs many queries together, visiting the workspace once instead of once per query.
+ * <br>
+ * Queries are planned into as few passes as their read flags allow. Queries only looking at
+ * declarations let the pass skip method code when no other query needs it. Code text queries
+ * are matched against disassembly without debug information, so when class reference queries
+ * need debug information the code text queries are searched in a second pass.
+ *
+ * @author Matt
+ */
+public class BatchSearch {
+	private final Workspace workspace;
+	private final List<String> labels = new ArrayList<>();
+	private final List<Query> queries = new ArrayList<>();
+	private Collection<String> skipped = Collections.emptyList();
+
+	private BatchSearch(Workspace workspace) {
+		this.workspace = workspace;
+	}
+
+	/**
+	 * @param workspace
+	 * 		The workspace to search in. Only uses the primary resource.
+	 *
+	 * @return Initial batch.
+	 */
+	public static BatchSearch in(Workspace workspace) {
+		return new BatchSearch(workspace);
+	}
+
+	/**
+	 * @param label
+	 * 		Label to identify the query's results with.
+	 * @param query
+	 * 		Query to add to the batch.
+	 *
+	 * @return Batch with additional query.
+	 */
+	public BatchSearch query(String label, Query query) {
+		labels.add(label);
+		queries.add(query);
+		return this;
+	}
+
+	/**
+	 * @param skipped
+	 * 		Package prefixes to skip.
+	 *
+	 * @return Batch that skips classes matching the given packages/prefixes.
+	 */
+	public BatchSearch skipPackages(Collection<String> skipped) {
+		this.skipped = skipped;
+		return this;
+	}
+
+	/**
+	 * @return Results of each query, in the order the queries were added. The search is started by
+	 * calling this method.
+	 */
+	public List<QueryResults> search() {
+		Map<Query, QueryResults> resultsMap = new IdentityHashMap<>();
+		List<List<Query>> passes = plan();
+		for (int i = 0; i < passes.size(); i++) {
+			List<Query> pass = passes.get(i);
+			int flags = readFlags(pass);
+			SearchBuilder builder = SearchBuilder.in(workspace).skipPackages(skipped);
+			if ((flags & ClassReader.SKIP_DEBUG) != 0)
+				builder.skipDebug();
+			if ((flags & ClassReader.SKIP_CODE) != 0)
+				builder.skipCode();
+			pass.forEach(builder::query);
+			long start = System.currentTimeMillis();
+			SearchCollector collector = builder.build();
+			long time = System.currentTimeMillis() - start;
+			for (Query query : pass)
+				resultsMap.put(query, new QueryResults(null, query,
+						collector.getResultsMap().get(query), i, time));
+		}
+		List<QueryResults> results = new ArrayList<>(queries.size());
+		for (int i = 0; i < queries.size(); i++) {
+			QueryResults pass = resultsMap.get(queries.get(i));
+			results.add(new QueryResults(labels.get(i), pass.query, pass.results, pass.pass, pass.time));
+		}
+		return results;
+	}
+
+	/**
+	 * @return Queries grouped into the passes they are searched in.
+	 */
+	private List<List<Query>> plan() {
+		List<Query> shared = new ArrayList<>();
+		List<Query> code = new ArrayList<>();
+		Set<Query> planned = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Query query : queries)
+			if (planned.add(query))
+				(query instanceof InsnTextQuery ? code : shared).add(query);
+		List<List<Query>> passes = new ArrayList<>();
+		if ((readFlags(shared) & ClassReader.SKIP_DEBUG) != 0)
+			shared.addAll(code);
+		else if (!code.isEmpty())
+			passes.add(code);
+		if (!shared.isEmpty())
+			passes.add(0, shared);
+		return passes;
+	}
+
+	/**
+	 * @param queries
+	 * 		Queries searched in the same pass.
+	 *
+	 * @return Read flags that give every query the same results as searching it on its own.
+	 */
+	private static int readFlags(Collection<Query> queries) {
+		int flags = ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE;
+		for (Query query : queries)
+			flags &= readFlags(query);
+		return flags;
+	}
+
+	private static int readFlags(Query query) {
+		// Declarations are not found in method code
+		if (query instanceof ClassNameQuery || query instanceof ClassInheritanceQuery ||
+				query instanceof MemberDefinitionQuery)
+			return ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE;
+		// Local variable types are class references too
+		if (query instanceof ClassReferenceQuery)
+			return 0;
+		return ClassReader.SKIP_DEBUG;
+	}
+
+	/**
+	 * Results of a single query of a batch.
+	 *
+	 * @author Matt
+	 */
+	public static final class QueryResults {
+		private final String label;
+		private final Query query;
+		private final List<SearchResult> results;
+		private final int pass;
+		private final long time;
+
+		private QueryResults(String label, Query query, List<SearchResult> results, int pass, long time) {
+			this.label = label;
+			this.query = query;
+			this.results = results;
+			this.pass = pass;
+			this.time = time;
+		}
+
+		/**
+		 * @return Label the query was added with.
+		 */
+		public String getLabel() {
+			return label;
+		}
+
+		/**
+		 * @return The query.
+		 */
+		public Query getQuery() {
+			return query;
+		}
+
+		/**
+		 * @return Results of the query.
+		 */
+		public List<SearchResult> getResults() {
+			return results;
+		}
+
+		/**
+		 * @return Index of the pass the query was searched in.
+		 */
+		public int getPass() {
+			return pass;
+		}
+
+		/**
+		 * @return Time in milliseconds of the pass the query was searched in, shared by all queries
+		 * of that pass.
+		 */
+		public long getTime() {
+			return time;
+		}
+	}
+}
@@ -7,6 +7,7 @@ package me.coley.recaf.search;
  */
 public class ClassNameQuery extends Query {
 	private final String name;
+	private final StringMatcher matcher;
 
 	/**
 	 * Constructs a class name matching query.
@@ -19,6 +20,7 @@ public class ClassNameQuery extends Query {
 	public ClassNameQuery(String name, StringMatchMode stringMode) {
 		super(QueryType.CLASS_NAME, stringMode);
 		this.name = name;
+		this.matcher = stringMode.compile(name);
 	}
 
 	/**
@@ -30,8 +32,25 @@ public class ClassNameQuery extends Query {
 	 * 		Name of class.
 	 */
 	public void match(int access, String name) {
-		if (stringMode.match(this.name, name)) {
+		if (matches(name)) {
 			getMatched().add(new ClassResult(access, name));
 		}
 	}
+
+	/**
+	 * @param name
+	 * 		Name of class.
+	 *
+	 * @return {@code true} if the name matches the specified name pattern.
+	 */
+	public boolean matches(String name) {
+		return matcher.matches(name);
+	}
+
+	/**
+	 * @return Class name pattern.
+	 */
+	public String getName() {
+		return name;
+	}
 }
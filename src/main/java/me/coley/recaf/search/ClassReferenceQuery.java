@@ -9,6 +9,7 @@ import java.util.function.IntSupplier;
  */
 public class ClassReferenceQuery extends Query {
 	private final String name;
+	private final StringMatcher matcher;
 
 	/**
 	 * Constructs a class referencing query.
@@ -32,6 +33,7 @@ public class ClassReferenceQuery extends Query {
 	public ClassReferenceQuery(String name, StringMatchMode stringMode) {
 		super(QueryType.CLASS_REFERENCE, stringMode);
 		this.name = name;
+		this.matcher = stringMode.compile(name);
 	}
 
 	/**
@@ -43,8 +45,25 @@ public class ClassReferenceQuery extends Query {
 	 * 		Name of class.
 	 */
 	public void match(IntSupplier access, String name) {
-		if (stringMode.match(this.name, name)) {
+		if (matches(name)) {
 			getMatched().add(new ClassResult(access.getAsInt(), name));
 		}
 	}
+
+	/**
+	 * @param name
+	 * 		Name of class.
+	 *
+	 * @return {@code true} if the given class matches the specified name pattern.
+	 */
+	public boolean matches(String name) {
+		return matcher.matches(name);
+	}
+
+	/**
+	 * @return Class name pattern.
+	 */
+	public String getName() {
+		return name;
+	}
 }
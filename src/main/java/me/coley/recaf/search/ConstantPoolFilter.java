@@ -0,0 +1,440 @@
+package me.coley.recaf.search;
+
+import org.objectweb.asm.ClassReader;
+
+import java.util.*;
+
+/**
+ * Checks if a class can have results for a set of queries by only reading its constant pool.
+ * <br>
+ * Every name, descriptor and constant that a query is given while visiting a class comes from the
+ * class's constant pool, so a class whose pool has nothing matching the queries can be skipped
+ * without visiting the rest of the class. The filter is created once per search, with the names
+ * referenced by the queries compiled into a single {@link AhoCorasick} automaton, so each entry of
+ * a pool is scanned once no matter how many reference queries there are.
+ *
+ * @author Matt
+ */
+final class ConstantPoolFilter {
+	private static final int TAG_UTF8 = 1;
+	private static final int TAG_INTEGER = 3;
+	private static final int TAG_FLOAT = 4;
+	private static final int TAG_LONG = 5;
+	private static final int TAG_DOUBLE = 6;
+	private static final int TAG_CLASS = 7;
+	private static final int TAG_STRING = 8;
+	private static final int TAG_NAME_AND_TYPE = 12;
+	private static final int TAG_METHOD_TYPE = 16;
+	private static final int TAG_MODULE = 19;
+	private static final int TAG_PACKAGE = 20;
+	private static final Set<String> ANNOTATION_ATTRIBUTES = new HashSet<>(Arrays.asList(
+			"RuntimeVisibleAnnotations", "RuntimeInvisibleAnnotations",
+			"RuntimeVisibleParameterAnnotations", "RuntimeInvisibleParameterAnnotations",
+			"RuntimeVisibleTypeAnnotations", "RuntimeInvisibleTypeAnnotations",
+			"AnnotationDefault"));
+	private final Collection<Query> queries;
+	private final Map<String, Integer> parts = new LinkedHashMap<>();
+	private final AhoCorasick automaton;
+
+	/**
+	 * @param queries
+	 * 		Queries of a search, all {@link #supports(Collection) supported}.
+	 */
+	ConstantPoolFilter(Collection<Query> queries) {
+		this.queries = queries;
+		for (Query query : queries) {
+			if (query instanceof ClassReferenceQuery) {
+				addPart(((ClassReferenceQuery) query).getName());
+			} else if (query instanceof MemberReferenceQuery) {
+				MemberReferenceQuery memberQuery = (MemberReferenceQuery) query;
+				addPart(memberQuery.getOwner());
+				addPart(memberQuery.getName());
+				addPart(memberQuery.getDesc());
+			}
+		}
+		automaton = parts.isEmpty() ? null : new AhoCorasick(new ArrayList<>(parts.keySet()));
+	}
+
+	private void addPart(String part) {
+		if (part != null && !parts.containsKey(part))
+			parts.put(part, parts.size());
+	}
+
+	/**
+	 * @param queries
+	 * 		Queries of a search.
+	 *
+	 * @return {@code true} when every query can be checked against a constant pool, so that classes
+	 * may be skipped.
+	 */
+	static boolean supports(Collection<Query> queries) {
+		if (queries.isEmpty())
+			return false;
+		for (Query query : queries)
+			if (!supports(query))
+				return false;
+		return true;
+	}
+
+	private static boolean supports(Query query) {
+		if (query instanceof ClassNameQuery || query instanceof StringQuery)
+			return true;
+		if (query instanceof ClassReferenceQuery || query instanceof MemberReferenceQuery)
+			// Names are checked for containment, which does not work for patterns
+			return query.stringMode != StringMatchMode.REGEX;
+		if (query instanceof ValueQuery) {
+			// Int values are also given by instruction operands and switch keys
+			Object value = ((ValueQuery) query).getValue();
+			return value instanceof Long || value instanceof Float || value instanceof Double;
+		}
+		return false;
+	}
+
+	/**
+	 * @param reader
+	 * 		Class to read the constant pool of.
+	 *
+	 * @return {@code true} if visiting the class may give results for any of the queries.
+	 */
+	boolean mayMatch(ClassReader reader) {
+		Pool pool = new Pool(reader);
+		BitSet found = null;
+		for (Query query : queries) {
+			if (query instanceof ClassReferenceQuery || query instanceof MemberReferenceQuery) {
+				// Find all referenced names in one scan of the pool
+				if (found == null) {
+					found = new BitSet(parts.size());
+					for (String text : pool.utf8)
+						automaton.find(text, found);
+				}
+				if (mayMatch(query, found))
+					return true;
+			} else if (mayMatch(query, pool)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean mayMatch(Query query, BitSet found) {
+		// Referenced names may be part of a descriptor or signature
+		if (query instanceof ClassReferenceQuery)
+			return hasPart(found, ((ClassReferenceQuery) query).getName());
+		MemberReferenceQuery memberQuery = (MemberReferenceQuery) query;
+		return hasPart(found, memberQuery.getOwner()) && hasPart(found, memberQuery.getName()) &&
+				hasPart(found, memberQuery.getDesc());
+	}
+
+	private boolean hasPart(BitSet found, String part) {
+		return part == null || found.get(parts.get(part));
+	}
+
+	private static boolean mayMatch(Query query, Pool pool) {
+		if (query instanceof ClassNameQuery)
+			return ((ClassNameQuery) query).matches(pool.className);
+		if (query instanceof StringQuery) {
+			StringQuery stringQuery = (StringQuery) query;
+			for (String text : pool.getSearchableStrings())
+				if (stringQuery.matches(text))
+					return true;
+			return false;
+		}
+		if (query instanceof ValueQuery)
+			return pool.numbers.contains(((ValueQuery) query).getValue());
+		return true;
+	}
+
+	/**
+	 * @param reader
+	 * 		Class to read the constant pool of.
+	 *
+	 * @return Strings that can be given to a {@link StringQuery} when visiting the class.
+	 */
+	static Set<String> getSearchableStrings(ClassReader reader) {
+		return new Pool(reader).getSearchableStrings();
+	}
+
+	/**
+	 * @param reader
+	 * 		Class to read the constant pool of.
+	 *
+	 * @return Names that a {@link org.objectweb.asm.commons.Remapper} can be given when visiting
+	 * the class. These are the class names of the pool, the class names in any descriptors and
+	 * signatures, the outer class names of inner classes, and the names of referenced and declared
+	 * members.
+	 */
+	static Set<String> getNames(ClassReader reader) {
+		Set<String> classNames = new HashSet<>();
+		Set<String> memberNames = new HashSet<>();
+		char[] buffer = new char[reader.getMaxStringLength()];
+		// UTF8 entries used by other constants or by member declarations have a known role.
+		// The others are used by attributes, such as signatures, annotations and debug information.
+		BitSet known = new BitSet(reader.getItemCount());
+		for (int i = 1; i < reader.getItemCount(); i++) {
+			int offset = reader.getItem(i);
+			if (offset == 0)
+				continue;
+			switch(reader.readByte(offset - 1)) {
+				case TAG_CLASS:
+					known.set(reader.readUnsignedShort(offset));
+					String name = reader.readUTF8(offset, buffer);
+					// Array types are given as descriptors
+					if (name.startsWith("["))
+						addTypeNames(name, classNames);
+					else
+						classNames.add(name);
+					break;
+				case TAG_NAME_AND_TYPE:
+					known.set(reader.readUnsignedShort(offset));
+					known.set(reader.readUnsignedShort(offset + 2));
+					memberNames.add(reader.readUTF8(offset, buffer));
+					addTypeNames(reader.readUTF8(offset + 2, buffer), classNames);
+					break;
+				case TAG_METHOD_TYPE:
+					known.set(reader.readUnsignedShort(offset));
+					addTypeNames(reader.readUTF8(offset, buffer), classNames);
+					break;
+				case TAG_STRING:
+				case TAG_MODULE:
+				case TAG_PACKAGE:
+					// Not remapped
+					known.set(reader.readUnsignedShort(offset));
+					break;
+				default:
+					break;
+			}
+		}
+		// Declared fields, then methods
+		int offset = reader.header + 6;
+		offset += 2 + 2 * reader.readUnsignedShort(offset);
+		for (int kind = 0; kind < 2; kind++) {
+			int count = reader.readUnsignedShort(offset);
+			offset += 2;
+			for (int m = 0; m < count; m++) {
+				known.set(reader.readUnsignedShort(offset + 2));
+				known.set(reader.readUnsignedShort(offset + 4));
+				memberNames.add(reader.readUTF8(offset + 2, buffer));
+				addTypeNames(reader.readUTF8(offset + 4, buffer), classNames);
+				int attributes = reader.readUnsignedShort(offset + 6);
+				offset += 8;
+				for (int a = 0; a < attributes; a++)
+					offset += 6 + reader.readInt(offset + 2);
+			}
+		}
+		for (int i = 1; i < reader.getItemCount(); i++) {
+			offset = reader.getItem(i);
+			if (offset != 0 && !known.get(i) && reader.readByte(offset - 1) == TAG_UTF8)
+				addTypeNames(readUtf8(reader, offset), classNames);
+		}
+		// Inner classes are renamed along with their outer classes
+		for (String name : new ArrayList<>(classNames))
+			for (int i = name.indexOf('$', 1); i > 0; i = name.indexOf('$', i + 1))
+				classNames.add(name.substring(0, i));
+		classNames.addAll(memberNames);
+		// Only missing in malformed classes
+		classNames.remove(null);
+		return classNames;
+	}
+
+	/**
+	 * Entries of a class's constant pool that queries can be checked against.
+	 */
+	private static final class Pool {
+		private final String className;
+		private final List<String> utf8 = new ArrayList<>();
+		private final Set<String> strings = new HashSet<>();
+		private final Set<Object> numbers = new HashSet<>();
+		private boolean annotated;
+
+		private Pool(ClassReader reader) {
+			className = reader.getClassName();
+			char[] buffer = new char[reader.getMaxStringLength()];
+			for (int i = 1; i < reader.getItemCount(); i++) {
+				int offset = reader.getItem(i);
+				// Unused slot after long and double entries
+				if (offset == 0)
+					continue;
+				switch(reader.readByte(offset - 1)) {
+					case TAG_UTF8:
+						String text = readUtf8(reader, offset);
+						annotated |= ANNOTATION_ATTRIBUTES.contains(text);
+						utf8.add(text);
+						break;
+					case TAG_STRING:
+						strings.add(reader.readUTF8(offset, buffer));
+						break;
+					case TAG_INTEGER:
+					case TAG_FLOAT:
+					case TAG_LONG:
+					case TAG_DOUBLE:
+						numbers.add(reader.readConst(i, buffer));
+						break;
+					default:
+						break;
+				}
+			}
+		}
+
+		private Set<String> getSearchableStrings() {
+			// Annotation and enum values are not string constants, they point to UTF8 entries directly
+			if (!annotated)
+				return strings;
+			Set<String> searchable = new HashSet<>(strings);
+			searchable.addAll(utf8);
+			return searchable;
+		}
+	}
+
+	/**
+	 * Adds the class names of a descriptor or signature. Other text is ignored.
+	 *
+	 * @param text
+	 * 		Text that may be a descriptor or signature.
+	 * @param names
+	 * 		Set to add the class names to.
+	 */
+	private static void addTypeNames(String text, Set<String> names) {
+		List<String> found = new ArrayList<>();
+		if (parseSignature(text, found))
+			names.addAll(found);
+	}
+
+	private static boolean parseSignature(String text, List<String> names) {
+		// Descriptors are signatures without type parameters and arguments, see JVMS 4.7.9.1
+		int length = text.length();
+		int i = 0;
+		if (length > 0 && text.charAt(0) == '<' && (i = parseTypeParameters(text, 0, names)) < 0)
+			return false;
+		if (i < length && text.charAt(i) == '(') {
+			// Method: (<type>*)<return-type>^<thrown>*
+			i++;
+			while (i >= 0 && i < length && text.charAt(i) != ')')
+				i = parseType(text, i, names);
+			if (i < 0 || i >= length)
+				return false;
+			i = text.startsWith("V", i + 1) ? i + 2 : parseType(text, i + 1, names);
+			while (i >= 0 && i < length && text.charAt(i) == '^')
+				i = parseType(text, i + 1, names);
+			return i == length;
+		}
+		// Field, or class with its super types
+		do {
+			i = parseType(text, i, names);
+		} while (i >= 0 && i < length);
+		return i == length;
+	}
+
+	private static int parseTypeParameters(String text, int i, List<String> names) {
+		// <T:Ljava/lang/Object;U::Ljava/lang/Comparable<TU;>;>
+		int length = text.length();
+		i++;
+		do {
+			int end = parseIdentifier(text, i, ':');
+			if (end < 0)
+				return -1;
+			// Class bound, which may be empty, and interface bounds
+			i = end + 1;
+			if (i < length && text.charAt(i) != ':')
+				i = parseType(text, i, names);
+			while (i >= 0 && i < length && text.charAt(i) == ':')
+				i = parseType(text, i + 1, names);
+		} while (i >= 0 && i < length && text.charAt(i) != '>');
+		return i < 0 || i >= length ? -1 : i + 1;
+	}
+
+	private static int parseType(String text, int i, List<String> names) {
+		if (i < 0 || i >= text.length())
+			return -1;
+		switch(text.charAt(i)) {
+			case 'B':
+			case 'C':
+			case 'D':
+			case 'F':
+			case 'I':
+			case 'J':
+			case 'S':
+			case 'Z':
+				return i + 1;
+			case '[':
+				return parseType(text, i + 1, names);
+			case 'T':
+				int end = parseIdentifier(text, i + 1, ';');
+				return end < 0 ? -1 : end + 1;
+			case 'L':
+				return parseClassType(text, i + 1, names);
+			default:
+				return -1;
+		}
+	}
+
+	private static int parseClassType(String text, int i, List<String> names) {
+		// Inner classes of generic types are named relative to them: Lpkg/Outer<TT;>.Inner;
+		int length = text.length();
+		String name = null;
+		while (true) {
+			int start = i;
+			while (i < length && ";<.".indexOf(text.charAt(i)) < 0) {
+				if ("[>:".indexOf(text.charAt(i)) >= 0)
+					return -1;
+				i++;
+			}
+			if (i == start || i >= length)
+				return -1;
+			name = name == null ? text.substring(start, i) : name + '$' + text.substring(start, i);
+			names.add(name);
+			if (text.charAt(i) == '<' && ((i = parseTypeArguments(text, i, names)) < 0 || i >= length))
+				return -1;
+			if (text.charAt(i) == ';')
+				return i + 1;
+			if (text.charAt(i) != '.')
+				return -1;
+			i++;
+		}
+	}
+
+	private static int parseTypeArguments(String text, int i, List<String> names) {
+		int length = text.length();
+		i++;
+		do {
+			if (i < length && text.charAt(i) == '*') {
+				i++;
+				continue;
+			}
+			// Wildcard bounds
+			if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-'))
+				i++;
+			i = parseType(text, i, names);
+		} while (i >= 0 && i < length && text.charAt(i) != '>');
+		return i < 0 || i >= length ? -1 : i + 1;
+	}
+
+	private static int parseIdentifier(String text, int start, char terminator) {
+		int i = start;
+		while (i < text.length() && text.charAt(i) != terminator) {
+			if (";<>/.[:".indexOf(text.charAt(i)) >= 0)
+				return -1;
+			i++;
+		}
+		return i == start || i >= text.length() ? -1 : i;
+	}
+
+	private static String readUtf8(ClassReader reader, int offset) {
+		// Modified UTF-8, see JVMS 4.4.7
+		int length = reader.readUnsignedShort(offset);
+		int current = offset + 2;
+		int end = current + length;
+		StringBuilder sb = new StringBuilder(length);
+		while (current < end) {
+			int c = reader.readByte(current++);
+			if ((c & 0x80) == 0) {
+				sb.append((char) (c & 0x7F));
+			} else if ((c & 0xE0) == 0xC0) {
+				sb.append((char) (((c & 0x1F) << 6) + (reader.readByte(current++) & 0x3F)));
+			} else {
+				sb.append((char) (((c & 0xF) << 12) + ((reader.readByte(current++) & 0x3F) << 6) +
+						(reader.readByte(current++) & 0x3F)));
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -3,6 +3,10 @@ package me.coley.recaf.search;
 import me.coley.recaf.parse.bytecode.Disassembler;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Utility to allow results to easily be linked with their location.
  *
@@ -68,6 +72,39 @@ public abstract class Context<T extends Context> implements Comparable<Context<?
 	 */
 	public abstract boolean contains(Context<?> other);
 
+	/**
+	 * @return Key that is equal for contexts that compare as equal.
+	 */
+	abstract String key();
+
+	/**
+	 * @return Key that is equal for contexts that are {@link #isSimilar(Context) similar}.
+	 */
+	String similarityKey() {
+		return key();
+	}
+
+	/**
+	 * @return Keys of which any is in the {@link #containedKeys() contained keys} of contexts
+	 * this context {@link #contains(Context) contains}.
+	 */
+	List<String> containerKeys() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @return Keys of which any is in the {@link #containerKeys() container keys} of contexts
+	 * that {@link #contains(Context) contain} this context.
+	 */
+	List<String> containedKeys() {
+		Context<?> root = this;
+		while (root.getParent() != null)
+			root = root.getParent();
+		if (root instanceof ClassContext)
+			return Collections.singletonList("R" + root.key());
+		return Collections.emptyList();
+	}
+
 	/**
 	 * Class context.
 	 */
@@ -139,6 +176,16 @@ public abstract class Context<T extends Context> implements Comparable<Context<?
 			}
 		}
 
+		@Override
+		String key() {
+			return "C" + name;
+		}
+
+		@Override
+		List<String> containerKeys() {
+			return Collections.singletonList("R" + key());
+		}
+
 		@Override
 		public String toString() {
 			return name;
@@ -269,6 +316,16 @@ public abstract class Context<T extends Context> implements Comparable<Context<?
 			return false;
 		}
 
+		@Override
+		String key() {
+			return parent.key() + "\0M" + name + desc;
+		}
+
+		@Override
+		List<String> containerKeys() {
+			return Collections.singletonList("I" + key());
+		}
+
 		@Override
 		public String toString() {
 			String suffix = isMethod() ? name + desc : name + " " + desc;
@@ -322,6 +379,11 @@ public abstract class Context<T extends Context> implements Comparable<Context<?
 			return descriptor;
 		}
 
+		@Override
+		String key() {
+			return parent.key() + "\0L" + index;
+		}
+
 		@Override
 		public boolean contains(Context<?> other) {
 			return false;
@@ -365,6 +427,11 @@ public abstract class Context<T extends Context> implements Comparable<Context<?
 			return type;
 		}
 
+		@Override
+		String key() {
+			return parent.key() + "\0T" + type;
+		}
+
 		@Override
 		public boolean contains(Context<?> other) {
 			return false;
@@ -439,6 +506,24 @@ public abstract class Context<T extends Context> implements Comparable<Context<?
 			return false;
 		}
 
+		@Override
+		String key() {
+			return parent.key() + "\0I" + pos;
+		}
+
+		@Override
+		String similarityKey() {
+			// Instructions in the same method are similar
+			return parent.key() + "\0I";
+		}
+
+		@Override
+		List<String> containedKeys() {
+			List<String> keys = new ArrayList<>(super.containedKeys());
+			keys.add("I" + parent.key());
+			return keys;
+		}
+
 		@Override
 		public String toString() {
 			return parent.toString() + " " + pos + ":" + Disassembler.insn(insn);
@@ -496,6 +581,23 @@ public abstract class Context<T extends Context> implements Comparable<Context<?
 			return false;
 		}
 
+		@Override
+		String key() {
+			return parent.key() + "\0A" + type;
+		}
+
+		@Override
+		List<String> containerKeys() {
+			return Collections.singletonList("A" + key());
+		}
+
+		@Override
+		List<String> containedKeys() {
+			List<String> keys = new ArrayList<>(super.containedKeys());
+			keys.add("A" + parent.key());
+			return keys;
+		}
+
 		@Override
 		public String toString() {
 			return "@" + type + " " + parent.toString();
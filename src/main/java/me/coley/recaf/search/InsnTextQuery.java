@@ -1,9 +1,13 @@
 package me.coley.recaf.search;
 
+import me.coley.recaf.util.OpcodeUtil;
 import me.coley.recaf.util.StringUtil;
+import org.objectweb.asm.Opcodes;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Query to find instructions based off of their disassembled representation.
@@ -12,6 +16,8 @@ import java.util.List;
  */
 public class InsnTextQuery extends Query {
 	private final List<String> lines;
+	private final List<StringMatcher> matchers = new ArrayList<>();
+	private final Map<Integer, Integer> requiredOpcodes = new HashMap<>();
 
 	/**
 	 * Constructs a instruction text query.
@@ -24,6 +30,12 @@ public class InsnTextQuery extends Query {
 	public InsnTextQuery(List<String> lines, StringMatchMode stringMode) {
 		super(QueryType.INSTRUCTION_TEXT, stringMode);
 		this.lines = lines;
+		for (String line : lines) {
+			matchers.add(stringMode.compile(line));
+			int opcode = requiredOpcode(line);
+			if (opcode >= 0)
+				requiredOpcodes.merge(opcode, 1, Integer::sum);
+		}
 	}
 
 	/**
@@ -47,10 +59,9 @@ public class InsnTextQuery extends Query {
 			// - If matching for all lines, return the match
 			// - If a line doesn't match skip to the next method insn starting point
 			for (int j = 0; j < lines.size(); j++) {
-				String line = lines.get(j);
 				String lineDis = codeLines[i+j];
 				ret.add(lineDis);
-				if (!stringMode.match(line, lineDis)) {
+				if (!matchers.get(j).matches(lineDis)) {
 					match = false;
 					break;
 				}
@@ -62,4 +73,90 @@ public class InsnTextQuery extends Query {
 			}
 		}
 	}
+
+	/**
+	 * @param histogram
+	 * 		Number of instructions of each opcode in a method.
+	 *
+	 * @return {@code false} if the method does not have the instructions a match would need.
+	 */
+	public boolean mayMatch(int[] histogram) {
+		for (Map.Entry<Integer, Integer> e : requiredOpcodes.entrySet())
+			if (histogram[e.getKey()] < e.getValue())
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return Matcher to feed the lines of a method's disassembled code to one at a time.
+	 * Results are the same as {@link #match(String) matching the full code}.
+	 */
+	public LineMatcher matcher() {
+		return new LineMatcher();
+	}
+
+	/**
+	 * @param line
+	 * 		Line to match.
+	 *
+	 * @return Opcode of the instruction any matching line is disassembled from,
+	 * or {@code -1} if the line may match text other than an instruction.
+	 */
+	private int requiredOpcode(String line) {
+		// Only the equality and prefix modes pin down the instruction name
+		String name;
+		int space = line.indexOf(' ');
+		if (space > 0 && (stringMode == StringMatchMode.EQUALS || stringMode == StringMatchMode.STARTS_WITH))
+			name = line.substring(0, space);
+		else if (space < 0 && stringMode == StringMatchMode.EQUALS)
+			name = line;
+		else
+			return -1;
+		if (!OpcodeUtil.getInsnNames().contains(name))
+			return -1;
+		int opcode = OpcodeUtil.nameToOpcode(name);
+		if (opcode < Opcodes.NOP || opcode > Opcodes.IFNONNULL || !name.equals(OpcodeUtil.opcodeToName(opcode)))
+			return -1;
+		return opcode;
+	}
+
+	/**
+	 * Matches lines of disassembled code as they are given, only holding as many lines as the query has.
+	 */
+	public class LineMatcher {
+		private final String[] window = new String[lines.size()];
+		private int count;
+		private int nextStart;
+
+		/**
+		 * @param line
+		 * 		Next line of the method's code.
+		 */
+		public void accept(String line) {
+			int size = window.length;
+			if (size == 0)
+				return;
+			// Like the full text matcher, a match may not end on the last line of the code.
+			// So check the window ending before the new line.
+			int start = count - size;
+			if (start >= nextStart) {
+				List<String> ret = new ArrayList<>();
+				boolean match = true;
+				for (int j = 0; j < size; j++) {
+					String lineDis = window[(start + j) % size];
+					ret.add(lineDis);
+					if (!matchers.get(j).matches(lineDis)) {
+						match = false;
+						break;
+					}
+				}
+				if (match) {
+					getMatched().add(new InsnResult(start, ret));
+					nextStart = start + size;
+				}
+			}
+			window[count % size] = line;
+			count++;
+		}
+	}
 }
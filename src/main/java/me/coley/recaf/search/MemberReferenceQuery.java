@@ -11,6 +11,9 @@ public class MemberReferenceQuery extends Query {
 	private final String owner;
 	private final String name;
 	private final String desc;
+	private final StringMatcher ownerMatcher;
+	private final StringMatcher nameMatcher;
+	private final StringMatcher descMatcher;
 
 	/**
 	 * Constructs a member references query.
@@ -33,6 +36,9 @@ public class MemberReferenceQuery extends Query {
 		this.owner = owner;
 		this.name = name;
 		this.desc = desc;
+		this.ownerMatcher = owner == null ? null : stringMode.compile(owner);
+		this.nameMatcher = name == null ? null : stringMode.compile(name);
+		this.descMatcher = desc == null ? null : stringMode.compile(desc);
 	}
 
 	/**
@@ -48,11 +54,46 @@ public class MemberReferenceQuery extends Query {
 	 * 		Member descriptor.
 	 */
 	public void match(IntSupplier access, String owner, String name, String desc) {
-		boolean hasOwner = this.owner == null || stringMode.match(this.owner, owner);
-		boolean hasName = this.name == null || stringMode.match(this.name, name);
-		boolean hasDesc = this.desc == null || stringMode.match(this.desc, desc);
-		if(hasOwner && hasName && hasDesc) {
+		if(matches(owner, name, desc)) {
 			getMatched().add(new MemberResult(access.getAsInt(), owner, name, desc));
 		}
 	}
+
+	/**
+	 * @param owner
+	 * 		Name of class containing the member.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor.
+	 *
+	 * @return {@code true} if the given member matches the specified member.
+	 */
+	public boolean matches(String owner, String name, String desc) {
+		boolean hasOwner = ownerMatcher == null || ownerMatcher.matches(owner);
+		boolean hasName = nameMatcher == null || nameMatcher.matches(name);
+		boolean hasDesc = descMatcher == null || descMatcher.matches(desc);
+		return hasOwner && hasName && hasDesc;
+	}
+
+	/**
+	 * @return Member owner pattern, {@code null} to match any owner.
+	 */
+	public String getOwner() {
+		return owner;
+	}
+
+	/**
+	 * @return Member name pattern, {@code null} to match any name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return Member descriptor pattern, {@code null} to match any descriptor.
+	 */
+	public String getDesc() {
+		return desc;
+	}
 }
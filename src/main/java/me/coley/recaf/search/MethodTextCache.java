@@ -0,0 +1,61 @@
+package me.coley.recaf.search;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of disassembled method code, so that repeated {@link InsnTextQuery instruction searches}
+ * do not disassemble the same methods again.
+ * <br>
+ * Entries are keyed by a hash of the bytecode of the method's class, so modified classes are
+ * disassembled again. The least recently used entries are dropped once the cached lines exceed
+ * the character budget.
+ *
+ * @author Matt
+ */
+final class MethodTextCache {
+	private static final long MAX_CHARS = 8_000_000;
+	private static final Map<String, String[]> CACHE = new LinkedHashMap<>(256, 0.75F, true);
+	private static long chars;
+
+	private MethodTextCache() {}
+
+	/**
+	 * @param key
+	 * 		Key of the method's bytecode.
+	 *
+	 * @return Cached lines of the method's code, or {@code null} if not cached.
+	 */
+	static synchronized String[] get(String key) {
+		return CACHE.get(key);
+	}
+
+	/**
+	 * @param key
+	 * 		Key of the method's bytecode.
+	 * @param lines
+	 * 		Lines of the method's code.
+	 */
+	static synchronized void put(String key, String[] lines) {
+		long size = size(lines);
+		if (size > MAX_CHARS / 4)
+			return;
+		String[] old = CACHE.put(key, lines);
+		if (old != null)
+			chars -= size(old);
+		chars += size;
+		Iterator<String[]> it = CACHE.values().iterator();
+		while (chars > MAX_CHARS && it.hasNext()) {
+			chars -= size(it.next());
+			it.remove();
+		}
+	}
+
+	private static long size(String[] lines) {
+		long size = 0;
+		for (String line : lines)
+			size += line.length();
+		return size;
+	}
+}
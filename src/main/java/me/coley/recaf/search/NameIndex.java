@@ -0,0 +1,42 @@
+package me.coley.recaf.search;
+
+import me.coley.recaf.workspace.Workspace;
+import org.objectweb.asm.ClassReader;
+
+import java.util.*;
+
+/**
+ * Index of the class and member names mentioned in the constant pools of classes in the primary
+ * resource.
+ * <br>
+ * A class can only be changed by a mapping if its constant pool mentions the mapped class, or the
+ * mapped member's name. Names include the class names inside descriptors and signatures, and the
+ * outer class names of inner classes, so the classes affected by renaming a class can be found
+ * without visiting every class.
+ *
+ * @author Matt
+ */
+public class NameIndex extends PrimaryIndex<String> {
+	/**
+	 * @param workspace
+	 * 		Workspace with the primary resource to index.
+	 */
+	public NameIndex(Workspace workspace) {
+		super(workspace, "names");
+	}
+
+	/**
+	 * @param name
+	 * 		Internal class name, or member name.
+	 *
+	 * @return Names of classes in the primary resource whose constant pool mentions the name.
+	 */
+	public Set<String> getClasses(String name) {
+		return lookup(name);
+	}
+
+	@Override
+	protected Collection<String> extract(String name, byte[] value) {
+		return ConstantPoolFilter.getNames(new ClassReader(value));
+	}
+}
@@ -0,0 +1,187 @@
+package me.coley.recaf.search;
+
+import me.coley.recaf.util.struct.BulkBiConsumer;
+import me.coley.recaf.util.struct.ListeningMap;
+import me.coley.recaf.workspace.Workspace;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Base for inverted indexes of content extracted from the classes in the primary resource, such as
+ * their references or strings.
+ * <br>
+ * Each key is stored once, with postings of the classes it was extracted from. The index is built
+ * the first time it is used, which extracts the keys of every class in the primary resource.
+ * After that it is kept up to date as classes are put or removed.
+ *
+ * @param <K>
+ * 		Type of extracted keys.
+ *
+ * @author Matt
+ */
+public abstract class PrimaryIndex<K> {
+	private final Map<K, Set<String>> postings = new ConcurrentHashMap<>();
+	private final Map<String, Collection<K>> indexed = new ConcurrentHashMap<>();
+	private final BiConsumer<String, byte[]> putListener =
+			BulkBiConsumer.of(this::onPut, items -> items.forEach(this::onPut));
+	private final Consumer<Object> removeListener = key -> onRemove((String) key);
+	private final Workspace workspace;
+	private final String kind;
+	private volatile boolean built;
+
+	/**
+	 * @param workspace
+	 * 		Workspace with the primary resource to index.
+	 * @param kind
+	 * 		Name of the kind of keys, used in log messages.
+	 */
+	protected PrimaryIndex(Workspace workspace, String kind) {
+		this.workspace = workspace;
+		this.kind = kind;
+		ListeningMap<String, byte[]> classes = workspace.getPrimary().getClasses();
+		classes.getPutListeners().add(putListener);
+		classes.getRemoveListeners().add(removeListener);
+	}
+
+	/**
+	 * Stop tracking changes to the workspace's primary classes.
+	 */
+	public void close() {
+		ListeningMap<String, byte[]> classes = workspace.getPrimary().getClasses();
+		classes.getPutListeners().remove(putListener);
+		classes.getRemoveListeners().remove(removeListener);
+	}
+
+	/**
+	 * @param name
+	 * 		Name of the class.
+	 * @param value
+	 * 		Bytecode of the class.
+	 *
+	 * @return Keys of the class.
+	 *
+	 * @throws Exception
+	 * 		When the class cannot be parsed. The class is indexed without keys.
+	 */
+	protected abstract Collection<K> extract(String name, byte[] value) throws Exception;
+
+	/**
+	 * Called when a key is extracted from its first class.
+	 *
+	 * @param key
+	 * 		Key added to the index.
+	 */
+	protected void onKeyAdded(K key) {}
+
+	/**
+	 * Called when the last class of a key is removed.
+	 *
+	 * @param key
+	 * 		Key removed from the index.
+	 */
+	protected void onKeyRemoved(K key) {}
+
+	/**
+	 * @return Workspace with the indexed primary resource.
+	 */
+	protected Workspace getWorkspace() {
+		return workspace;
+	}
+
+	/**
+	 * @param key
+	 * 		Extracted key.
+	 *
+	 * @return Names of classes in the primary resource the key was extracted from.
+	 */
+	protected Set<String> lookup(K key) {
+		ensureBuilt();
+		Set<String> classes = postings.get(key);
+		return classes == null ? Collections.emptySet() : Collections.unmodifiableSet(classes);
+	}
+
+	/**
+	 * @return Map of each key to the classes it was extracted from.
+	 */
+	protected Map<K, Set<String>> getPostings() {
+		ensureBuilt();
+		return Collections.unmodifiableMap(postings);
+	}
+
+	/**
+	 * @return Number of distinct keys in the index.
+	 */
+	public int size() {
+		ensureBuilt();
+		return postings.size();
+	}
+
+	/**
+	 * Builds the index if it has not been used yet.
+	 */
+	protected void ensureBuilt() {
+		if (built)
+			return;
+		synchronized(this) {
+			if (built)
+				return;
+			long start = System.currentTimeMillis();
+			for (Map.Entry<String, byte[]> e : workspace.getPrimary().getClasses().entrySet())
+				add(e.getKey(), e.getValue());
+			built = true;
+			debug("Indexed {} {} of {} classes in {}ms", postings.size(), kind, indexed.size(),
+					System.currentTimeMillis() - start);
+		}
+	}
+
+	private synchronized void onPut(String name, byte[] value) {
+		// Nothing to update until the index is first used
+		if (built)
+			add(name, value);
+	}
+
+	private synchronized void onRemove(String name) {
+		if (built)
+			remove(name);
+	}
+
+	private void add(String name, byte[] value) {
+		remove(name);
+		Collection<K> keys;
+		try {
+			keys = extract(name, value);
+		} catch(Exception ex) {
+			// Unparsable classes have nothing to search for
+			debug("Failed to index {} of class '{}': {}", kind, name, ex.getMessage());
+			keys = Collections.emptySet();
+		}
+		indexed.put(name, keys);
+		for (K key : keys) {
+			Set<String> classes = postings.get(key);
+			if (classes == null) {
+				classes = ConcurrentHashMap.newKeySet();
+				postings.put(key, classes);
+				onKeyAdded(key);
+			}
+			classes.add(name);
+		}
+	}
+
+	private void remove(String name) {
+		Collection<K> keys = indexed.remove(name);
+		if (keys == null)
+			return;
+		for (K key : keys) {
+			Set<String> classes = postings.get(key);
+			if (classes != null && classes.remove(name) && classes.isEmpty()) {
+				postings.remove(key);
+				onKeyRemoved(key);
+			}
+		}
+	}
+}
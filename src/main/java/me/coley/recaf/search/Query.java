@@ -10,7 +10,7 @@ import java.util.*;
 public abstract class Query {
 	private final QueryType type;
 	protected final StringMatchMode stringMode;
-	protected final List<SearchResult> matched = new ArrayList<>();
+	private final ThreadLocal<List<SearchResult>> matched = ThreadLocal.withInitial(ArrayList::new);
 
 	/**
 	 * Baseline query.
@@ -43,11 +43,12 @@ public abstract class Query {
 	}
 
 	/**
-	 * A temporary storage of results.
+	 * A temporary storage of results. Each thread has its own storage so that classes can be
+	 * searched in parallel.
 	 *
 	 * @return List of results matched.
 	 */
 	public List<SearchResult> getMatched() {
-		return matched;
+		return matched.get();
 	}
 }
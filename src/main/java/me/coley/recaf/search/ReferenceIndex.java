@@ -0,0 +1,131 @@
+package me.coley.recaf.search;
+
+import me.coley.recaf.workspace.Workspace;
+import org.objectweb.asm.ClassReader;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+
+/**
+ * Inverted index of the classes and members referenced by each class in the primary resource.
+ * <br>
+ * It is used to narrow down the classes a {@link ClassReferenceQuery} or
+ * {@link MemberReferenceQuery} search has to visit. The remaining classes are still searched
+ * normally, so results keep their full context.
+ *
+ * @author Matt
+ */
+public class ReferenceIndex extends PrimaryIndex<ReferenceIndex.Reference> {
+	/**
+	 * @param workspace
+	 * 		Workspace with the primary resource to index.
+	 */
+	public ReferenceIndex(Workspace workspace) {
+		super(workspace, "references");
+	}
+
+	/**
+	 * @param type
+	 * 		Internal name of a class.
+	 *
+	 * @return Names of classes in the primary resource that reference the given class.
+	 */
+	public Set<String> getClassReferences(String type) {
+		return lookup(new Reference(type, null, null));
+	}
+
+	/**
+	 * @param owner
+	 * 		Name of class containing the member.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor.
+	 *
+	 * @return Names of classes in the primary resource that reference the given member.
+	 */
+	public Set<String> getMemberReferences(String owner, String name, String desc) {
+		return lookup(new Reference(owner, name, desc));
+	}
+
+	/**
+	 * @param query
+	 * 		Query of a search.
+	 *
+	 * @return Names of classes that may have results for the query, or {@code null} if the query
+	 * cannot be answered by the index and all classes must be searched.
+	 */
+	public Set<String> getCandidates(Query query) {
+		if (!(query instanceof ClassReferenceQuery) && !(query instanceof MemberReferenceQuery))
+			return null;
+		Set<String> candidates = new HashSet<>();
+		if (query instanceof ClassReferenceQuery) {
+			ClassReferenceQuery classQuery = (ClassReferenceQuery) query;
+			getPostings().forEach((reference, classes) -> {
+				if (reference.name == null && classQuery.matches(reference.owner))
+					candidates.addAll(classes);
+			});
+		} else {
+			MemberReferenceQuery memberQuery = (MemberReferenceQuery) query;
+			getPostings().forEach((reference, classes) -> {
+				if (reference.name != null && memberQuery.matches(reference.owner, reference.name, reference.desc))
+					candidates.addAll(classes);
+			});
+		}
+		return candidates;
+	}
+
+	@Override
+	protected Collection<Reference> extract(String name, byte[] value) {
+		Set<Reference> references = new HashSet<>();
+		ClassReferenceQuery classRecorder = new ClassReferenceQuery("") {
+			@Override
+			public void match(IntSupplier access, String type) {
+				references.add(new Reference(type, null, null));
+			}
+		};
+		MemberReferenceQuery memberRecorder = new MemberReferenceQuery("", "", "", StringMatchMode.EQUALS) {
+			@Override
+			public void match(IntSupplier access, String owner, String member, String desc) {
+				references.add(new Reference(owner, member, desc));
+			}
+		};
+		// Collect references with the same visitors used by searches,
+		// so that the index records exactly what the queries will be given.
+		SearchCollector collector = new SearchCollector(getWorkspace(),
+				Arrays.asList(classRecorder, memberRecorder));
+		new ClassReader(value).accept(new SearchClassVisitor(collector), ClassReader.SKIP_FRAMES);
+		return references;
+	}
+
+	/**
+	 * Referenced class, or member when a name is given.
+	 */
+	static final class Reference {
+		private final String owner;
+		private final String name;
+		private final String desc;
+
+		private Reference(String owner, String name, String desc) {
+			this.owner = owner;
+			this.name = name;
+			this.desc = desc;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (!(other instanceof Reference))
+				return false;
+			Reference reference = (Reference) other;
+			return owner.equals(reference.owner) && Objects.equals(name, reference.name) &&
+					Objects.equals(desc, reference.desc);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(owner, name, desc);
+		}
+	}
+}
@@ -1,9 +1,20 @@
 package me.coley.recaf.search;
 
+import me.coley.recaf.Recaf;
+import me.coley.recaf.control.Controller;
 import me.coley.recaf.workspace.Workspace;
 import org.objectweb.asm.*;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
 /**
  * Builder for {@link SearchCollector}.
@@ -15,6 +26,14 @@ public class SearchBuilder {
 	private final List<Query> queries = new ArrayList<>();
 	private int readFlags = ClassReader.SKIP_FRAMES;
 	private Collection<String> skipped = Collections.emptyList();
+	private int threads = isParallelSearchEnabled() ? Runtime.getRuntime().availableProcessors() : 1;
+	private BooleanSupplier cancelled = () -> false;
+	private BiConsumer<Integer, Integer> progress;
+	private Consumer<SearchResult> listener;
+	private int limit = Integer.MAX_VALUE;
+	private boolean useIndex = true;
+	private boolean prefilter = true;
+	private boolean cacheText = true;
 
 	private SearchBuilder(Workspace workspace) {
 		this.workspace = workspace;
@@ -71,19 +90,231 @@ public class SearchBuilder {
 		return this;
 	}
 
+	/**
+	 * @param useIndex
+	 * 		{@code true} to only search classes that the workspace's {@link ReferenceIndex} and
+	 * 		{@link StringIndex} list as possible matches, when all queries are supported by them.
+	 * 		An index is built the first time it is used, so the first indexed search for references
+	 * 		or strings in a workspace first visits every class of the primary resource to build it.
+	 *
+	 * @return Builder with the index usage set.
+	 */
+	public SearchBuilder indexed(boolean useIndex) {
+		this.useIndex = useIndex;
+		return this;
+	}
+
+	/**
+	 * @param prefilter
+	 * 		{@code true} to skip classes whose constant pool shows they cannot have results,
+	 * 		when all queries can be checked that way.
+	 *
+	 * @return Builder with the constant pool filter usage set.
+	 *
+	 * @see SearchCollector#getPrunedCount()
+	 */
+	public SearchBuilder prefilter(boolean prefilter) {
+		this.prefilter = prefilter;
+		return this;
+	}
+
+	/**
+	 * @param cacheText
+	 * 		{@code true} to reuse the disassembled code of methods from earlier instruction text
+	 * 		searches, and to cache the code disassembled by this search.
+	 *
+	 * @return Builder with the method text cache usage set.
+	 */
+	public SearchBuilder cacheText(boolean cacheText) {
+		this.cacheText = cacheText;
+		return this;
+	}
+
+	/**
+	 * @param threads
+	 * 		Number of threads to search classes with.
+	 *
+	 * @return Builder that searches classes in parallel. Results are in the same order as a
+	 * single threaded search.
+	 */
+	public SearchBuilder parallel(int threads) {
+		this.threads = Math.max(1, threads);
+		return this;
+	}
+
+	/**
+	 * @param cancelled
+	 * 		Checked before each class is searched, stops the search when it returns {@code true}.
+	 *
+	 * @return Builder that can be cancelled.
+	 *
+	 * @see SearchCollector#isCancelled()
+	 */
+	public SearchBuilder cancelIf(BooleanSupplier cancelled) {
+		this.cancelled = cancelled;
+		return this;
+	}
+
+	/**
+	 * @param progress
+	 * 		Called with the number of searched classes and the total number of classes to search.
+	 * 		May be called from multiple threads.
+	 *
+	 * @return Builder that reports progress.
+	 */
+	public SearchBuilder onProgress(BiConsumer<Integer, Integer> progress) {
+		this.progress = progress;
+		return this;
+	}
+
+	/**
+	 * @param listener
+	 * 		Called with each result as soon as the class it is in has been searched, in the same order
+	 * 		as the collector's results. With a parallel search results are passed on once all classes
+	 * 		before them have been searched.
+	 *
+	 * @return Builder that streams results.
+	 */
+	public SearchBuilder onResult(Consumer<SearchResult> listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * @param limit
+	 * 		Maximum number of results to collect.
+	 *
+	 * @return Builder that stops searching once the given number of results are found.
+	 *
+	 * @see SearchCollector#isLimitReached()
+	 */
+	public SearchBuilder limit(int limit) {
+		this.limit = Math.max(0, limit);
+		return this;
+	}
+
 	/**
 	 * @return SearchCollector from the builder. The search is started by calling this method.
 	 */
 	public SearchCollector build() {
 		SearchCollector collector = new SearchCollector(workspace, queries);
+		collector.setLimit(limit);
+		collector.setListener(listener);
+		// Sort classes so that results are in a consistent order
+		Map<String, byte[]> classes = workspace.getPrimary().getClasses();
+		Set<String> candidates = useIndex ? candidates() : null;
+		List<String> names = new ArrayList<>(candidates == null ? classes.size() : candidates.size());
+		for (String name : candidates == null ? classes.keySet() : candidates)
+			if (!skip(name))
+				names.add(name);
+		Collections.sort(names);
+		ConstantPoolFilter filter = prefilter && ConstantPoolFilter.supports(queries) ?
+				new ConstantPoolFilter(queries) : null;
+		AtomicInteger searched = new AtomicInteger();
+		AtomicBoolean limitReached = new AtomicBoolean();
+		if (threads <= 1 || names.size() < 2) {
+			search(collector, classes, names, filter, limitReached, searched, names.size());
+			return collector;
+		}
+		// Split classes into ordered partitions, each with its own collector.
+		// Merging the partitions in order gives the same results as a serial search.
+		int partitionSize = Math.max(1, names.size() / (threads * 4));
+		List<Future<SearchCollector>> partitions = new ArrayList<>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int i = 0; i < names.size(); i += partitionSize) {
+				List<String> partition = names.subList(i, Math.min(names.size(), i + partitionSize));
+				partitions.add(pool.submit(() -> {
+					SearchCollector partial = new SearchCollector(workspace, queries);
+					partial.setLimit(limit);
+					search(partial, classes, partition, filter, limitReached, searched, names.size());
+					return partial;
+				}));
+			}
+			for (Future<SearchCollector> partition : partitions) {
+				SearchCollector partial = partition.get();
+				collector.merge(partial);
+				if (collector.isLimitReached()) {
+					// Later partitions cannot add anything, stop them
+					limitReached.set(true);
+					break;
+				}
+				if (partial.isCancelled())
+					collector.cancel();
+			}
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			collector.cancel();
+		} catch(ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IllegalStateException("Failed to search classes", cause);
+		} finally {
+			pool.shutdownNow();
+		}
+		return collector;
+	}
+
+	/**
+	 * @return Names of classes that may have results for the queries, or {@code null} if any
+	 * query cannot be answered by the workspace indexes.
+	 */
+	private Set<String> candidates() {
+		if (queries.isEmpty())
+			return null;
+		Set<String> candidates = new HashSet<>();
+		for (Query query : queries) {
+			Set<String> matches = query instanceof StringQuery ?
+					workspace.getStringIndex().getCandidates(query) :
+					workspace.getReferenceIndex().getCandidates(query);
+			if (matches == null)
+				return null;
+			candidates.addAll(matches);
+		}
+		return candidates;
+	}
+
+	private void search(SearchCollector collector, Map<String, byte[]> classes, List<String> names,
+						ConstantPoolFilter filter, AtomicBoolean limitReached, AtomicInteger searched, int total) {
 		SearchClassVisitor sv = new SearchClassVisitor(collector);
-		workspace.getPrimaryClassReaders().forEach(cr -> {
-			String name = cr.getClassName();
-			if (skip(name))
+		boolean cacheCode = cacheText && collector.queries(InsnTextQuery.class).findAny().isPresent();
+		for (String name : names) {
+			if (cancelled.getAsBoolean()) {
+				collector.cancel();
 				return;
-			cr.accept(sv, readFlags);
-		});
-		return collector;
+			}
+			if (collector.isLimitReached() || limitReached.get())
+				return;
+			byte[] value = classes.get(name);
+			// Class may have been removed since the search started
+			if (value != null) {
+				ClassReader reader = new ClassReader(value);
+				if (filter != null && !filter.mayMatch(reader))
+					collector.prune();
+				else {
+					if (cacheCode)
+						sv.setCodeKey(codeKey(value));
+					reader.accept(sv, readFlags);
+				}
+			}
+			int done = searched.incrementAndGet();
+			if (progress != null)
+				progress.accept(done, total);
+		}
+	}
+
+	/**
+	 * @param value
+	 * 		Class bytecode.
+	 *
+	 * @return Key of the bytecode and the read flags, which affect the disassembled code.
+	 */
+	private String codeKey(byte[] value) {
+		CRC32 crc = new CRC32();
+		crc.update(value, 0, value.length);
+		return Long.toHexString(crc.getValue()) + Integer.toHexString(Arrays.hashCode(value)) + ':' +
+				value.length + ':' + readFlags + ':';
 	}
 
 	/**
@@ -95,4 +326,9 @@ public class SearchBuilder {
 	private boolean skip(String name) {
 		return skipped.stream().anyMatch(name::startsWith);
 	}
+
+	private static boolean isParallelSearchEnabled() {
+		Controller controller = Recaf.getController();
+		return controller != null && controller.config().backend().parallelSearch;
+	}
 }
@@ -11,6 +11,7 @@ import org.objectweb.asm.*;
 public class SearchClassVisitor extends ClassVisitor {
 	private final SearchCollector collector;
 	private Context.ClassContext context;
+	private String codeKey;
 
 	/**
 	 * @param collector
@@ -21,6 +22,15 @@ public class SearchClassVisitor extends ClassVisitor {
 		this.collector = collector;
 	}
 
+	/**
+	 * @param codeKey
+	 * 		Key of the bytecode of the next class to visit, used to cache disassembled method code.
+	 * 		{@code null} to not cache it.
+	 */
+	void setCodeKey(String codeKey) {
+		this.codeKey = codeKey;
+	}
+
 	/**
 	 * @return Root search context.
 	 */
@@ -86,6 +96,9 @@ public class SearchClassVisitor extends ClassVisitor {
 					q.match(access, context.getName(), name, descriptor);
 					collector.addMatched(methodContext, q);
 				});
-		return new SearchMethodVisitor(collector, methodContext);
+		SearchMethodVisitor visitor = new SearchMethodVisitor(collector, methodContext);
+		if (codeKey != null)
+			visitor.setCodeKey(codeKey + name + descriptor);
+		return visitor;
 	}
 }
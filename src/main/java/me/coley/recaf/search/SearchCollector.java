@@ -3,18 +3,15 @@ package me.coley.recaf.search;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.Multimaps;
-import me.coley.recaf.util.ClassUtil;
+import me.coley.recaf.workspace.MemberTable;
 import me.coley.recaf.workspace.Workspace;
-import org.objectweb.asm.*;
-import org.objectweb.asm.tree.*;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntSupplier;
 import java.util.stream.Stream;
 
-import static org.objectweb.asm.ClassReader.*;
-
 /*
  * TODO with Search API:
  *  - Method inheritance (child of given)
@@ -34,6 +31,10 @@ public class SearchCollector {
 	private final Map<Query, List<SearchResult>> resultMapView = Multimaps.asMap(results);
 	private final Workspace workspace;
 	private final Collection<Query> queries;
+	private volatile boolean cancelled;
+	private int pruned;
+	private int limit = Integer.MAX_VALUE;
+	private Consumer<SearchResult> listener;
 
 	/**
 	 * Constructs a class search visitor.
@@ -65,25 +66,136 @@ public class SearchCollector {
 		return resultMapView.values().stream()
 				// Cast the stream to Collection for compatibility with LinkedHashSet
 				.map((Function<List<?>, Collection<SearchResult>>) Collection.class::cast)
-				.reduce((a, b) -> {
-					Set<SearchResult> overlapping = new LinkedHashSet<>(Math.min(a.size(), b.size()));
-					for (SearchResult resultA : a) {
-						for (SearchResult resultB : b) {
-							if (resultA.isContextSimilar(resultB) || (
-								resultA.getContext().contains(resultB.getContext()) ||
-								resultB.getContext().contains(resultA.getContext()))) {
-								overlapping.add(resultA);
-								overlapping.add(resultB);
-							}
-						}
-					}
-					return overlapping;
-				})
+				.reduce(SearchCollector::overlap)
 				// Cast the Optional to List for compatibility with Collections.emptyList()
 				.map((Function<Collection<SearchResult>, List<SearchResult>>) ArrayList::new)
 				.orElseGet(Collections::emptyList);
 	}
 
+	/**
+	 * Joins results on the keys of their contexts, instead of comparing every pair of results.
+	 *
+	 * @param a
+	 * 		Results of one query.
+	 * @param b
+	 * 		Results of another query.
+	 *
+	 * @return Results of either query with a {@link SearchResult#isContextSimilar(SearchResult) similar}
+	 * context to, or a context containing or contained by, a result of the other query.
+	 */
+	private static Collection<SearchResult> overlap(Collection<SearchResult> a, Collection<SearchResult> b) {
+		List<SearchResult> listB = new ArrayList<>(b);
+		Map<String, List<Integer>> index = new HashMap<>();
+		for (int i = 0; i < listB.size(); i++) {
+			Context<?> context = listB.get(i).getContext();
+			if (context == null)
+				continue;
+			for (String key : joinKeys(context, false))
+				index.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+		}
+		Set<SearchResult> overlapping = new LinkedHashSet<>(Math.min(a.size(), b.size()));
+		for (SearchResult resultA : a) {
+			Context<?> context = resultA.getContext();
+			if (context == null)
+				continue;
+			// Matches are added in the same order as a nested loop over both lists would
+			SortedSet<Integer> matches = new TreeSet<>();
+			for (String key : joinKeys(context, true)) {
+				List<Integer> indices = index.get(key);
+				if (indices != null)
+					matches.addAll(indices);
+			}
+			if (matches.isEmpty())
+				continue;
+			overlapping.add(resultA);
+			for (int i : matches)
+				overlapping.add(listB.get(i));
+		}
+		return overlapping;
+	}
+
+	private static List<String> joinKeys(Context<?> context, boolean probe) {
+		// Probing keys of one side line up with the indexed keys of the other side:
+		// - similar contexts share a similarity key
+		// - a container's keys are matched against the contained keys of the other side, both ways
+		List<String> keys = new ArrayList<>();
+		keys.add("S" + context.similarityKey());
+		for (String key : context.containerKeys())
+			keys.add((probe ? "D" : "U") + key);
+		for (String key : context.containedKeys())
+			keys.add((probe ? "U" : "D") + key);
+		return keys;
+	}
+
+	/**
+	 * @return {@code true} if the search was cancelled before all classes were searched.
+	 * The collector only holds the results found up to that point.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Mark the search as cancelled.
+	 */
+	void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return Number of classes skipped without being visited, because their constant pool
+	 * showed they cannot have results.
+	 */
+	public int getPrunedCount() {
+		return pruned;
+	}
+
+	/**
+	 * Mark a class as skipped by the constant pool filter.
+	 */
+	void prune() {
+		pruned++;
+	}
+
+	/**
+	 * @return {@code true} if the collector holds as many results as its limit allows,
+	 * in which case the search stops early.
+	 */
+	public boolean isLimitReached() {
+		return results.size() >= limit;
+	}
+
+	/**
+	 * @param limit
+	 * 		Maximum number of results to hold.
+	 */
+	void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * @param listener
+	 * 		Called with each result as it is added.
+	 */
+	void setListener(Consumer<SearchResult> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Adds all results of another collector, after the results already held.
+	 *
+	 * @param other
+	 * 		Collector of the same queries.
+	 */
+	void merge(SearchCollector other) {
+		for (Map.Entry<Query, SearchResult> e : other.results.entries()) {
+			if (isLimitReached())
+				break;
+			add(e.getKey(), e.getValue());
+		}
+		pruned += other.pruned;
+	}
+
 	/**
 	 * @return Flattened list of the {@link #getResultsMap() result map}.
 	 */
@@ -117,11 +229,21 @@ public class SearchCollector {
 		List<SearchResult> matched = query.getMatched();
 		if(context == null)
 			throw new IllegalStateException("Must have context");
-		matched.forEach(res -> res.setContext(context));
-		results.putAll(query, matched);
+		for (SearchResult res : matched) {
+			if (isLimitReached())
+				break;
+			res.setContext(context);
+			add(query, res);
+		}
 		matched.clear();
 	}
 
+	private void add(Query query, SearchResult result) {
+		results.put(query, result);
+		if (listener != null)
+			listener.accept(result);
+	}
+
 	// We use suppliers so that we don't have to lookup this information unless
 	// we are sure that there is a match and this information is needed.
 	// Looking this up in hundreds of cases where we don't need it would just waste time.
@@ -139,35 +261,13 @@ public class SearchCollector {
 		if(name.endsWith(";"))
 			throw new IllegalStateException("Must use internal name, not descriptor!");
 		// Get access
-		if(workspace.hasClass(name))
-			return workspace.getClassReader(name).getAccess();
-		// Unknown
-		return defaultAcc;
+		int access = workspace.getMemberTable().getClassAccess(name);
+		return access == MemberTable.NOT_FOUND ? defaultAcc : access;
 	}
 
 	private int acc(String owner, String name, String desc, int defaultAcc) {
-		if(workspace.hasClass(owner))
-			if(desc.contains("(")) {
-				ClassReader reader = workspace.getClassReader(owner);
-				MethodNode node = ClassUtil.getMethod(
-						reader, SKIP_CODE | SKIP_DEBUG, name, desc);
-				if(node != null)
-					return node.access;
-				// Try and look in parent classes for the method definition
-				int ret = acc(reader.getSuperName(), name, desc, defaultAcc);
-				if(ret != defaultAcc)
-					return ret;
-				for(String itf : reader.getInterfaces()) {
-					ret = acc(itf, name, desc, defaultAcc);
-					if(ret != defaultAcc)
-						return ret;
-				}
-			} else {
-				FieldNode node = ClassUtil.getField(
-						workspace.getClassReader(owner), SKIP_CODE | SKIP_DEBUG, name, desc);
-				if(node != null)
-					return node.access;
-			}
-		return defaultAcc;
+		// Look in the owner and then its parent classes for the member definition
+		int access = workspace.getMemberTable().getAccess(owner, name, desc);
+		return access == MemberTable.NOT_FOUND ? defaultAcc : access;
 	}
 }
@@ -5,11 +5,14 @@ import me.coley.recaf.parse.bytecode.Disassembler;
 import me.coley.recaf.util.AccessFlag;
 import me.coley.recaf.util.InsnUtil;
 import me.coley.recaf.util.Log;
+import me.coley.recaf.util.StringUtil;
 import org.objectweb.asm.*;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static me.coley.recaf.search.SearchCollector.ACC_NOT_FOUND;
@@ -22,6 +25,7 @@ import static me.coley.recaf.search.SearchCollector.ACC_NOT_FOUND;
 public class SearchMethodVisitor extends MethodNode {
 	private final SearchCollector collector;
 	private final Context.MemberContext context;
+	private String codeKey;
 
 	/**
 	 * @param collector
@@ -38,6 +42,15 @@ public class SearchMethodVisitor extends MethodNode {
 		this.context = context;
 	}
 
+	/**
+	 * @param codeKey
+	 * 		Key of the method's bytecode, used to cache its disassembled code.
+	 * 		{@code null} to not cache it.
+	 */
+	void setCodeKey(String codeKey) {
+		this.codeKey = codeKey;
+	}
+
 	@Override
 	public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
 		return new SearchAnnotationVisitor(collector, context, descriptor);
@@ -305,18 +318,49 @@ public class SearchMethodVisitor extends MethodNode {
 		if (AccessFlag.isAbstract(access))
 			return;
 		List<InsnTextQuery> insnTextQueries = collector.queries(InsnTextQuery.class).collect(Collectors.toList());
-		if (!insnTextQueries.isEmpty()) {
+		if (insnTextQueries.isEmpty())
+			return;
+		// Skip queries needing instructions the method does not have
+		int[] histogram = new int[Opcodes.IFNONNULL + 1];
+		for (AbstractInsnNode insn : instructions) {
+			int opcode = insn.getOpcode();
+			if (opcode >= 0 && opcode < histogram.length)
+				histogram[opcode]++;
+		}
+		List<InsnTextQuery.LineMatcher> matchers = insnTextQueries.stream()
+				.filter(q -> q.mayMatch(histogram))
+				.map(InsnTextQuery::matcher)
+				.collect(Collectors.toList());
+		if (matchers.isEmpty())
+			return;
+		Consumer<String> matchLine = line -> matchers.forEach(m -> m.accept(line));
+		String[] cached = codeKey == null ? null : MethodTextCache.get(codeKey);
+		if (cached != null) {
+			for (String line : cached)
+				matchLine.accept(line);
+		} else {
 			try {
-				String code = new Disassembler().disassemble(this);
-				insnTextQueries.forEach(q -> {
-					q.match(code);
-					collector.addMatched(context, q);
+				// Match lines as they are disassembled, instead of splitting the full code afterwards
+				List<String> lines = codeKey == null ? null : new ArrayList<>();
+				new Disassembler().disassemble(this, text -> {
+					for (String line : text.indexOf('\n') < 0 ?
+							new String[] { text } : StringUtil.splitNewline(text)) {
+						matchLine.accept(line);
+						if (lines != null)
+							lines.add(line);
+					}
 				});
+				if (lines != null)
+					MethodTextCache.put(codeKey, lines.toArray(new String[0]));
 			} catch(Exception ex) {
 				String owner = context.getParent().getName();
 				Log.error(ex, "Failed to disassemble method: " + owner + "." + name + desc);
+				// Drop matches found before the failure
+				insnTextQueries.forEach(q -> q.getMatched().clear());
+				return;
 			}
 		}
+		insnTextQueries.forEach(q -> collector.addMatched(context, q));
 	}
 
 	private AbstractInsnNode last() {
@@ -0,0 +1,139 @@
+package me.coley.recaf.search;
+
+import me.coley.recaf.workspace.Workspace;
+import org.objectweb.asm.ClassReader;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the string constants in the constant pools of classes in the primary resource.
+ * <br>
+ * Strings are further indexed by their trigrams so that {@link StringMatchMode#CONTAINS},
+ * {@link StringMatchMode#STARTS_WITH} and {@link StringMatchMode#ENDS_WITH} lookups only have to
+ * check strings sharing all trigrams of the pattern. It is used to narrow down the classes a
+ * {@link StringQuery} search has to visit.
+ *
+ * @author Matt
+ */
+public class StringIndex extends PrimaryIndex<String> {
+	private static final int GRAM = 3;
+	private final Map<Long, Set<String>> grams = new ConcurrentHashMap<>();
+
+	/**
+	 * @param workspace
+	 * 		Workspace with the primary resource to index.
+	 */
+	public StringIndex(Workspace workspace) {
+		super(workspace, "strings");
+	}
+
+	/**
+	 * @param text
+	 * 		String constant.
+	 *
+	 * @return Names of classes in the primary resource containing the given string.
+	 */
+	public Set<String> getClasses(String text) {
+		return lookup(text);
+	}
+
+	/**
+	 * @param query
+	 * 		String query.
+	 *
+	 * @return Distinct strings in the primary resource matching the query.
+	 */
+	public Set<String> getMatching(StringQuery query) {
+		Map<String, Set<String>> postings = getPostings();
+		String pattern = query.getPattern();
+		Set<String> matching = new HashSet<>();
+		switch(query.stringMode) {
+			case EQUALS:
+				if (postings.containsKey(pattern))
+					matching.add(pattern);
+				return matching;
+			case CONTAINS:
+			case STARTS_WITH:
+			case ENDS_WITH:
+				if (pattern.length() >= GRAM) {
+					for (String text : gramCandidates(pattern))
+						if (query.matches(text))
+							matching.add(text);
+					return matching;
+				}
+				break;
+			default:
+				break;
+		}
+		// Patterns without usable trigrams have to check every distinct string
+		for (String text : postings.keySet())
+			if (query.matches(text))
+				matching.add(text);
+		return matching;
+	}
+
+	/**
+	 * @param query
+	 * 		Query of a search.
+	 *
+	 * @return Names of classes that may have results for the query, or {@code null} if the query
+	 * cannot be answered by the index and all classes must be searched.
+	 */
+	public Set<String> getCandidates(Query query) {
+		if (!(query instanceof StringQuery))
+			return null;
+		Set<String> candidates = new HashSet<>();
+		for (String text : getMatching((StringQuery) query))
+			candidates.addAll(lookup(text));
+		return candidates;
+	}
+
+	@Override
+	protected Collection<String> extract(String name, byte[] value) {
+		return ConstantPoolFilter.getSearchableStrings(new ClassReader(value));
+	}
+
+	@Override
+	protected void onKeyAdded(String text) {
+		for (long gram : grams(text))
+			grams.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(text);
+	}
+
+	@Override
+	protected void onKeyRemoved(String text) {
+		for (long gram : grams(text)) {
+			Set<String> set = grams.get(gram);
+			if (set != null && set.remove(text) && set.isEmpty())
+				grams.remove(gram);
+		}
+	}
+
+	private Collection<String> gramCandidates(String pattern) {
+		// Intersect the strings of each trigram, starting with the rarest
+		List<Set<String>> sets = new ArrayList<>();
+		for (long gram : grams(pattern)) {
+			Set<String> set = grams.get(gram);
+			if (set == null)
+				return Collections.emptySet();
+			sets.add(set);
+		}
+		sets.sort(Comparator.comparingInt(Set::size));
+		List<String> candidates = new ArrayList<>();
+		outer:
+		for (String text : sets.get(0)) {
+			for (int i = 1; i < sets.size(); i++)
+				if (!sets.get(i).contains(text))
+					continue outer;
+			candidates.add(text);
+		}
+		return candidates;
+	}
+
+	private static Set<Long> grams(String text) {
+		Set<Long> grams = new HashSet<>();
+		for (int i = 0; i + GRAM <= text.length(); i++)
+			grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+		return grams;
+	}
+}
@@ -1,8 +1,11 @@
 package me.coley.recaf.search;
 
+import jregex.Matcher;
 import jregex.Pattern;
 import me.coley.recaf.util.Log;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiPredicate;
 
 /**
@@ -32,12 +35,31 @@ public enum StringMatchMode {
 	 */
 	REGEX((key, text) -> regmatch(text, key));
 
+	private static final int MAX_CACHED_PATTERNS = 256;
+	private static final Map<String, Optional<Pattern>> PATTERNS = new ConcurrentHashMap<>();
+
 	private static boolean regmatch(String text, String key) {
+		Optional<Pattern> pattern = pattern(key);
+		return pattern.isPresent() && pattern.get().matcher(text).find();
+	}
+
+	private static Optional<Pattern> pattern(String key) {
+		Optional<Pattern> pattern = PATTERNS.get(key);
+		if (pattern == null) {
+			// Searches test the same pattern against every string, so only compile it once
+			if (PATTERNS.size() >= MAX_CACHED_PATTERNS)
+				PATTERNS.clear();
+			pattern = PATTERNS.computeIfAbsent(key, StringMatchMode::compilePattern);
+		}
+		return pattern;
+	}
+
+	private static Optional<Pattern> compilePattern(String key) {
 		try {
-			return new Pattern(key).matcher(text).find();
+			return Optional.of(new Pattern(key));
 		} catch(Exception ex) {
 			Log.error(ex, "Invalid pattern: '{}'", key);
-			return false;
+			return Optional.empty();
 		}
 	}
 
@@ -58,4 +80,81 @@ public enum StringMatchMode {
 	public boolean match(String key, String text) {
 		return matcher.test(key, text);
 	}
+
+	/**
+	 * @param key
+	 * 		Expected pattern.
+	 *
+	 * @return Matcher giving the same results as {@link #match(String, String)} with the key, without
+	 * preparing the key again for each text.
+	 */
+	public StringMatcher compile(String key) {
+		switch(this) {
+			case EQUALS:
+				return key::equals;
+			case CONTAINS:
+				return key.isEmpty() ? text -> true : text -> text.contains(key);
+			case STARTS_WITH:
+				return text -> text.startsWith(key);
+			case ENDS_WITH:
+				int length = key.length();
+				return text -> text.length() >= length && text.startsWith(key, text.length() - length);
+			case REGEX:
+				Optional<Pattern> pattern = pattern(key);
+				if (!pattern.isPresent())
+					return text -> false;
+				// Matchers are reused by each thread instead of created for every text
+				ThreadLocal<Matcher> matcher = ThreadLocal.withInitial(() -> pattern.get().matcher());
+				return text -> {
+					Matcher m = matcher.get();
+					m.setTarget(text);
+					return m.find();
+				};
+			default:
+				throw new IllegalStateException("Unsupported mode: " + this);
+		}
+	}
+
+	/**
+	 * @param keys
+	 * 		Expected patterns.
+	 *
+	 * @return Matcher of text matching any of the keys. Containment, prefixes and suffixes are
+	 * checked for all keys in a single scan of the text.
+	 */
+	public StringMatcher compile(Collection<String> keys) {
+		List<String> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+		if (distinct.isEmpty())
+			return text -> false;
+		if (distinct.size() == 1)
+			return compile(distinct.get(0));
+		switch(this) {
+			case EQUALS:
+				Set<String> set = new HashSet<>(distinct);
+				return set::contains;
+			case CONTAINS:
+				return new AhoCorasick(distinct)::containsAny;
+			case STARTS_WITH:
+				AhoCorasick prefixes = new AhoCorasick(distinct);
+				return text -> prefixes.hasPrefix(text, false);
+			case ENDS_WITH:
+				List<String> reversed = new ArrayList<>(distinct.size());
+				for (String key : distinct)
+					reversed.add(new StringBuilder(key).reverse().toString());
+				AhoCorasick suffixes = new AhoCorasick(reversed);
+				return text -> suffixes.hasPrefix(text, true);
+			case REGEX:
+				List<StringMatcher> matchers = new ArrayList<>(distinct.size());
+				for (String key : distinct)
+					matchers.add(compile(key));
+				return text -> {
+					for (StringMatcher matcher : matchers)
+						if (matcher.matches(text))
+							return true;
+					return false;
+				};
+			default:
+				throw new IllegalStateException("Unsupported mode: " + this);
+		}
+	}
 }
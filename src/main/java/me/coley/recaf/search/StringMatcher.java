@@ -0,0 +1,18 @@
+package me.coley.recaf.search;
+
+/**
+ * Matcher of text against keys, compiled once by {@link StringMatchMode#compile(String)} so that
+ * searches checking many strings do not repeat the work of preparing the keys.
+ *
+ * @author Matt
+ */
+@FunctionalInterface
+public interface StringMatcher {
+	/**
+	 * @param text
+	 * 		Text to test for a match.
+	 *
+	 * @return {@code true} if the given text matches the compiled keys.
+	 */
+	boolean matches(String text);
+}
@@ -7,6 +7,7 @@ package me.coley.recaf.search;
  */
 public class StringQuery extends Query {
 	private final String pattern;
+	private final StringMatcher matcher;
 
 	/**
 	 * Constructs a string matching query.
@@ -19,6 +20,7 @@ public class StringQuery extends Query {
 	public StringQuery(String pattern, StringMatchMode stringMode) {
 		super(QueryType.CLASS_NAME, stringMode);
 		this.pattern = pattern;
+		this.matcher = stringMode.compile(pattern);
 	}
 
 	/**
@@ -28,8 +30,25 @@ public class StringQuery extends Query {
 	 * 		Text to match.
 	 */
 	public void match(String text) {
-		if(stringMode.match(pattern, text)) {
+		if(matches(text)) {
 			getMatched().add(new StringResult(text));
 		}
 	}
+
+	/**
+	 * @param text
+	 * 		Text to match.
+	 *
+	 * @return {@code true} if the text matches the pattern.
+	 */
+	public boolean matches(String text) {
+		return matcher.matches(text);
+	}
+
+	/**
+	 * @return String pattern.
+	 */
+	public String getPattern() {
+		return pattern;
+	}
 }
@@ -30,4 +30,11 @@ public class ValueQuery extends Query {
 			getMatched().add(new ValueResult(value));
 		}
 	}
+
+	/**
+	 * @return Value to match.
+	 */
+	public Object getValue() {
+		return value;
+	}
 }
@@ -332,6 +332,8 @@ public class MainMenu extends MenuBar {
 			exporter.setController(controller);
 			exporter.output = file;
 			exporter.compress = config().compress;
+			exporter.compressionLevel = config().compressionLevel;
+			exporter.incremental = config().incrementalExport;
 			try {
 				exporter.call();
 				config().recentSaveApp = file.getAbsolutePath();
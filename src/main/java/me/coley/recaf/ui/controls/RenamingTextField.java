@@ -290,6 +290,7 @@ public class RenamingTextField extends PopupWindow {
 		Map<String, String> map = field.mapSupplier.get();
 		Mappings mappings = new Mappings(field.controller.getWorkspace());
 		mappings.setMappings(map);
+		mappings.setIncremental(true);
 		mappings.accept(field.controller.getWorkspace().getPrimary());
 		// Refresh affected tabs
 		ViewportTabs tabs = field.controller.windows().getMainWindow().getTabs();
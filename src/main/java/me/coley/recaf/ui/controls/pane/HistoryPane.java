@@ -19,7 +19,7 @@ import me.coley.recaf.ui.controls.SubLabeled;
 import me.coley.recaf.util.ClassUtil;
 import me.coley.recaf.util.LangUtil;
 import me.coley.recaf.util.UiUtil;
-import me.coley.recaf.util.struct.InternalBiConsumer;
+import me.coley.recaf.util.struct.BulkBiConsumer;
 import me.coley.recaf.workspace.History;
 import me.coley.recaf.workspace.JavaResource;
 import me.coley.recaf.workspace.Workspace;
@@ -159,9 +159,9 @@ public class HistoryPane extends BorderPane {
 	private void rehookWorkspace() {
 		// Whenever a class/file is updated, call "update()"
 		controller.getWorkspace().getPrimary().getClasses().getPutListeners()
-				.add(InternalBiConsumer.internal((name, value) -> update()));
+				.add(BulkBiConsumer.internal((name, value) -> update(), items -> update()));
 		controller.getWorkspace().getPrimary().getFiles().getPutListeners()
-				.add(InternalBiConsumer.internal((name, value) -> update()));
+				.add(BulkBiConsumer.internal((name, value) -> update(), items -> update()));
 	}
 
 	/**
@@ -1,10 +1,13 @@
 package me.coley.recaf.ui.controls.tree;
 
 import javafx.application.Platform;
-import me.coley.recaf.util.struct.InternalBiConsumer;
+import me.coley.recaf.util.struct.BulkBiConsumer;
 import me.coley.recaf.util.struct.InternalConsumer;
 import me.coley.recaf.workspace.JavaResource;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * Root item
  *
@@ -42,10 +45,16 @@ public class RootItem extends BaseItem {
 					});
 				}
 			}));
-			resource.getClasses().getPutListeners().add(InternalBiConsumer.internal((k, v) -> {
+			resource.getClasses().getPutListeners().add(BulkBiConsumer.internal((k, v) -> {
 				// Put includes updates, so only "add" the class when it doesn't already exist
 				if (!resource.getClasses().containsKey(k))
 					Platform.runLater(() -> classes.addClass(k));
+			}, items -> {
+				List<String> added = items.keySet().stream()
+						.filter(k -> !resource.getClasses().containsKey(k))
+						.collect(Collectors.toList());
+				if (!added.isEmpty())
+					Platform.runLater(() -> added.forEach(classes::addClass));
 			}));
 		}
 		// files sub-folder
@@ -70,10 +79,16 @@ public class RootItem extends BaseItem {
 					});
 				}
 			}));
-			resource.getFiles().getPutListeners().add(InternalBiConsumer.internal((k, v) -> {
+			resource.getFiles().getPutListeners().add(BulkBiConsumer.internal((k, v) -> {
 				// Put includes updates, so only "add" the file when it doesn't already exist
 				if (!resource.getFiles().containsKey(k))
 					Platform.runLater(() -> files.addFile(k));
+			}, items -> {
+				List<String> added = items.keySet().stream()
+						.filter(k -> !resource.getFiles().containsKey(k))
+						.collect(Collectors.toList());
+				if (!added.isEmpty())
+					Platform.runLater(() -> added.forEach(files::addFile));
 			}));
 		}
 		// TODO: Sub-folders for these?
@@ -0,0 +1,348 @@
+package me.coley.recaf.util;
+
+import me.coley.recaf.workspace.MappedArchive;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Zip archive writer that compresses entries on multiple threads and writes them in order.
+ * <br>
+ * Entries can also be copied as-is from a {@link #setSource(MappedArchive, Predicate) source archive}
+ * when their content is unchanged, skipping recompression entirely.
+ * <br>
+ * Archives with too many entries for the standard end record get zip64 end records. Zip64 entry sizes
+ * and offsets are not supported, see {@link #canWrite(Map)}.
+ *
+ * @author Matt
+ */
+public class ArchiveWriter {
+	private static final int SIG_LOCAL = 0x04034b50;
+	private static final int SIG_CENTRAL = 0x02014b50;
+	private static final int SIG_END = 0x06054b50;
+	private static final int SIG_END64 = 0x06064b50;
+	private static final int SIG_END64_LOCATOR = 0x07064b50;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final int MAX_ENTRIES = 0xFFFF;
+	private static final long MAX_SIZE = 0xFFFFFFFFL;
+	private final boolean compress;
+	private final int level;
+	private final int threads;
+	private MappedArchive source;
+	private Map<String, MappedArchive.Entry> sourceEntries = Collections.emptyMap();
+	private Predicate<String> unmodified = name -> false;
+	private int copiedCount;
+
+	/**
+	 * @param compress
+	 * 		Enable zip compression.
+	 * @param level
+	 * 		Compression level, see {@link Deflater#setLevel(int)}.
+	 * @param threads
+	 * 		Number of threads to compress with.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the compression level is not {@link #isValidLevel(int) valid}.
+	 */
+	public ArchiveWriter(boolean compress, int level, int threads) {
+		if (!isValidLevel(level))
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		this.compress = compress;
+		this.level = level;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @param source
+	 * 		Archive to copy unmodified entries from.
+	 * @param unmodified
+	 * 		Filter for entry names that may be unmodified. The content of matching entries is still
+	 * 		compared with the source entry's size and CRC before the entry is copied.
+	 */
+	public void setSource(MappedArchive source, Predicate<String> unmodified) {
+		this.source = source;
+		this.unmodified = unmodified;
+		this.sourceEntries = new HashMap<>();
+		for (MappedArchive.Entry entry : source.getEntries())
+			sourceEntries.putIfAbsent(entry.getName(), entry);
+	}
+
+	/**
+	 * @return Number of entries copied from the source archive in the last {@link #write(Path, SortedMap) write}.
+	 */
+	public int getCopiedCount() {
+		return copiedCount;
+	}
+
+	/**
+	 * @param level
+	 * 		Compression level.
+	 *
+	 * @return {@code true} when the level is {@link Deflater#DEFAULT_COMPRESSION} or from
+	 * {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+	 */
+	public static boolean isValidLevel(int level) {
+		return level == Deflater.DEFAULT_COMPRESSION ||
+				(level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION);
+	}
+
+	/**
+	 * @param content
+	 * 		Contents to write.
+	 *
+	 * @return {@code true} when the content fits in an archive without zip64 entry sizes and offsets.
+	 */
+	public static boolean canWrite(Map<String, byte[]> content) {
+		long total = 0;
+		for (Map.Entry<String, byte[]> e : content.entrySet())
+			// Deflate can slightly expand incompressible data, plus headers
+			total += e.getValue().length + e.getValue().length / 1000 + 128 + 2L * e.getKey().length();
+		return total < MAX_SIZE;
+	}
+
+	/**
+	 * @param output
+	 * 		File location of the archive.
+	 * @param content
+	 * 		Contents to write. Iterated in sorted order, so that directory entries are written
+	 * 		before the entries inside them.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be written to.
+	 */
+	public void write(Path output, SortedMap<String, byte[]> content) throws IOException {
+		List<Block> blocks = new ArrayList<>();
+		List<Future<Block>> futures = new ArrayList<>();
+		Set<String> dirsVisited = new HashSet<>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		copiedCount = 0;
+		try {
+			for (Map.Entry<String, byte[]> entry : content.entrySet()) {
+				String key = entry.getKey();
+				byte[] data = entry.getValue();
+				// Write directories for upcoming entries if necessary
+				if (key.contains("/")) {
+					String parent = key;
+					List<String> toAdd = new ArrayList<>();
+					do {
+						parent = parent.substring(0, parent.lastIndexOf('/'));
+						if (dirsVisited.add(parent)) {
+							toAdd.add(0, parent + '/');
+						} else break;
+					} while (parent.contains("/"));
+					for (String dir : toAdd)
+						futures.add(pool.submit(() -> new Block(dir)));
+				}
+				futures.add(pool.submit(() -> encode(key, data)));
+			}
+			try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				 OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1048576)) {
+				int[] dosTime = dosTime(LocalDateTime.now());
+				long offset = 0;
+				for (Future<Block> future : futures) {
+					Block block = future.get();
+					if (block.raw != null)
+						copiedCount++;
+					block.offset = offset;
+					offset += writeLocal(out, channel, block, dosTime);
+					if (offset > MAX_SIZE)
+						throw new IOException("Archive too large for a non-zip64 archive: " + output);
+					// Only the central directory data is needed from here on
+					block.data = null;
+					block.raw = null;
+					blocks.add(block);
+				}
+				long centralOffset = offset;
+				for (Block block : blocks)
+					offset += writeCentral(out, block, dosTime);
+				writeEnd(out, blocks.size(), offset - centralOffset, centralOffset);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing archive: " + output, ex);
+		} catch (ExecutionException ex) {
+			throw new IOException("Failed to compress archive entry", ex.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private Block encode(String name, byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		int crcValue = (int) crc.getValue();
+		int method = compress ? ZipEntry.DEFLATED : ZipEntry.STORED;
+		// Copy the entry from the source if the content is the same
+		MappedArchive.Entry original = sourceEntries.get(name);
+		if (original != null && original.getMethod() == method && original.getSize() == data.length &&
+				original.getCrc() == crcValue && unmodified.test(name)) {
+			return new Block(name, method, crcValue, data.length, source.getRawContent(original));
+		}
+		if (!compress)
+			return new Block(name, method, crcValue, data.length, data);
+		Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished())
+				out.write(buffer, 0, deflater.deflate(buffer));
+			return new Block(name, method, crcValue, data.length, out.toByteArray());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static long writeLocal(OutputStream out, FileChannel channel, Block block, int[] dosTime)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(30 + block.name.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(SIG_LOCAL);
+		header.putShort((short) block.version());
+		header.putShort((short) FLAG_UTF8);
+		header.putShort((short) block.method);
+		header.putShort((short) dosTime[0]);
+		header.putShort((short) dosTime[1]);
+		header.putInt(block.crc);
+		header.putInt(block.compressedSize);
+		header.putInt(block.size);
+		header.putShort((short) block.name.length);
+		header.putShort((short) 0);
+		header.put(block.name);
+		out.write(header.array());
+		if (block.raw != null) {
+			// Copy straight from the source mapping
+			out.flush();
+			ByteBuffer raw = block.raw.duplicate();
+			while (raw.hasRemaining())
+				channel.write(raw);
+		} else if (block.data != null) {
+			out.write(block.data);
+		}
+		return header.capacity() + (long) block.compressedSize;
+	}
+
+	private static long writeCentral(OutputStream out, Block block, int[] dosTime) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(46 + block.name.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(SIG_CENTRAL);
+		header.putShort((short) block.version());
+		header.putShort((short) block.version());
+		header.putShort((short) FLAG_UTF8);
+		header.putShort((short) block.method);
+		header.putShort((short) dosTime[0]);
+		header.putShort((short) dosTime[1]);
+		header.putInt(block.crc);
+		header.putInt(block.compressedSize);
+		header.putInt(block.size);
+		header.putShort((short) block.name.length);
+		header.putShort((short) 0); // extra
+		header.putShort((short) 0); // comment
+		header.putShort((short) 0); // disk
+		header.putShort((short) 0); // internal attributes
+		header.putInt(0); // external attributes
+		header.putInt((int) block.offset);
+		header.put(block.name);
+		out.write(header.array());
+		return header.capacity();
+	}
+
+	private static void writeEnd(OutputStream out, int count, long centralSize, long centralOffset)
+			throws IOException {
+		if (count >= MAX_ENTRIES) {
+			// The entry count does not fit, so it is given in a zip64 end record
+			ByteBuffer header = ByteBuffer.allocate(56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(SIG_END64);
+			header.putLong(44); // remaining size of the record
+			header.putShort((short) 45); // version made by
+			header.putShort((short) 45); // version needed
+			header.putInt(0); // disk
+			header.putInt(0); // disk of the central directory
+			header.putLong(count);
+			header.putLong(count);
+			header.putLong(centralSize);
+			header.putLong(centralOffset);
+			header.putInt(SIG_END64_LOCATOR);
+			header.putInt(0); // disk of the zip64 end record
+			header.putLong(centralOffset + centralSize);
+			header.putInt(1); // total disks
+			out.write(header.array());
+			count = MAX_ENTRIES;
+		}
+		ByteBuffer header = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(SIG_END);
+		header.putShort((short) 0);
+		header.putShort((short) 0);
+		header.putShort((short) count);
+		header.putShort((short) count);
+		header.putInt((int) centralSize);
+		header.putInt((int) centralOffset);
+		header.putShort((short) 0);
+		out.write(header.array());
+	}
+
+	private static int[] dosTime(LocalDateTime time) {
+		int dosTime = (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() >> 1);
+		int dosDate = ((Math.max(1980, time.getYear()) - 1980) << 9) | (time.getMonthValue() << 5) |
+				time.getDayOfMonth();
+		return new int[] { dosTime, dosDate };
+	}
+
+	/**
+	 * Encoded entry, ready to be written.
+	 */
+	private static final class Block {
+		private final byte[] name;
+		private final int method;
+		private final int crc;
+		private final int size;
+		private final int compressedSize;
+		private byte[] data;
+		private ByteBuffer raw;
+		private long offset;
+
+		private Block(String directory) {
+			this(directory, ZipEntry.STORED, 0, 0, new byte[0]);
+		}
+
+		private Block(String name, int method, int crc, int size, byte[] data) {
+			this.name = name.getBytes(StandardCharsets.UTF_8);
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+			this.compressedSize = data.length;
+			this.data = data;
+		}
+
+		private Block(String name, int method, int crc, int size, ByteBuffer raw) {
+			this.name = name.getBytes(StandardCharsets.UTF_8);
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+			this.compressedSize = raw.remaining();
+			this.raw = raw;
+		}
+
+		private int version() {
+			return method == ZipEntry.DEFLATED ? 20 : 10;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package me.coley.recaf.util.struct;
+
+import me.coley.recaf.util.InternalElement;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Map listener that can handle many updates in a single call.
+ * See {@link ListeningMap#putAll(Map)}.
+ *
+ * @param <K>
+ *     Key type of the map.
+ * @param <V>
+ *     Value type of the map.
+ *
+ * @author Matt
+ */
+public interface BulkBiConsumer<K, V> extends BiConsumer<K, V> {
+	/**
+	 * @param items
+	 * 		All items being put into the map.
+	 */
+	void acceptAll(Map<K, V> items);
+
+	/**
+	 * @param single
+	 * 		Listener for individual updates.
+	 * @param bulk
+	 * 		Listener for bulk updates.
+	 * @param <K>
+	 *     Key type of the map.
+	 * @param <V>
+	 *     Value type of the map.
+	 *
+	 * @return Listener delegating to the given listeners.
+	 */
+	static <K, V> BulkBiConsumer<K, V> of(BiConsumer<K, V> single, Consumer<Map<K, V>> bulk) {
+		return new BulkBiConsumer<K, V>() {
+			@Override
+			public void acceptAll(Map<K, V> items) {
+				bulk.accept(items);
+			}
+
+			@Override
+			public void accept(K key, V value) {
+				single.accept(key, value);
+			}
+		};
+	}
+
+	/**
+	 * @param single
+	 * 		Listener for individual updates.
+	 * @param bulk
+	 * 		Listener for bulk updates.
+	 * @param <K>
+	 *     Key type of the map.
+	 * @param <V>
+	 *     Value type of the map.
+	 *
+	 * @return Internal listener delegating to the given listeners.
+	 */
+	static <K, V> BulkBiConsumer<K, V> internal(BiConsumer<K, V> single, Consumer<Map<K, V>> bulk) {
+		class Internal implements BulkBiConsumer<K, V>, InternalElement {
+			@Override
+			public void acceptAll(Map<K, V> items) {
+				bulk.accept(items);
+			}
+
+			@Override
+			public void accept(K key, V value) {
+				single.accept(key, value);
+			}
+		}
+		return new Internal();
+	}
+}
@@ -1,6 +1,8 @@
 package me.coley.recaf.util.struct;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -10,14 +12,20 @@ import java.util.function.Consumer;
  * <li>{@link #getPutListeners()}</li>
  * <li>{@link #getRemoveListeners()}</li>
  * </ul>
+ * Listeners may be registered and the map updated from any thread. The map is as thread-safe
+ * as its backing map, so concurrently updated maps should be backed by a concurrent map.
+ * <br>
+ * Bulk updates through {@link #putAll(Map)} or {@link #transaction(Consumer)} notify
+ * {@link BulkBiConsumer bulk listeners} once for the whole update.
  *
  * @param <K> Key type of map.
  * @param <V> Value type of map.
  */
 public class ListeningMap<K, V> implements Map<K, V> {
-	private final Set<BiConsumer<K, V>> putListeners = new HashSet<>();
-	private final Set<Consumer<Object>> removeListeners = new HashSet<>();
-	private Map<K, V> backing;
+	private final Set<BiConsumer<K, V>> putListeners = new CopyOnWriteArraySet<>();
+	private final Set<Consumer<Object>> removeListeners = new CopyOnWriteArraySet<>();
+	private final AtomicInteger backingVersion = new AtomicInteger();
+	private volatile Map<K, V> backing;
 
 	/**
 	 * @param backing
@@ -25,6 +33,17 @@ public class ListeningMap<K, V> implements Map<K, V> {
 	 */
 	public void setBacking(Map<K, V> backing) {
 		this.backing = backing;
+		backingVersion.incrementAndGet();
+	}
+
+	/**
+	 * Listeners are not notified when the backing map is replaced or cleared.
+	 * Users that mirror the content of the map can compare this value to know when to rebuild.
+	 *
+	 * @return Number of times the backing map was replaced or cleared.
+	 */
+	public int getBackingVersion() {
+		return backingVersion.get();
 	}
 
 	/**
@@ -60,14 +79,45 @@ public class ListeningMap<K, V> implements Map<K, V> {
 		return backing.remove(key);
 	}
 
+	/**
+	 * Puts all items into the map. {@link BulkBiConsumer Bulk listeners} are notified once with
+	 * all of the items, other listeners are notified of each item.
+	 *
+	 * @param m
+	 * 		Items to put into the map.
+	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public void putAll(Map<? extends K, ? extends V> m) {
-		for(Map.Entry<? extends K, ? extends V> e : m.entrySet())
-			put(e.getKey(), e.getValue());
+		if (m.isEmpty())
+			return;
+		Map<K, V> items = Collections.unmodifiableMap(new LinkedHashMap<>(m));
+		for (BiConsumer<K, V> listener : putListeners) {
+			if (listener instanceof BulkBiConsumer)
+				((BulkBiConsumer<K, V>) listener).acceptAll(items);
+			else
+				items.forEach(listener);
+		}
+		backing.putAll(items);
+	}
+
+	/**
+	 * Collects changes and applies them as a single {@link #putAll(Map) bulk update}.
+	 *
+	 * @param changes
+	 * 		Action that puts the changes into the given map.
+	 */
+	public void transaction(Consumer<Map<K, V>> changes) {
+		Map<K, V> staged = new LinkedHashMap<>();
+		changes.accept(staged);
+		putAll(staged);
 	}
 
 	@Override
 	public V get(Object key) {
+		// Concurrent backing maps do not allow null lookups
+		if (key == null)
+			return null;
 		return backing.get(key);
 	}
 
@@ -83,17 +133,22 @@ public class ListeningMap<K, V> implements Map<K, V> {
 
 	@Override
 	public boolean containsKey(Object key) {
+		if (key == null)
+			return false;
 		return backing.containsKey(key);
 	}
 
 	@Override
 	public boolean containsValue(Object value) {
+		if (value == null)
+			return false;
 		return backing.containsValue(value);
 	}
 
 	@Override
 	public void clear() {
 		backing.clear();
+		backingVersion.incrementAndGet();
 	}
 
 	@Override
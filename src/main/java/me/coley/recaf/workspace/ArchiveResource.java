@@ -1,7 +1,18 @@
 package me.coley.recaf.workspace;
 
+import me.coley.recaf.Recaf;
+import me.coley.recaf.control.Controller;
+import me.coley.recaf.plugin.PluginsManager;
+import me.coley.recaf.plugin.api.LoadInterceptorPlugin;
+import me.coley.recaf.util.ThreadUtil;
+
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.zip.ZipEntry;
+
+import static me.coley.recaf.util.Log.*;
 
 /**
  * Importable archive base.
@@ -9,6 +20,12 @@ import java.nio.file.Path;
  * @author Matt
  */
 public abstract class ArchiveResource extends FileSystemResource {
+	private static final long DEFAULT_LAZY_CACHE_MB = 64;
+	private boolean parallelLoad = isParallelLoadEnabled();
+	private boolean mappedLoad = isMappedLoadEnabled();
+	private boolean lazyLoad = isLazyLoadEnabled();
+	private boolean snapshotCache = isSnapshotCacheEnabled();
+
 	/**
 	 * Constructs an archive file resource.
 	 *
@@ -23,4 +40,293 @@ public abstract class ArchiveResource extends FileSystemResource {
 	public ArchiveResource(ResourceKind kind, Path path) throws IOException {
 		super(kind, path);
 	}
+
+	/**
+	 * @return {@code true} when classes are read and validated on multiple threads.
+	 */
+	public boolean isParallelLoad() {
+		return parallelLoad;
+	}
+
+	/**
+	 * @param parallelLoad
+	 *        {@code true} to read and validate classes on multiple threads.
+	 */
+	public void setParallelLoad(boolean parallelLoad) {
+		this.parallelLoad = parallelLoad;
+	}
+
+	/**
+	 * @return Number of threads to use when {@link #isParallelLoad() parallel loading} is enabled.
+	 */
+	protected int getLoadThreadCount() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @return {@code true} when the archive is read through a {@link MappedArchive memory-mapped view}
+	 * instead of zip streams.
+	 */
+	public boolean isMappedLoad() {
+		return mappedLoad;
+	}
+
+	/**
+	 * @param mappedLoad
+	 *        {@code true} to read the archive through a {@link MappedArchive memory-mapped view}.
+	 */
+	public void setMappedLoad(boolean mappedLoad) {
+		this.mappedLoad = mappedLoad;
+	}
+
+	/**
+	 * @return {@code true} when classes of non-primary archives are only read once they are requested.
+	 */
+	public boolean isLazyLoad() {
+		return lazyLoad;
+	}
+
+	/**
+	 * @param lazyLoad
+	 *        {@code true} to only read classes of non-primary archives once they are requested.
+	 */
+	public void setLazyLoad(boolean lazyLoad) {
+		this.lazyLoad = lazyLoad;
+	}
+
+	/**
+	 * @return Maximum total size of bytecode cached by {@link #isLazyLoad() lazily loaded} archives.
+	 */
+	protected long getLazyCacheSize() {
+		Controller controller = Recaf.getController();
+		long mb = controller == null ? DEFAULT_LAZY_CACHE_MB : controller.config().backend().lazyCacheMemory;
+		return Math.max(0, mb) * 1024 * 1024;
+	}
+
+	/**
+	 * @return Memory-mapped view of the archive, or {@code null} if {@link #isMappedLoad() mapped loading}
+	 * is disabled or the archive cannot be mapped. Callers should use the stream based readers in that case.
+	 */
+	protected MappedArchive openMappedArchive() {
+		return isMappedLoad() ? mapArchive() : null;
+	}
+
+	/**
+	 * @return Lazily populated map of class names to their bytecode, or {@code null} if the classes of this
+	 * archive should be loaded normally.
+	 */
+	protected Map<String, byte[]> loadLazyClasses() {
+		// Lazy loading skips the entry loader, so it cannot be used when its behavior is customized
+		if (!isLazyLoad() || isPrimary() || !isDefaultLoading())
+			return null;
+		MappedArchive archive = mapArchive();
+		if (archive == null)
+			return null;
+		LazyArchiveClassMap map = new LazyArchiveClassMap(archive, getEntryLoader(), this::shouldSkip,
+				getLazyCacheSize());
+		debug("Indexed {} classes in '{}' for lazy loading", map.size(), getPath().getFileName());
+		return map;
+	}
+
+	/**
+	 * @return {@code true} when loaded content is cached in snapshots, so unchanged archives load faster
+	 * the next time they are opened.
+	 */
+	public boolean isSnapshotCache() {
+		return snapshotCache;
+	}
+
+	/**
+	 * @param snapshotCache
+	 *        {@code true} to cache loaded content in snapshots.
+	 */
+	public void setSnapshotCache(boolean snapshotCache) {
+		this.snapshotCache = snapshotCache;
+	}
+
+	/**
+	 * @param kind
+	 * 		Kind of content, such as {@code classes} or {@code files}.
+	 *
+	 * @return Content from the snapshot of the archive, or {@code null} if there is no valid snapshot.
+	 */
+	protected Map<String, byte[]> loadSnapshot(String kind) {
+		if (!canUseSnapshot())
+			return null;
+		long start = System.currentTimeMillis();
+		try {
+			Map<String, byte[]> content = ArchiveSnapshot.read(getPath(), getSnapshotKey(), kind);
+			if (content != null)
+				info("Loaded {} {} of '{}' from snapshot in {}ms", content.size(), kind,
+						getPath().getFileName(), System.currentTimeMillis() - start);
+			return content;
+		} catch (IOException | RuntimeException ex) {
+			warn("Failed to read {} snapshot of '{}': {}", kind, getPath().getFileName(), ex.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the content to a snapshot of the archive in the background.
+	 *
+	 * @param kind
+	 * 		Kind of content, such as {@code classes} or {@code files}.
+	 * @param content
+	 * 		Loaded content.
+	 *
+	 * @return The given content.
+	 */
+	protected Map<String, byte[]> saveSnapshot(String kind, Map<String, byte[]> content) {
+		if (!canUseSnapshot() || content instanceof LazyArchiveClassMap)
+			return content;
+		Map<String, byte[]> copy = new HashMap<>(content);
+		String key = getSnapshotKey();
+		ThreadUtil.run(() -> {
+			try {
+				ArchiveSnapshot.write(getPath(), key, kind, copy);
+			} catch (IOException | RuntimeException ex) {
+				warn("Failed to write {} snapshot of '{}': {}", kind, getPath().getFileName(), ex.getMessage());
+			}
+		});
+		return content;
+	}
+
+	@Override
+	protected Map<String, byte[]> copyMap(Map<String, byte[]> map) {
+		// Copying would read every class of a lazy map
+		if (map instanceof LazyArchiveClassMap)
+			return map;
+		return super.copyMap(map);
+	}
+
+	private boolean canUseSnapshot() {
+		// Snapshots hold the output of the default loading process
+		return isSnapshotCache() && isDefaultLoading();
+	}
+
+	/**
+	 * @return Discriminator for the version and settings that affect the loaded content.
+	 */
+	String getSnapshotKey() {
+		// Loading may change between versions. Mapped reading uses the central directory while stream
+		// reading uses the local headers, which can disagree in crafted archives.
+		return Recaf.VERSION + ';' + getClass().getName() + ';' + (isMappedLoad() ? "mapped" : "stream") +
+				getSkippedPrefixes();
+	}
+
+	private boolean isDefaultLoading() {
+		return getEntryLoader().getClass() == EntryLoader.class &&
+				PluginsManager.getInstance().ofType(LoadInterceptorPlugin.class).isEmpty();
+	}
+
+	private MappedArchive mapArchive() {
+		try {
+			return MappedArchive.open(getPath());
+		} catch (IOException | RuntimeException ex) {
+			debug("Cannot map archive '{}', using stream reading instead: {}", getPath().getFileName(), ex.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param archive
+	 * 		Memory-mapped view of the archive.
+	 * @param filter
+	 * 		Filter for entries that hold classes.
+	 * @param naming
+	 * 		Maps entry names to the names given to the loader.
+	 *
+	 * @return Map of class names to their bytecode.
+	 *
+	 * @throws IOException
+	 * 		When an entry cannot be read. Before any class is given to the loader, so callers
+	 * 		can fall back to another reader.
+	 */
+	protected Map<String, byte[]> loadClasses(MappedArchive archive, MappedEntryFilter filter,
+											  UnaryOperator<String> naming) throws IOException {
+		EntryLoader loader = getEntryLoader();
+		for (Map.Entry<String, byte[]> entry : readEntries(archive, filter)) {
+			// There is no possible way a "class" under 30 bytes is valid
+			if (entry.getValue().length < 30)
+				continue;
+			loader.onClass(naming.apply(entry.getKey()), entry.getValue());
+		}
+		loader.finishClasses();
+		return loader.getClasses();
+	}
+
+	/**
+	 * @param archive
+	 * 		Memory-mapped view of the archive.
+	 *
+	 * @return Map of file names to their raw content.
+	 *
+	 * @throws IOException
+	 * 		When an entry cannot be read. Before any file is given to the loader, so callers
+	 * 		can fall back to another reader.
+	 */
+	protected Map<String, byte[]> loadFiles(MappedArchive archive) throws IOException {
+		EntryLoader loader = getEntryLoader();
+		// verify entries are not classes and are valid files
+		List<Map.Entry<String, byte[]>> entries = readEntries(archive, (a, entry) -> {
+			ZipEntry zipEntry = entry.toZipEntry();
+			return !loader.isValidClassEntry(zipEntry) && loader.isValidFileEntry(zipEntry);
+		});
+		for (Map.Entry<String, byte[]> entry : entries)
+			loader.onFile(entry.getKey(), entry.getValue());
+		loader.finishFiles();
+		return loader.getFiles();
+	}
+
+	private List<Map.Entry<String, byte[]>> readEntries(MappedArchive archive, MappedEntryFilter filter)
+			throws IOException {
+		// Every entry is read before the loader sees any of them. Otherwise a failed read would leave
+		// the entries read so far in the loader, mixed with the output of the fallback reader.
+		List<Map.Entry<String, byte[]>> entries = new ArrayList<>();
+		for (MappedArchive.Entry entry : archive.getEntries()) {
+			// skip intentional garbage / zip file abnormalities
+			if (shouldSkip(entry.getName()) || !filter.accept(archive, entry))
+				continue;
+			entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getName(), archive.read(entry)));
+		}
+		return entries;
+	}
+
+	private static boolean isParallelLoadEnabled() {
+		Controller controller = Recaf.getController();
+		return controller != null && controller.config().backend().parallelLoad;
+	}
+
+	private static boolean isLazyLoadEnabled() {
+		Controller controller = Recaf.getController();
+		return controller != null && controller.config().backend().lazyLibraries;
+	}
+
+	private static boolean isSnapshotCacheEnabled() {
+		Controller controller = Recaf.getController();
+		return controller != null && controller.config().backend().snapshotCache;
+	}
+
+	private static boolean isMappedLoadEnabled() {
+		Controller controller = Recaf.getController();
+		return controller != null && controller.config().backend().mappedLoad;
+	}
+
+	/**
+	 * Filter for the entries of a {@link MappedArchive}.
+	 */
+	protected interface MappedEntryFilter {
+		/**
+		 * @param archive
+		 * 		Archive holding the entry.
+		 * @param entry
+		 * 		Entry to check.
+		 *
+		 * @return {@code true} when the entry should be read.
+		 *
+		 * @throws IOException
+		 * 		When the entry cannot be read.
+		 */
+		boolean accept(MappedArchive archive, MappedArchive.Entry entry) throws IOException;
+	}
 }
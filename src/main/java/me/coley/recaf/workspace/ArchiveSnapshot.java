@@ -0,0 +1,252 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.Recaf;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Persistent cache of the content loaded from an archive, stored in {@code [RECAF]/cache/snapshots}.
+ * <br>
+ * Each snapshot records the size, modification time and SHA-1 of the archive it was created from.
+ * A snapshot is used when the size and modification time still match. If only the modification time
+ * differs the archive is hashed, and the snapshot is still used when the content is unchanged.
+ * <br>
+ * Snapshots written by other versions of Recaf, or not used for {@link #MAX_AGE some time}, are
+ * {@link #prune(Path) pruned} the first time a snapshot is written.
+ *
+ * @author Matt
+ */
+final class ArchiveSnapshot {
+	private static final int MAGIC = 0x52534E50;
+	private static final int VERSION = 2;
+	private static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+	private static final long MAX_TEMP_AGE = TimeUnit.HOURS.toMillis(1);
+	private static final AtomicBoolean pruned = new AtomicBoolean();
+	private static volatile Path directory;
+
+	private ArchiveSnapshot() {}
+
+	/**
+	 * @return Directory holding the snapshots.
+	 */
+	static Path getDirectory() {
+		Path dir = directory;
+		return dir != null ? dir : Recaf.getDirectory("cache").resolve("snapshots");
+	}
+
+	/**
+	 * @param dir
+	 * 		Directory to hold the snapshots in, or {@code null} for the default directory.
+	 */
+	static void setDirectory(Path dir) {
+		directory = dir;
+		pruned.set(false);
+	}
+
+	/**
+	 * @param archive
+	 * 		Archive the content was loaded from.
+	 * @param key
+	 * 		Discriminator for settings that affect the loaded content.
+	 * @param kind
+	 * 		Kind of content, such as classes or files.
+	 *
+	 * @return Snapshot content, or {@code null} if there is no valid snapshot.
+	 *
+	 * @throws IOException
+	 * 		When the snapshot exists but cannot be read.
+	 */
+	static Map<String, byte[]> read(Path archive, String key, String kind) throws IOException {
+		Path snapshot = getSnapshotPath(archive, key, kind);
+		if (!Files.isRegularFile(snapshot))
+			return null;
+		Map<String, byte[]> map;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Files.newInputStream(snapshot), 1 << 16))) {
+			if (!isCurrent(in) || !key.equals(in.readUTF()))
+				return null;
+			long size = in.readLong();
+			long modified = in.readLong();
+			byte[] hash = new byte[20];
+			in.readFully(hash);
+			if (size != Files.size(archive))
+				return null;
+			if (modified != Files.getLastModifiedTime(archive).toMillis() && !Arrays.equals(hash, hash(archive)))
+				return null;
+			long limit = Files.size(snapshot);
+			int count = in.readInt();
+			if (count < 0 || count > limit)
+				throw new IOException("Corrupt snapshot: " + snapshot);
+			map = new HashMap<>((int) (count / 0.75F) + 1);
+			for (int i = 0; i < count; i++) {
+				String name = new String(readBytes(in, limit), StandardCharsets.UTF_8);
+				map.put(name, readBytes(in, limit));
+			}
+		}
+		// Mark the snapshot as used, so it is not pruned
+		try {
+			Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException ex) {
+			debug("Failed to update snapshot time: {}", ex.getMessage());
+		}
+		return map;
+	}
+
+	/**
+	 * @param archive
+	 * 		Archive the content was loaded from.
+	 * @param key
+	 * 		Discriminator for settings that affect the loaded content.
+	 * @param kind
+	 * 		Kind of content, such as classes or files.
+	 * @param content
+	 * 		Content to store.
+	 *
+	 * @throws IOException
+	 * 		When the snapshot cannot be written.
+	 */
+	static void write(Path archive, String key, String kind, Map<String, byte[]> content) throws IOException {
+		Path snapshot = getSnapshotPath(archive, key, kind);
+		Files.createDirectories(snapshot.getParent());
+		// Record the archive state before hashing, so a concurrent change invalidates the snapshot
+		long size = Files.size(archive);
+		long modified = Files.getLastModifiedTime(archive).toMillis();
+		byte[] hash = hash(archive);
+		Path temp = Files.createTempFile(snapshot.getParent(), "snapshot", ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(temp), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(Recaf.VERSION);
+				out.writeUTF(key);
+				out.writeLong(size);
+				out.writeLong(modified);
+				out.write(hash);
+				out.writeInt(content.size());
+				for (Map.Entry<String, byte[]> e : content.entrySet()) {
+					writeBytes(out, e.getKey().getBytes(StandardCharsets.UTF_8));
+					writeBytes(out, e.getValue());
+				}
+			}
+			Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		if (pruned.compareAndSet(false, true))
+			prune(snapshot.getParent());
+	}
+
+	/**
+	 * Deletes snapshots that were written by another version of Recaf, cannot be read, or have not been
+	 * used for longer than {@link #MAX_AGE}. Leftover temporary files are deleted as well.
+	 *
+	 * @param dir
+	 * 		Directory holding the snapshots.
+	 *
+	 * @return Number of deleted files.
+	 */
+	static int prune(Path dir) {
+		List<Path> files;
+		try (Stream<Path> stream = Files.list(dir)) {
+			files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		} catch (IOException ex) {
+			debug("Failed to list snapshots: {}", ex.getMessage());
+			return 0;
+		}
+		long now = System.currentTimeMillis();
+		int deleted = 0;
+		for (Path file : files) {
+			try {
+				long age = now - Files.getLastModifiedTime(file).toMillis();
+				boolean stale;
+				if (file.getFileName().toString().endsWith(".tmp"))
+					// Temporary files may belong to a snapshot that is still being written
+					stale = age > MAX_TEMP_AGE;
+				else
+					stale = age > MAX_AGE || !isCurrent(file);
+				if (stale && Files.deleteIfExists(file))
+					deleted++;
+			} catch (IOException ex) {
+				debug("Failed to prune snapshot '{}': {}", file.getFileName(), ex.getMessage());
+			}
+		}
+		if (deleted > 0)
+			debug("Pruned {} old snapshots", deleted);
+		return deleted;
+	}
+
+	private static boolean isCurrent(Path snapshot) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+			return isCurrent(in);
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	private static boolean isCurrent(DataInputStream in) throws IOException {
+		return in.readInt() == MAGIC && in.readInt() == VERSION && Recaf.VERSION.equals(in.readUTF());
+	}
+
+	private static Path getSnapshotPath(Path archive, String key, String kind) throws IOException {
+		String id = archive.toAbsolutePath().normalize() + "\0" + key;
+		return getDirectory().resolve(hex(digest().digest(id.getBytes(StandardCharsets.UTF_8))) + "." + kind);
+	}
+
+	private static byte[] hash(Path archive) throws IOException {
+		MessageDigest digest = digest();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(archive)) {
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				digest.update(buffer, 0, read);
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest digest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IOException("SHA-1 unavailable", ex);
+		}
+	}
+
+	private static String hex(byte[] data) {
+		StringBuilder sb = new StringBuilder(data.length * 2);
+		for (byte b : data)
+			sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+
+	private static byte[] readBytes(DataInputStream in, long limit) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > limit)
+			throw new IOException("Corrupt snapshot entry length: " + length);
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return data;
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+		out.writeInt(data.length);
+		out.write(data);
+	}
+}
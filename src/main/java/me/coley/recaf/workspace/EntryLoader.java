@@ -85,14 +85,32 @@ public class EntryLoader {
 				return false;
 			}
 		}
+		return onValidClass(entryName, value, new ClassReader(value).getClassName());
+	}
+
+	/**
+	 * Load a class from the input that has already been verified to be parsable.
+	 * <br>
+	 * This allows loaders that validate classes ahead of time, such as on multiple threads,
+	 * to skip re-validating the class.
+	 *
+	 * @param entryName
+	 * 		Class's archive entry name.
+	 * @param value
+	 * 		Class's bytecode.
+	 * @param className
+	 * 		Class's internal name, as read from the bytecode.
+	 *
+	 * @return Addition was a success.
+	 */
+	public boolean onValidClass(String entryName, byte[] value, String className) {
 		// Check if we've already seen this class
-		String clsName = new ClassReader(value).getClassName();
-		if (classes.containsKey(clsName)) {
-			debug("Skipping duplicate class '{}'", clsName);
+		if (classes.containsKey(className)) {
+			debug("Skipping duplicate class '{}'", className);
 			return false;
 		}
 		// Load the class
-		handleAddClass(entryName, value);
+		handleAddClass(entryName, value, className);
 		return true;
 	}
 
@@ -103,11 +121,12 @@ public class EntryLoader {
 	 * 		Class's archive entry name.
 	 * @param value
 	 * 		Class's bytecode.
+	 * @param name
+	 * 		Class's internal name.
 	 *
 	 * @return Addition was a success.
 	 */
-	private boolean handleAddClass(String entryName, byte[] value) {
-		String name = new ClassReader(value).getClassName();
+	private boolean handleAddClass(String entryName, byte[] value, String name) {
 		for(LoadInterceptorPlugin interceptor :
 				PluginsManager.getInstance().ofType(LoadInterceptorPlugin.class)) {
 			// Intercept class
@@ -236,7 +255,7 @@ public class EntryLoader {
 				// Check if class is valid
 				if (ClassUtil.isValidClass(value)) {
 					debug("Illegal class patching success!");
-					handleAddClass(entryName, value);
+					handleAddClass(entryName, value, new ClassReader(value).getClassName());
 				} else {
 					warn("Invalid class \"{}\" - Cannot be parsed with ASM reader\n" +
 							"Adding as a file instead.", entryName);
@@ -13,16 +13,19 @@ import static me.coley.recaf.util.Log.*;
  * @author Matt
  */
 public class History {
-	// TODO: For large inputs it would make sense to offload this to the file system.
-	//  - But only for large inputs. In-memory is much faster and should be the default.
 	/**
-	 * Stack of changed content.
+	 * Stack of changed content. The initial and most recent states are held as-is, other states are
+	 * compressed and may be moved to disk by {@link HistoryStorage}.
 	 */
-	private final Stack<byte[]> stack = new Stack<>();
+	private final Stack<HistoryStorage.State> stack = new Stack<>();
 	/**
 	 * Stack of when the content was changed.
 	 */
 	private final Stack<Instant> times = new Stack<>();
+	/**
+	 * Storage holding the save states.
+	 */
+	private final HistoryStorage storage;
 	/**
 	 * File map to update when the history is rolled back.
 	 */
@@ -45,6 +48,21 @@ public class History {
 	 * 		Item's key.
 	 */
 	public History(ListeningMap<String, byte[]> map, String name) {
+		this(new HistoryStorage(), map, name);
+	}
+
+	/**
+	 * Constructs a history for an item of the given name in the given map.
+	 *
+	 * @param storage
+	 * 		Storage to hold the save states in.
+	 * @param map
+	 * 		Map containing the item.
+	 * @param name
+	 * 		Item's key.
+	 */
+	History(HistoryStorage storage, ListeningMap<String, byte[]> map, String name) {
+		this.storage = storage;
 		this.map = map;
 		this.name = name;
 	}
@@ -67,6 +85,7 @@ public class History {
 	 * Wipe all items from the history.
 	 */
 	public void clear() {
+		stack.forEach(HistoryStorage.State::release);
 		stack.clear();
 		times.clear();
 	}
@@ -94,17 +113,19 @@ public class History {
 	 */
 	public byte[] pop() {
 		Instant time = times.pop();
-		byte[] content = stack.pop();
+		HistoryStorage.State state = stack.pop();
+		byte[] content = state.get();
 		if (content != null) {
 			map.put(name, content);
 			// If the size is now 0, we just pop'd the initial state.
 			// Since we ALWAYS want to keep the initial state we will push it back.
 			if (size() == 0) {
 				times.push(time);
-				stack.push(content);
+				stack.push(state);
 				atInitial = true;
 				info("Reverted '{}' - initial state", name);
 			} else {
+				state.release();
 				info("Reverted '{}' - {} total", name, stack.size());
 			}
 		} else {
@@ -117,7 +138,7 @@ public class History {
 	 * @return Most recent version of the tracked file.
 	 */
 	public byte[] peek() {
-		return stack.peek();
+		return stack.peek().get();
 	}
 
 	/**
@@ -128,7 +149,11 @@ public class History {
 	 * 		Changed value.
 	 */
 	public void push(byte[] modified) {
-		stack.push(modified);
+		// The previous state is no longer the latest, so it can be compacted.
+		// The initial state is kept as-is since it shares the content loaded from the resource.
+		if (stack.size() > 1)
+			stack.peek().compact();
+		stack.push(storage.create(modified));
 		times.push(Instant.now());
 		// Don't log the initial push
 		if(stack.size() > 1) {
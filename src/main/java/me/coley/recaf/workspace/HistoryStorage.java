@@ -0,0 +1,242 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.Recaf;
+import me.coley.recaf.control.Controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Storage for the {@link History} save states of a single resource.
+ * <br>
+ * States that are no longer the current value of an item are compressed. Once the compressed states
+ * held in memory exceed the configured budget, the oldest ones are moved to an append-only log file.
+ * The log is truncated once none of its states are in use, and deleted when the storage is
+ * {@link #close() closed}.
+ *
+ * @author Matt
+ */
+final class HistoryStorage {
+	private static final long DEFAULT_BUDGET_MB = 64;
+	private final Queue<State> inMemory = new ConcurrentLinkedQueue<>();
+	private final AtomicLong memoryUsage = new AtomicLong();
+	private RandomAccessFile log;
+	private Path logPath;
+	private int logStates;
+
+	/**
+	 * @param content
+	 * 		Content of the state. Held by reference until compacted.
+	 *
+	 * @return New state held by this storage.
+	 */
+	State create(byte[] content) {
+		return new State(content);
+	}
+
+	/**
+	 * @return Total size of compressed states held in memory.
+	 */
+	long getMemoryUsage() {
+		return memoryUsage.get();
+	}
+
+	/**
+	 * Drop states held in memory and delete the log file.
+	 * States created by this storage should be {@link State#release() released} beforehand.
+	 */
+	synchronized void close() {
+		inMemory.clear();
+		memoryUsage.set(0);
+		logStates = 0;
+		if (log == null)
+			return;
+		try {
+			log.close();
+			Files.deleteIfExists(logPath);
+		} catch (IOException ex) {
+			error(ex, "Failed to delete history log: {}", logPath);
+		} finally {
+			log = null;
+			logPath = null;
+		}
+	}
+
+	/**
+	 * @return Maximum total size of compressed states to hold in memory before moving them to disk.
+	 */
+	static long getMemoryBudget() {
+		Controller controller = Recaf.getController();
+		long mb = controller == null ? DEFAULT_BUDGET_MB : controller.config().backend().historyMemory;
+		return Math.max(0, mb) * 1024 * 1024;
+	}
+
+	/**
+	 * Moves the oldest compressed states to disk until the in-memory states fit the budget.
+	 */
+	private void enforceBudget() {
+		long budget = getMemoryBudget();
+		State state;
+		while (memoryUsage.get() > budget && (state = inMemory.poll()) != null)
+			state.spill();
+	}
+
+	private synchronized long append(byte[] data) throws IOException {
+		if (log == null) {
+			logPath = Files.createTempFile("recaf-history", ".log");
+			logPath.toFile().deleteOnExit();
+			log = new RandomAccessFile(logPath.toFile(), "rw");
+		}
+		long offset = log.length();
+		log.seek(offset);
+		log.write(data);
+		logStates++;
+		return offset;
+	}
+
+	private synchronized byte[] read(long offset, int length) throws IOException {
+		if (log == null)
+			throw new IOException("History log is closed");
+		byte[] data = new byte[length];
+		log.seek(offset);
+		log.readFully(data);
+		return data;
+	}
+
+	/**
+	 * Called when a state in the log is released. Once no states use the log, it is truncated.
+	 */
+	private synchronized void releaseLogged() {
+		if (log == null || --logStates > 0)
+			return;
+		try {
+			log.setLength(0);
+		} catch (IOException ex) {
+			error(ex, "Failed to truncate history log: {}", logPath);
+		}
+	}
+
+	private static byte[] compress(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished())
+				out.write(buffer, 0, deflater.deflate(buffer));
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] decompress(byte[] data, int size) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			byte[] content = new byte[size];
+			int read = 0;
+			while (read < size && !inflater.finished()) {
+				int n = inflater.inflate(content, read, size - read);
+				if (n == 0 && inflater.needsInput())
+					throw new IllegalStateException("Truncated history state");
+				read += n;
+			}
+			return content;
+		} catch (DataFormatException ex) {
+			throw new IllegalStateException("Corrupt history state", ex);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Single save state. Held as-is until {@link #compact() compacted}.
+	 */
+	final class State {
+		private final int size;
+		private byte[] raw;
+		private byte[] compressed;
+		private long offset = -1;
+		private int length;
+
+		private State(byte[] content) {
+			this.raw = content;
+			this.size = content == null ? 0 : content.length;
+		}
+
+		/**
+		 * @return Content of the state.
+		 */
+		synchronized byte[] get() {
+			if (raw != null || (compressed == null && offset < 0))
+				return raw;
+			try {
+				byte[] data = compressed != null ? compressed : read(offset, length);
+				return decompress(data, size);
+			} catch (IOException ex) {
+				throw new UncheckedIOException("Failed to read history state from disk", ex);
+			}
+		}
+
+		/**
+		 * Compress the state, releasing the reference to the original content.
+		 */
+		void compact() {
+			synchronized (this) {
+				if (raw == null)
+					return;
+				compressed = compress(raw);
+				raw = null;
+				memoryUsage.addAndGet(compressed.length);
+			}
+			inMemory.add(this);
+			enforceBudget();
+		}
+
+		/**
+		 * Drop the state's content. Disk space is reclaimed once all states in the log are released.
+		 */
+		void release() {
+			synchronized (this) {
+				raw = null;
+				if (offset >= 0) {
+					offset = -1;
+					releaseLogged();
+				}
+				if (compressed == null)
+					return;
+				memoryUsage.addAndGet(-compressed.length);
+				compressed = null;
+			}
+			inMemory.remove(this);
+		}
+
+		private synchronized void spill() {
+			if (compressed == null)
+				return;
+			try {
+				offset = append(compressed);
+				length = compressed.length;
+				memoryUsage.addAndGet(-length);
+				compressed = null;
+			} catch (IOException ex) {
+				// Keep the state in memory, it is still usable
+				error(ex, "Failed to move history state to disk");
+			}
+		}
+	}
+}
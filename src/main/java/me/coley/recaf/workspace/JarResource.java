@@ -10,6 +10,8 @@ import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+import static me.coley.recaf.util.Log.*;
+
 /**
  * Importable jar resource.
  *
@@ -31,6 +33,38 @@ public class JarResource extends ArchiveResource {
 
 	@Override
 	protected Map<String, byte[]> loadClasses() throws IOException {
+		Map<String, byte[]> lazy = loadLazyClasses();
+		if (lazy != null)
+			return lazy;
+		Map<String, byte[]> snapshot = loadSnapshot("classes");
+		if (snapshot != null)
+			return snapshot;
+		return saveSnapshot("classes", readClasses());
+	}
+
+	private Map<String, byte[]> readClasses() throws IOException {
+		MappedArchive archive = openMappedArchive();
+		if (archive != null) {
+			try (MappedArchive mapped = archive) {
+				if (isParallelLoad())
+					return new ParallelArchiveLoader(mapped, getEntryLoader(), this::shouldSkip,
+							getLoadThreadCount()).loadClasses();
+				return loadClasses(mapped);
+			} catch (IOException | RuntimeException ex) {
+				debug("Failed to read mapped archive '{}', using stream reading instead: {}",
+						getPath().getFileName(), ex.getMessage());
+			}
+		}
+		if (isParallelLoad()) {
+			try {
+				return new ParallelArchiveLoader(getPath(), getEntryLoader(), this::shouldSkip,
+						getLoadThreadCount()).loadClasses();
+			} catch (ZipException ex) {
+				// Nothing has been loaded yet, so the serial reader can handle bogus entry data
+				debug("Failed to read archive '{}' in parallel, reading serially instead: {}",
+						getPath().getFileName(), ex.getMessage());
+			}
+		}
 		// iterate jar entries
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		byte[] buffer = new byte[8192];
@@ -107,8 +141,32 @@ public class JarResource extends ArchiveResource {
 		return loader.getClasses();
 	}
 
+	private Map<String, byte[]> loadClasses(MappedArchive archive) throws IOException {
+		EntryLoader loader = getEntryLoader();
+		// The class file might not end with .class or .class/
+		// so we also check it's header.
+		return loadClasses(archive, (a, entry) -> loader.isValidClassEntry(entry.toZipEntry()) ||
+				loader.isValidClassFile(new ByteArrayInputStream(a.readPrefix(entry, 4))), name -> name);
+	}
+
 	@Override
 	protected Map<String, byte[]> loadFiles() throws IOException {
+		Map<String, byte[]> snapshot = loadSnapshot("files");
+		if (snapshot != null)
+			return snapshot;
+		return saveSnapshot("files", readFiles());
+	}
+
+	private Map<String, byte[]> readFiles() throws IOException {
+		MappedArchive archive = openMappedArchive();
+		if (archive != null) {
+			try (MappedArchive mapped = archive) {
+				return loadFiles(mapped);
+			} catch (IOException | RuntimeException ex) {
+				debug("Failed to read mapped archive '{}', using stream reading instead: {}",
+						getPath().getFileName(), ex.getMessage());
+			}
+		}
 		// iterate jar entries
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		byte[] buffer = new byte[8192];
@@ -7,6 +7,7 @@ import me.coley.recaf.parse.javadoc.Javadocs;
 import me.coley.recaf.parse.source.SourceCode;
 import me.coley.recaf.parse.source.SourceCodeException;
 import me.coley.recaf.util.InternalElement;
+import me.coley.recaf.util.struct.BulkBiConsumer;
 import me.coley.recaf.util.struct.InternalBiConsumer;
 import me.coley.recaf.util.struct.InternalConsumer;
 import me.coley.recaf.util.struct.ListeningMap;
@@ -16,6 +17,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.*;
 
 import static me.coley.recaf.util.Log.*;
@@ -31,10 +33,11 @@ public abstract class JavaResource {
 	private List<String> skippedPrefixes = Collections.emptyList();
 	private final ListeningMap<String, byte[]> cachedClasses = new ListeningMap<>();
 	private final ListeningMap<String, byte[]> cachedFiles = new ListeningMap<>();
-	private final Map<String, History> classHistory = new HashMap<>();
-	private final Map<String, History> fileHistory = new HashMap<>();
-	private final Set<String> dirtyClasses = new HashSet<>();
-	private final Set<String> dirtyFiles = new HashSet<>();
+	private final Map<String, History> classHistory = new ConcurrentHashMap<>();
+	private final Map<String, History> fileHistory = new ConcurrentHashMap<>();
+	private final HistoryStorage historyStorage = new HistoryStorage();
+	private final Set<String> dirtyClasses = ConcurrentHashMap.newKeySet();
+	private final Set<String> dirtyFiles = ConcurrentHashMap.newKeySet();
 	private final Map<String, SourceCode> classSource = new HashMap<>();
 	private final Map<String, Javadocs> classDocs = new HashMap<>();
 	private Path classSourceFile;
@@ -181,7 +184,7 @@ public abstract class JavaResource {
 			byte[] value = cachedClasses.get(name);
 			if (value == null)
 				return false;
-			History history = classHistory.computeIfAbsent(name, key -> new History(cachedClasses, key));
+			History history = classHistory.computeIfAbsent(name, key -> new History(historyStorage, cachedClasses, key));
 			history.push(value);
 		}
 		return true;
@@ -189,7 +192,7 @@ public abstract class JavaResource {
 
 	private void addClassSave(String name, byte[] value) {
 		if (isPrimary()) {
-			History history = classHistory.computeIfAbsent(name, key -> new History(cachedClasses, key));
+			History history = classHistory.computeIfAbsent(name, key -> new History(historyStorage, cachedClasses, key));
 			history.push(value);
 		}
 	}
@@ -207,7 +210,7 @@ public abstract class JavaResource {
 			byte[] value = cachedFiles.get(name);
 			if (value == null)
 				return false;
-			History history = fileHistory.computeIfAbsent(name, key -> new History(cachedFiles, key));
+			History history = fileHistory.computeIfAbsent(name, key -> new History(historyStorage, cachedFiles, key));
 			history.push(value);
 		}
 		return true;
@@ -215,7 +218,7 @@ public abstract class JavaResource {
 
 	private void addFileSave(String name, byte[] value) {
 		if (isPrimary()) {
-			History history = fileHistory.computeIfAbsent(name, key -> new History(cachedFiles, key));
+			History history = fileHistory.computeIfAbsent(name, key -> new History(historyStorage, cachedFiles, key));
 			history.push(value);
 		}
 	}
@@ -232,8 +235,8 @@ public abstract class JavaResource {
 					if (!isPrimary())
 						return cachedClasses;
 					// Register listeners
-					cachedClasses.getPutListeners()
-							.add(InternalBiConsumer.internal((name, code) -> dirtyClasses.add(name)));
+					cachedClasses.getPutListeners().add(BulkBiConsumer.internal((name, code) -> dirtyClasses.add(name),
+							items -> dirtyClasses.addAll(items.keySet())));
 					cachedClasses.getRemoveListeners().add(InternalConsumer.internal(dirtyClasses::remove));
 					// Create initial save state
 					for (Map.Entry<String, byte[]> e : cachedClasses.entrySet()) {
@@ -266,8 +269,8 @@ public abstract class JavaResource {
 					if (!isPrimary())
 						return cachedFiles;
 					// Register listeners
-					cachedFiles.getPutListeners()
-							.add(InternalBiConsumer.internal((name, code) -> dirtyFiles.add(name)));
+					cachedFiles.getPutListeners().add(BulkBiConsumer.internal((name, code) -> dirtyFiles.add(name),
+							items -> dirtyFiles.addAll(items.keySet())));
 					cachedFiles.getRemoveListeners().add(InternalConsumer.internal(dirtyFiles::remove));
 					// Create initial save state
 					for (Map.Entry<String, byte[]> e : cachedFiles.entrySet()) {
@@ -302,7 +305,22 @@ public abstract class JavaResource {
 		cachedClasses.setBacking(null);
 		classDocs.clear();
 		classSource.clear();
-		classHistory.clear();
+		clearHistory(classHistory);
+	}
+
+	/**
+	 * Drop all save-states of the resource's classes and files, and delete their storage.
+	 */
+	public void closeHistory() {
+		clearHistory(classHistory);
+		clearHistory(fileHistory);
+		historyStorage.close();
+	}
+
+	private static void clearHistory(Map<String, History> histories) {
+		// Release the states before dropping them so their storage can be reclaimed
+		histories.values().forEach(History::clear);
+		histories.clear();
 	}
 
 	/**
@@ -314,7 +332,7 @@ public abstract class JavaResource {
 	 * @return Copied map.
 	 */
 	protected Map<String, byte[]> copyMap(Map<String, byte[]> map) {
-		return new HashMap<>(map);
+		return new ConcurrentHashMap<>(map);
 	}
 
 	/**
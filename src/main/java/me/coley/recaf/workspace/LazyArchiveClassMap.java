@@ -0,0 +1,395 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.util.ClassUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Predicate;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Class map that only indexes the class entries of an archive up front. Bytecode is inflated and
+ * validated the first time a class is requested and kept in a size-bounded LRU cache, so unused
+ * library classes never occupy the heap.
+ * <br>
+ * Classes are indexed by the name declared in their header, like the {@link EntryLoader} does, so
+ * entries do not need to be named after their class. Only the start of each class is inflated to
+ * read the name. Invalid classes are patched when they are read, through the same recovery as the
+ * {@link EntryLoader}. Entries that still are not valid classes are dropped from the map when they
+ * are first read, so the {@link #size() size} includes them until then. Classes put into the map are
+ * held strongly and are never evicted.
+ * <br>
+ * {@link #put(String, byte[])} and {@link #remove(Object)} do not read the archive, so they only
+ * return the previous value if it is held in memory.
+ *
+ * @author Matt
+ */
+class LazyArchiveClassMap extends AbstractMap<String, byte[]> {
+	private static final int HEADER_PREFIX = 4096;
+	private final Map<String, MappedArchive.Entry> index = new LinkedHashMap<>();
+	private final Map<String, byte[]> overrides = new HashMap<>();
+	private final Set<String> removed = new HashSet<>();
+	private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75F, true);
+	private final MappedArchive archive;
+	private final long maxCacheBytes;
+	private long cacheBytes;
+	private int size;
+
+	/**
+	 * @param archive
+	 * 		Archive to read classes from.
+	 * @param loader
+	 * 		Loader to check which entries are classes with.
+	 * @param skip
+	 * 		Filter for entry names that should not be indexed.
+	 * @param maxCacheBytes
+	 * 		Maximum total size of cached bytecode.
+	 */
+	LazyArchiveClassMap(MappedArchive archive, EntryLoader loader, Predicate<String> skip, long maxCacheBytes) {
+		this.archive = archive;
+		this.maxCacheBytes = maxCacheBytes;
+		for (MappedArchive.Entry entry : archive.getEntries()) {
+			// Skip intentional garbage / zip file abnormalities
+			if (skip.test(entry.getName()))
+				continue;
+			String name = readClassName(loader, entry);
+			// The first class of a name is used, later ones are duplicates
+			if (name != null)
+				index.putIfAbsent(name, entry);
+		}
+		size = index.size();
+	}
+
+	/**
+	 * @return Number of classes with bytecode currently in the cache.
+	 */
+	synchronized int getCachedCount() {
+		return cache.size();
+	}
+
+	/**
+	 * @return Number of indexed classes and classes put into the map. Indexed entries that are not
+	 * valid classes are only found when they are read, which removes them from the map.
+	 */
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		return overrides.containsKey(key) || (index.containsKey(key) && !removed.contains(key));
+	}
+
+	@Override
+	public byte[] get(Object key) {
+		MappedArchive.Entry entry;
+		synchronized (this) {
+			byte[] value = overrides.get(key);
+			if (value != null || removed.contains(key))
+				return value;
+			entry = index.get(key);
+			if (entry == null)
+				return null;
+			value = cache.get(key);
+			if (value != null)
+				return value;
+		}
+		// Read outside of the lock so that multiple classes can be inflated at once
+		String name = (String) key;
+		byte[] value = read(name, entry);
+		synchronized (this) {
+			// Another thread may have modified the map while the class was being read
+			if (overrides.containsKey(name) || removed.contains(name))
+				return overrides.get(name);
+			if (value == null) {
+				removed.add(name);
+				size--;
+				return null;
+			}
+			if (cache.put(name, value) == null)
+				cacheBytes += value.length;
+			evict();
+		}
+		return value;
+	}
+
+	@Override
+	public synchronized byte[] put(String key, byte[] value) {
+		byte[] old = getLoaded(key);
+		if (!containsKey(key))
+			size++;
+		removed.remove(key);
+		uncache(key);
+		overrides.put(key, value);
+		return old;
+	}
+
+	@Override
+	public synchronized byte[] remove(Object key) {
+		if (!containsKey(key))
+			return null;
+		byte[] old = getLoaded(key);
+		size--;
+		overrides.remove(key);
+		uncache(key);
+		if (index.containsKey(key))
+			removed.add((String) key);
+		return old;
+	}
+
+	@Override
+	public synchronized void clear() {
+		overrides.clear();
+		cache.clear();
+		cacheBytes = 0;
+		removed.addAll(index.keySet());
+		size = 0;
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				Iterator<String> it = keys().iterator();
+				return new Iterator<String>() {
+					private String last;
+
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public String next() {
+						return last = it.next();
+					}
+
+					@Override
+					public void remove() {
+						LazyArchiveClassMap.this.remove(last);
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				return LazyArchiveClassMap.this.remove(o) != null;
+			}
+
+			@Override
+			public int size() {
+				return LazyArchiveClassMap.this.size();
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<String, byte[]>> entrySet() {
+		return new AbstractSet<Entry<String, byte[]>>() {
+			@Override
+			public Iterator<Entry<String, byte[]>> iterator() {
+				Iterator<String> it = keys().iterator();
+				return new Iterator<Entry<String, byte[]>>() {
+					private Entry<String, byte[]> next;
+					private Entry<String, byte[]> last;
+
+					@Override
+					public boolean hasNext() {
+						// Skip entries that turn out to not be valid classes when read
+						while (next == null && it.hasNext()) {
+							String key = it.next();
+							byte[] value = get(key);
+							if (value != null)
+								next = new LazyEntry(key, value);
+						}
+						return next != null;
+					}
+
+					@Override
+					public Entry<String, byte[]> next() {
+						if (!hasNext())
+							throw new NoSuchElementException();
+						last = next;
+						next = null;
+						return last;
+					}
+
+					@Override
+					public void remove() {
+						LazyArchiveClassMap.this.remove(last.getKey());
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return LazyArchiveClassMap.this.size();
+			}
+		};
+	}
+
+	/**
+	 * @param key
+	 * 		Class name.
+	 *
+	 * @return Value of the class if it is held in memory, without reading it from the archive.
+	 */
+	private byte[] getLoaded(Object key) {
+		byte[] value = overrides.get(key);
+		if (value != null || removed.contains(key))
+			return value;
+		return cache.get(key);
+	}
+
+	private void uncache(Object key) {
+		byte[] cached = cache.remove(key);
+		if (cached != null)
+			cacheBytes -= cached.length;
+	}
+
+	/**
+	 * @return Snapshot of the current keys.
+	 */
+	private synchronized List<String> keys() {
+		List<String> keys = new ArrayList<>(size);
+		for (String key : index.keySet())
+			if (!removed.contains(key) && !overrides.containsKey(key))
+				keys.add(key);
+		keys.addAll(overrides.keySet());
+		return keys;
+	}
+
+	private byte[] read(String name, MappedArchive.Entry entry) {
+		try {
+			byte[] value = archive.read(entry);
+			if (ClassUtil.isValidClass(value))
+				return value;
+			// Recover the class the same way it would be when loading the archive normally
+			EntryLoader recovery = new EntryLoader();
+			recovery.onClass(entry.getName(), value);
+			recovery.finishClasses();
+			value = recovery.getClasses().get(name);
+			if (value == null)
+				debug("Skipping invalid library class '{}'", name);
+			return value;
+		} catch (IOException | RuntimeException ex) {
+			error(ex, "Failed to read library class '{}'", entry.getName());
+			return null;
+		}
+	}
+
+	private String readClassName(EntryLoader loader, MappedArchive.Entry entry) {
+		try {
+			// The class file might not end with .class or .class/
+			// so we also check it's header.
+			if (!loader.isValidClassEntry(entry.toZipEntry()) &&
+					!loader.isValidClassFile(new ByteArrayInputStream(archive.readPrefix(entry, 4))))
+				return null;
+			// The name follows the constant pool, so read more of the class until it is reached
+			for (int length = HEADER_PREFIX; ; length *= 2) {
+				byte[] prefix = archive.readPrefix(entry, length);
+				String name = readClassName(prefix);
+				if (name != null || prefix.length < length || length > Integer.MAX_VALUE / 2)
+					return name;
+			}
+		} catch (IOException | RuntimeException ex) {
+			debug("Skipping unreadable library class entry '{}': {}", entry.getName(), ex.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param data
+	 * 		Start of a class file.
+	 *
+	 * @return Name of the class, or {@code null} if the data is not a class file or does not reach
+	 * the name of the class.
+	 *
+	 * @throws IOException
+	 * 		When the name is not valid modified UTF-8.
+	 */
+	private static String readClassName(byte[] data) throws IOException {
+		// Magic, version, and then the constant pool, see JVMS 4.1
+		if (data.length < 10 || !ClassUtil.isClass(data))
+			return null;
+		int count = readShort(data, 8);
+		int[] offsets = new int[count];
+		int offset = 10;
+		for (int i = 1; i < count; i++) {
+			if (offset + 3 > data.length)
+				return null;
+			offsets[i] = offset + 1;
+			switch(data[offset]) {
+				case 1:
+					offset += 3 + readShort(data, offset + 1);
+					break;
+				case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+					offset += 5;
+					break;
+				case 5: case 6:
+					// Takes two slots in the pool
+					offset += 9;
+					i++;
+					break;
+				case 15:
+					offset += 4;
+					break;
+				case 7: case 8: case 16: case 19: case 20:
+					offset += 3;
+					break;
+				default:
+					return null;
+			}
+		}
+		// Access flags, then the index of the class entry
+		if (offset + 4 > data.length)
+			return null;
+		int classIndex = readShort(data, offset + 2);
+		if (classIndex <= 0 || classIndex >= count || data[offsets[classIndex] - 1] != 7)
+			return null;
+		int nameIndex = readShort(data, offsets[classIndex]);
+		if (nameIndex <= 0 || nameIndex >= count || data[offsets[nameIndex] - 1] != 1)
+			return null;
+		int nameOffset = offsets[nameIndex];
+		return new DataInputStream(new ByteArrayInputStream(data, nameOffset,
+				2 + readShort(data, nameOffset))).readUTF();
+	}
+
+	private static int readShort(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+	}
+
+	private void evict() {
+		Iterator<byte[]> it = cache.values().iterator();
+		// Always keep the most recent class, even if it alone exceeds the budget
+		while (cacheBytes > maxCacheBytes && cache.size() > 1 && it.hasNext()) {
+			cacheBytes -= it.next().length;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Map entry that writes values back to the map.
+	 */
+	private final class LazyEntry extends SimpleEntry<String, byte[]> {
+		private LazyEntry(String key, byte[] value) {
+			super(key, value);
+		}
+
+		@Override
+		public byte[] setValue(byte[] value) {
+			super.setValue(value);
+			return put(getKey(), value);
+		}
+	}
+}
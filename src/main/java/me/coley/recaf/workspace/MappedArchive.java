@@ -0,0 +1,383 @@
+package me.coley.recaf.workspace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only view of a zip archive backed by a memory-mapped file.
+ * <br>
+ * The central directory is indexed once when the archive is opened. Entry content is read
+ * directly from the mapped buffer: {@link ZipEntry#STORED stored} entries are copied out of the
+ * mapping and {@link ZipEntry#DEFLATED deflated} entries are fed from the mapping in small chunks
+ * to pooled {@link Inflater inflaters}, which inflate straight into an array of the final size.
+ * Each read still allocates the content of the entry, so only readers that read entries on demand,
+ * such as {@link LazyArchiveClassMap}, avoid holding every entry on the heap.
+ * <br>
+ * Java 8 cannot unmap a mapping explicitly, so the file stays mapped until the buffer is garbage
+ * collected, even after {@link #close()}. On Windows the archive cannot be modified or deleted until then.
+ * <br>
+ * Zip64 end records are read, for archives with more than 65,534 entries. Archives larger than 2GB
+ * and zip64 entry sizes and offsets are not supported, callers should fall back to the standard zip
+ * readers when {@link #open(Path)} fails.
+ *
+ * @author Matt
+ */
+public class MappedArchive implements Closeable {
+	private static final int SIG_LOCAL = 0x04034b50;
+	private static final int SIG_CENTRAL = 0x02014b50;
+	private static final int SIG_END = 0x06054b50;
+	private static final int SIG_END64 = 0x06064b50;
+	private static final int SIG_END64_LOCATOR = 0x07064b50;
+	private static final int END64_LOCATOR_SIZE = 20;
+	private static final int END_SIZE = 22;
+	private static final int LOCAL_SIZE = 30;
+	private static final int CENTRAL_SIZE = 46;
+	private static final int MAX_COMMENT = 0xFFFF;
+	private static final int INPUT_CHUNK = 8192;
+	private static final ThreadLocal<byte[]> INPUT = ThreadLocal.withInitial(() -> new byte[INPUT_CHUNK]);
+	private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+	private final List<Entry> entries;
+	private final ByteBuffer buffer;
+	private final Path path;
+	private volatile boolean closed;
+
+	private MappedArchive(Path path, ByteBuffer buffer) throws IOException {
+		this.path = path;
+		this.buffer = buffer;
+		this.entries = Collections.unmodifiableList(readCentralDirectory());
+	}
+
+	/**
+	 * @param path
+	 * 		Path to a zip archive.
+	 *
+	 * @return Mapped archive.
+	 *
+	 * @throws IOException
+	 * 		When the file cannot be mapped, or the archive structure is not supported.
+	 */
+	public static MappedArchive open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("Archive too large to map: " + path);
+			// The mapping remains valid after the channel is closed
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return new MappedArchive(path, mapped.order(ByteOrder.LITTLE_ENDIAN));
+		}
+	}
+
+	/**
+	 * @return Path of the archive.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return Entries of the archive, in central directory order.
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @param entry
+	 * 		Entry in the archive.
+	 *
+	 * @return Buffer of the entry's content as it is stored in the archive.
+	 * For {@link ZipEntry#STORED} entries this is the content itself.
+	 */
+	public ByteBuffer getRawContent(Entry entry) {
+		int start = getDataOffset(entry);
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(start);
+		slice.limit(start + entry.getCompressedSize());
+		return slice.slice();
+	}
+
+	/**
+	 * @param entry
+	 * 		Entry in the archive.
+	 *
+	 * @return Decompressed content of the entry.
+	 *
+	 * @throws IOException
+	 * 		When the entry content cannot be decompressed.
+	 */
+	public byte[] read(Entry entry) throws IOException {
+		return read(entry, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads only the start of an entry, used to check file headers without decompressing the
+	 * entire entry.
+	 *
+	 * @param entry
+	 * 		Entry in the archive.
+	 * @param length
+	 * 		Maximum number of bytes to read.
+	 *
+	 * @return Up to {@code length} bytes of the decompressed content of the entry.
+	 *
+	 * @throws IOException
+	 * 		When the entry content cannot be decompressed.
+	 */
+	public byte[] readPrefix(Entry entry, int length) throws IOException {
+		return read(entry, length);
+	}
+
+	private byte[] read(Entry entry, int limit) throws IOException {
+		if (closed)
+			throw new IOException("Archive is closed: " + path);
+		ByteBuffer raw = getRawContent(entry);
+		if (entry.getMethod() == ZipEntry.STORED) {
+			byte[] content = new byte[Math.min(limit, raw.remaining())];
+			raw.get(content);
+			return content;
+		} else if (entry.getMethod() == ZipEntry.DEFLATED) {
+			return inflate(entry, raw, limit);
+		}
+		throw new IOException("Unsupported compression method " + entry.getMethod() + " for: " + entry.getName());
+	}
+
+	private byte[] inflate(Entry entry, ByteBuffer raw, int limit) throws IOException {
+		Inflater inflater = inflaters.poll();
+		if (inflater == null)
+			inflater = new Inflater(true);
+		// Compressed content is copied out of the mapping one chunk at a time
+		Input input = new Input(raw, INPUT.get());
+		try {
+			// The declared size is usually correct, so inflate directly into an array of that size.
+			// Obfuscated archives can lie about it though, so collect any remainder if it does not fit.
+			byte[] content = new byte[Math.max(0, Math.min(limit, entry.getSize()))];
+			int read = inflate(inflater, input, content, 0, content.length);
+			if (read == limit || (inflater.finished() && read == content.length))
+				return read == content.length ? content : Arrays.copyOf(content, read);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(read, 1024) * 2);
+			out.write(content, 0, read);
+			byte[] chunk = new byte[8192];
+			while (out.size() < limit && !inflater.finished()) {
+				int n = inflate(inflater, input, chunk, 0, Math.min(chunk.length, limit - out.size()));
+				if (n == 0)
+					break;
+				out.write(chunk, 0, n);
+			}
+			return out.toByteArray();
+		} catch (DataFormatException ex) {
+			throw new IOException("Invalid deflated content for: " + entry.getName(), ex);
+		} finally {
+			inflater.reset();
+			inflaters.offer(inflater);
+		}
+	}
+
+	private static int inflate(Inflater inflater, Input input, byte[] out, int offset, int length)
+			throws DataFormatException {
+		int read = 0;
+		while (read < length && !inflater.finished()) {
+			if (inflater.needsInput() && !input.feed(inflater))
+				break;
+			int n = inflater.inflate(out, offset + read, length - read);
+			if (n == 0 && inflater.needsDictionary())
+				break;
+			read += n;
+		}
+		return read;
+	}
+
+	private int getDataOffset(Entry entry) {
+		int local = entry.getLocalHeaderOffset();
+		if (buffer.getInt(local) != SIG_LOCAL)
+			throw new IllegalStateException("Invalid local header for: " + entry.getName());
+		int nameLen = buffer.getShort(local + 26) & 0xFFFF;
+		int extraLen = buffer.getShort(local + 28) & 0xFFFF;
+		return local + LOCAL_SIZE + nameLen + extraLen;
+	}
+
+	private List<Entry> readCentralDirectory() throws IOException {
+		int end = findEndOfCentralDirectory();
+		long count = buffer.getShort(end + 10) & 0xFFFF;
+		long offset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+		if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+			// Too many entries for the end record, the actual values are in the zip64 end record
+			int locator = end - END64_LOCATOR_SIZE;
+			if (locator < 0 || buffer.getInt(locator) != SIG_END64_LOCATOR)
+				throw new IOException("Missing zip64 end record: " + path);
+			long end64 = buffer.getLong(locator + 8);
+			if (end64 < 0 || end64 > locator - 56 || buffer.getInt((int) end64) != SIG_END64)
+				throw new IOException("Invalid zip64 end record: " + path);
+			count = buffer.getLong((int) end64 + 32);
+			offset = buffer.getLong((int) end64 + 48);
+			end = (int) end64;
+		}
+		List<Entry> list = new ArrayList<>((int) Math.min(count, 0xFFFF));
+		int pos = (int) offset;
+		while (pos + CENTRAL_SIZE <= end && buffer.getInt(pos) == SIG_CENTRAL) {
+			int method = buffer.getShort(pos + 10) & 0xFFFF;
+			int crc = buffer.getInt(pos + 16);
+			long compressedSize = buffer.getInt(pos + 20) & 0xFFFFFFFFL;
+			long size = buffer.getInt(pos + 24) & 0xFFFFFFFFL;
+			int nameLen = buffer.getShort(pos + 28) & 0xFFFF;
+			int extraLen = buffer.getShort(pos + 30) & 0xFFFF;
+			int commentLen = buffer.getShort(pos + 32) & 0xFFFF;
+			long localOffset = buffer.getInt(pos + 42) & 0xFFFFFFFFL;
+			if (compressedSize > Integer.MAX_VALUE || size > Integer.MAX_VALUE || localOffset >= buffer.capacity())
+				throw new IOException("Unsupported entry sizes/offsets in: " + path);
+			byte[] name = new byte[nameLen];
+			ByteBuffer nameSlice = buffer.duplicate();
+			nameSlice.position(pos + CENTRAL_SIZE);
+			nameSlice.get(name);
+			list.add(new Entry(new String(name, StandardCharsets.UTF_8), method, crc,
+					(int) compressedSize, (int) size, (int) localOffset));
+			pos += CENTRAL_SIZE + nameLen + extraLen + commentLen;
+		}
+		return list;
+	}
+
+	private int findEndOfCentralDirectory() throws IOException {
+		int min = Math.max(0, buffer.capacity() - END_SIZE - MAX_COMMENT);
+		for (int i = buffer.capacity() - END_SIZE; i >= min; i--)
+			if (buffer.getInt(i) == SIG_END)
+				return i;
+		throw new IOException("No end of central directory found: " + path);
+	}
+
+	/**
+	 * Closes the archive for reading and releases its inflaters. The mapping itself is released
+	 * once it is garbage collected.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Inflater inflater;
+		while ((inflater = inflaters.poll()) != null)
+			inflater.end();
+	}
+
+	/**
+	 * Compressed content of an entry, fed to an inflater in chunks.
+	 */
+	private static final class Input {
+		private final ByteBuffer raw;
+		private final byte[] chunk;
+
+		private Input(ByteBuffer raw, byte[] chunk) {
+			this.raw = raw;
+			this.chunk = chunk;
+		}
+
+		private boolean feed(Inflater inflater) {
+			if (!raw.hasRemaining())
+				return false;
+			int length = Math.min(chunk.length, raw.remaining());
+			raw.get(chunk, 0, length);
+			inflater.setInput(chunk, 0, length);
+			return true;
+		}
+	}
+
+	/**
+	 * Central directory entry of a {@link MappedArchive}.
+	 */
+	public static final class Entry {
+		private final String name;
+		private final int method;
+		private final int crc;
+		private final int compressedSize;
+		private final int size;
+		private final int localHeaderOffset;
+
+		private Entry(String name, int method, int crc, int compressedSize, int size, int localHeaderOffset) {
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		/**
+		 * @return Entry name.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Compression method, see {@link ZipEntry#STORED} and {@link ZipEntry#DEFLATED}.
+		 */
+		public int getMethod() {
+			return method;
+		}
+
+		/**
+		 * @return CRC-32 of the uncompressed content.
+		 */
+		public int getCrc() {
+			return crc;
+		}
+
+		/**
+		 * @return Size of the content as stored in the archive.
+		 */
+		public int getCompressedSize() {
+			return compressedSize;
+		}
+
+		/**
+		 * @return Declared size of the uncompressed content.
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * @return Offset of the entry's local header in the archive.
+		 */
+		public int getLocalHeaderOffset() {
+			return localHeaderOffset;
+		}
+
+		/**
+		 * @return {@code true} when the entry name denotes a directory.
+		 */
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		/**
+		 * @return Equivalent zip entry, used for {@link EntryLoader} checks.
+		 */
+		public ZipEntry toZipEntry() {
+			ZipEntry entry = new ZipEntry(name);
+			entry.setMethod(method);
+			entry.setCrc(crc & 0xFFFFFFFFL);
+			entry.setCompressedSize(compressedSize);
+			entry.setSize(size);
+			return entry;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.Recaf;
+import me.coley.recaf.util.struct.BulkBiConsumer;
+import me.coley.recaf.util.struct.ListeningMap;
+import org.objectweb.asm.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Table of the access flags of classes and their declared members, shared by searches and
+ * mappings that need to resolve members without reading the same classes over and over.
+ * <br>
+ * Classes are read once on first lookup. Inherited lookups walk the super-class and then the
+ * interfaces of the owner, and their results are memoized. Classes put into or removed from the
+ * primary resource drop their entry and all memoized lookups, since those may have walked through
+ * the changed class.
+ *
+ * @author Matt
+ */
+public class MemberTable {
+	/**
+	 * Access returned when a class or member cannot be found.
+	 */
+	public static final int NOT_FOUND = -1;
+	private final Map<String, Declared> declared = new ConcurrentHashMap<>();
+	private final Map<String, List<String>> resolved = new ConcurrentHashMap<>();
+	private final BiConsumer<String, byte[]> putListener = BulkBiConsumer.of((name, value) -> invalidate(name),
+			items -> items.keySet().forEach(this::invalidate));
+	private final Consumer<Object> removeListener = key -> invalidate((String) key);
+	private final Workspace workspace;
+
+	/**
+	 * @param workspace
+	 * 		Workspace to pull classes from.
+	 */
+	public MemberTable(Workspace workspace) {
+		this.workspace = workspace;
+		ListeningMap<String, byte[]> classes = workspace.getPrimary().getClasses();
+		classes.getPutListeners().add(putListener);
+		classes.getRemoveListeners().add(removeListener);
+	}
+
+	/**
+	 * Stop tracking changes to the workspace's primary classes.
+	 */
+	public void close() {
+		ListeningMap<String, byte[]> classes = workspace.getPrimary().getClasses();
+		classes.getPutListeners().remove(putListener);
+		classes.getRemoveListeners().remove(removeListener);
+	}
+
+	/**
+	 * @param name
+	 * 		Internal class name.
+	 *
+	 * @return Access of the class, or {@link #NOT_FOUND} if the class is not in the workspace.
+	 */
+	public int getClassAccess(String name) {
+		Declared declared = declared(name);
+		return declared == null ? NOT_FOUND : declared.access;
+	}
+
+	/**
+	 * @param owner
+	 * 		Internal name of the class the member is referenced by.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor.
+	 *
+	 * @return Access of the member, declared in the owner or inherited from its parents,
+	 * or {@link #NOT_FOUND} if no class in the hierarchy declares it.
+	 */
+	public int getAccess(String owner, String name, String desc) {
+		List<String> classes = getDeclaringClasses(owner, name, desc);
+		Declared declared = classes.isEmpty() ? null : declared(classes.get(0));
+		Integer access = declared == null ? null : declared.members.get(name + ' ' + desc);
+		return access == null ? NOT_FOUND : access;
+	}
+
+	/**
+	 * @param owner
+	 * 		Internal name of the class the member is referenced by.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor, or {@code null} to match members of any descriptor.
+	 *
+	 * @return Names of the owner and its parents that declare the member, in lookup order.
+	 * The first is the class the member resolves to.
+	 */
+	public List<String> getDeclaringClasses(String owner, String name, String desc) {
+		String key = desc == null ? name : name + ' ' + desc;
+		return resolve(owner, key, desc == null, new HashSet<>(), new boolean[1]);
+	}
+
+	private List<String> resolve(String owner, String key, boolean nameOnly, Set<String> visited,
+								 boolean[] incomplete) {
+		String memoKey = owner + (nameOnly ? "\0N" : "\0D") + key;
+		List<String> classes = resolved.get(memoKey);
+		if (classes != null)
+			return classes;
+		Declared declared = declared(owner);
+		// Unknown classes may still be added as libraries or phantoms, so lookups walking
+		// through them are not memoized. Looping hierarchies are not memoized either.
+		if (declared == null || !visited.add(owner)) {
+			incomplete[0] = true;
+			return Collections.emptyList();
+		}
+		boolean parentIncomplete = incomplete[0];
+		incomplete[0] = false;
+		classes = new ArrayList<>();
+		if (declared.declares(key, nameOnly))
+			classes.add(owner);
+		List<String> parents = new ArrayList<>();
+		if (declared.superName != null)
+			parents.add(declared.superName);
+		parents.addAll(Arrays.asList(declared.interfaces));
+		for (String parent : parents)
+			for (String cls : resolve(parent, key, nameOnly, visited, incomplete))
+				if (!classes.contains(cls))
+					classes.add(cls);
+		visited.remove(owner);
+		classes = Collections.unmodifiableList(classes);
+		if (!incomplete[0])
+			resolved.put(memoKey, classes);
+		incomplete[0] |= parentIncomplete;
+		return classes;
+	}
+
+	private Declared declared(String name) {
+		if (name == null)
+			return null;
+		Declared value = declared.get(name);
+		if (value != null)
+			return value;
+		ClassReader reader = workspace.getClassReader(name);
+		if (reader == null)
+			return null;
+		try {
+			value = new Declared(reader);
+		} catch(Exception ex) {
+			// Unparsable classes are treated as missing
+			debug("Failed to read members of class '{}': {}", name, ex.getMessage());
+			return null;
+		}
+		declared.put(name, value);
+		return value;
+	}
+
+	private void invalidate(String name) {
+		declared.remove(name);
+		// Any memoized lookup may have walked through the changed class
+		resolved.clear();
+	}
+
+	/**
+	 * Access of a class and its declared members.
+	 */
+	private static final class Declared {
+		private final Map<String, Integer> members = new HashMap<>();
+		private final int access;
+		private final String superName;
+		private final String[] interfaces;
+
+		private Declared(ClassReader reader) {
+			access = reader.getAccess();
+			superName = reader.getSuperName();
+			interfaces = reader.getInterfaces();
+			reader.accept(new ClassVisitor(Recaf.ASM_VERSION) {
+				@Override
+				public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+					members.put(name + ' ' + desc, access);
+					return null;
+				}
+
+				@Override
+				public MethodVisitor visitMethod(int access, String name, String desc, String sig,
+												 String[] exceptions) {
+					members.put(name + ' ' + desc, access);
+					return null;
+				}
+			}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		}
+
+		private boolean declares(String key, boolean nameOnly) {
+			if (!nameOnly)
+				return members.containsKey(key);
+			for (String member : members.keySet())
+				if (member.startsWith(key) && member.charAt(key.length()) == ' ')
+					return true;
+			return false;
+		}
+	}
+}
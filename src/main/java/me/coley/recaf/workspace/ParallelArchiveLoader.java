@@ -0,0 +1,208 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.util.ClassUtil;
+import me.coley.recaf.util.IOUtil;
+import org.objectweb.asm.ClassReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Archive class reader that validates class entries across a fork-join pool.
+ * <br>
+ * Entries of a {@link MappedArchive} are also decompressed across the pool. Otherwise the local
+ * entries are read serially in the order they are stored, the same way the serial loader reads
+ * them, since looking entries up by name in the central directory gives different content for
+ * archives with duplicate names or with a central directory that disagrees with the local headers.
+ * <br>
+ * Results are handed to the {@link EntryLoader} on the calling thread, in the order the
+ * entries appear in the archive, so that duplicate and invalid class resolution is the same
+ * as when reading the archive serially.
+ *
+ * @author Matt
+ */
+class ParallelArchiveLoader {
+	private static final int MIN_CLASS_SIZE = 30;
+	private final Path path;
+	private final MappedArchive archive;
+	private final EntryLoader loader;
+	private final Predicate<String> skip;
+	private final int threads;
+
+	/**
+	 * @param path
+	 * 		Path to the archive.
+	 * @param loader
+	 * 		Loader to feed read classes into.
+	 * @param skip
+	 * 		Filter for entry names that should not be read.
+	 * @param threads
+	 * 		Number of threads to read with.
+	 */
+	ParallelArchiveLoader(Path path, EntryLoader loader, Predicate<String> skip, int threads) {
+		this(path, null, loader, skip, threads);
+	}
+
+	/**
+	 * @param archive
+	 * 		Memory-mapped view of the archive.
+	 * @param loader
+	 * 		Loader to feed read classes into.
+	 * @param skip
+	 * 		Filter for entry names that should not be read.
+	 * @param threads
+	 * 		Number of threads to read with.
+	 */
+	ParallelArchiveLoader(MappedArchive archive, EntryLoader loader, Predicate<String> skip, int threads) {
+		this(archive.getPath(), archive, loader, skip, threads);
+	}
+
+	private ParallelArchiveLoader(Path path, MappedArchive archive, EntryLoader loader,
+								  Predicate<String> skip, int threads) {
+		this.path = path;
+		this.archive = archive;
+		this.loader = loader;
+		this.skip = skip;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @return Map of class names to their bytecode.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be read. Before any class is given to the loader, so callers
+	 * 		can fall back to another reader.
+	 */
+	Map<String, byte[]> loadClasses() throws IOException {
+		long start = System.currentTimeMillis();
+		ReadClass[] read;
+		if (archive != null) {
+			List<MappedArchive.Entry> entries = new ArrayList<>();
+			for (MappedArchive.Entry entry : archive.getEntries())
+				if (!skip.test(entry.getName()))
+					entries.add(entry);
+			read = readAll(entries.size(), i -> read(archive, entries.get(i)));
+		} else {
+			List<ReadClass> entries = readLocalEntries();
+			read = readAll(entries.size(), i -> validate(entries.get(i).entryName, entries.get(i).code));
+		}
+		long readTime = System.currentTimeMillis() - start;
+		// Merge in archive order. Plugin provided loaders get the standard class handling,
+		// so any overridden behavior is still respected.
+		boolean usePrevalidated = loader.getClass() == EntryLoader.class;
+		int count = 0;
+		for (ReadClass value : read) {
+			if (value == null)
+				continue;
+			count++;
+			if (usePrevalidated && value.className != null)
+				loader.onValidClass(value.entryName, value.code, value.className);
+			else
+				loader.onClass(value.entryName, value.code);
+		}
+		loader.finishClasses();
+		long total = System.currentTimeMillis() - start;
+		info("Loaded {} classes from '{}' in {}ms (read + validate: {}ms, merge: {}ms, threads: {})",
+				loader.getClasses().size(), path.getFileName(), total, readTime, total - readTime, threads);
+		if (count != loader.getClasses().size())
+			debug(" - {} class entries were duplicates or invalid", count - loader.getClasses().size());
+		return loader.getClasses();
+	}
+
+	private ReadClass[] readAll(int count, IntFunction<ReadClass> reader) throws IOException {
+		ReadClass[] read = new ReadClass[count];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.submit(() -> IntStream.range(0, count).parallel()
+					.forEach(i -> read[i] = reader.apply(i))).get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading archive: " + path, ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof UncheckedIOException)
+				throw ((UncheckedIOException) cause).getCause();
+			throw new IOException("Failed to read archive: " + path, cause);
+		} finally {
+			pool.shutdown();
+		}
+		return read;
+	}
+
+	private ReadClass read(MappedArchive archive, MappedArchive.Entry entry) {
+		try {
+			// The class file might not end with .class or .class/
+			// so we also check it's header.
+			if (!loader.isValidClassEntry(entry.toZipEntry()) &&
+					!loader.isValidClassFile(new ByteArrayInputStream(archive.readPrefix(entry, 4))))
+				return null;
+			return validate(entry.getName(), archive.read(entry));
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private List<ReadClass> readLocalEntries() throws IOException {
+		List<ReadClass> entries = new ArrayList<>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(path.toFile()))) {
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null) {
+				// Skip intentional garbage / zip file abnormalities
+				if (skip.test(entry.getName()))
+					continue;
+				out.reset();
+				if (!loader.isValidClassEntry(entry)) {
+					// The class file might not end with .class or .class/
+					// so we also check it's header.
+					byte[] header = IOUtil.toByteArray(zis, out, buffer, 4);
+					if (!loader.isValidClassFile(new ByteArrayInputStream(header)))
+						continue;
+				}
+				// Remaining content is appended to the header, if it was read
+				entries.add(new ReadClass(entry.getName(), IOUtil.toByteArray(zis, out, buffer), null));
+			}
+		}
+		return entries;
+	}
+
+	private static ReadClass validate(String entryName, byte[] code) {
+		// There is no possible way a "class" under 30 bytes is valid
+		if (code.length < MIN_CLASS_SIZE)
+			return null;
+		String className = ClassUtil.isValidClass(code) ? new ClassReader(code).getClassName() : null;
+		return new ReadClass(entryName, code, className);
+	}
+
+	/**
+	 * Wrapper for a class entry read on a worker thread.
+	 */
+	private static final class ReadClass {
+		private final String entryName;
+		private final byte[] code;
+		private final String className;
+
+		private ReadClass(String entryName, byte[] code, String className) {
+			this.entryName = entryName;
+			this.code = code;
+			this.className = className;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.util.struct.ListeningMap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Index of item names to the workspace resource that provides them. When multiple resources
+ * contain an item, the resource that comes first in the workspace's lookup order is used:
+ * the primary resource, then libraries in order.
+ * <br>
+ * The index is kept up to date through the put listeners of each resource's map. Removals are
+ * detected lazily by checking that the indexed resource still contains the item, in which case
+ * the resources are scanned for the next one containing it. Reloading or clearing a resource
+ * replaces its content without notifying put listeners, so the index is rebuilt when that happens,
+ * or when the libraries of the workspace change. Since every item is indexed, items that are not
+ * in the index are not in any resource, and lookups of them do not scan the resources.
+ *
+ * @author Matt
+ */
+class ResourceIndex {
+	private final Map<String, JavaResource> index = new ConcurrentHashMap<>();
+	private final Map<JavaResource, BiConsumer<String, byte[]>> listeners = new IdentityHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final JavaResource primary;
+	private final List<JavaResource> libraries;
+	private final Function<JavaResource, ListeningMap<String, byte[]>> content;
+	private volatile Generation indexed;
+
+	/**
+	 * @param primary
+	 * 		Primary resource of the workspace.
+	 * @param libraries
+	 * 		Library resources of the workspace, in lookup order.
+	 * @param content
+	 * 		Function to get the indexed map of a resource.
+	 */
+	ResourceIndex(JavaResource primary, List<JavaResource> libraries,
+				  Function<JavaResource, ListeningMap<String, byte[]>> content) {
+		this.primary = primary;
+		this.libraries = libraries;
+		this.content = content;
+	}
+
+	/**
+	 * @param name
+	 * 		Item name.
+	 *
+	 * @return First resource in lookup order containing the item, or {@code null} if no resource contains it.
+	 */
+	JavaResource find(String name) {
+		Generation current = ensureIndexed();
+		JavaResource owner = index.get(name);
+		if (owner == null || content.apply(owner).containsKey(name)) {
+			hits.incrementAndGet();
+			return owner;
+		}
+		// The item was removed from the indexed resource.
+		// Check if any other resource has it, in lookup order.
+		misses.incrementAndGet();
+		for (JavaResource resource : current.resources)
+			if (content.apply(resource).containsKey(name)) {
+				index.put(name, resource);
+				return resource;
+			}
+		index.remove(name, owner);
+		return null;
+	}
+
+	/**
+	 * @return Number of lookups answered by the index, including those of items in no resource.
+	 */
+	long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of lookups found with an outdated resource, which required a scan of the resources.
+	 */
+	long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Stop listening to the indexed resources, and drop the index.
+	 */
+	synchronized void close() {
+		listeners.forEach((resource, listener) -> content.apply(resource).getPutListeners().remove(listener));
+		listeners.clear();
+		indexed = null;
+		index.clear();
+	}
+
+	private Generation ensureIndexed() {
+		Generation current = indexed;
+		// Libraries can be added, removed or replaced, and resources reloaded, after the index was built
+		if (isCurrent(current))
+			return current;
+		synchronized (this) {
+			current = indexed;
+			if (isCurrent(current))
+				return current;
+			List<JavaResource> resources = new ArrayList<>(libraries.size() + 1);
+			resources.add(primary);
+			resources.addAll(libraries);
+			index.clear();
+			// Stop listening to resources that are no longer part of the workspace
+			Iterator<Map.Entry<JavaResource, BiConsumer<String, byte[]>>> it = listeners.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<JavaResource, BiConsumer<String, byte[]>> entry = it.next();
+				if (indexOf(resources, entry.getKey()) < 0) {
+					content.apply(entry.getKey()).getPutListeners().remove(entry.getValue());
+					it.remove();
+				}
+			}
+			int[] versions = new int[resources.size()];
+			for (int i = 0; i < resources.size(); i++) {
+				JavaResource resource = resources.get(i);
+				// Getting the map may load the resource, so the version is read afterwards
+				ListeningMap<String, byte[]> map = content.apply(resource);
+				versions[i] = map.getBackingVersion();
+				for (String name : map.keySet())
+					index.putIfAbsent(name, resource);
+				if (!listeners.containsKey(resource)) {
+					BiConsumer<String, byte[]> listener = (name, value) -> onPut(resource, name);
+					listeners.put(resource, listener);
+					map.getPutListeners().add(listener);
+				}
+			}
+			current = new Generation(resources, versions);
+			indexed = current;
+			return current;
+		}
+	}
+
+	private boolean isCurrent(Generation current) {
+		if (current == null)
+			return false;
+		List<JavaResource> resources = current.resources;
+		if (resources.size() != libraries.size() + 1 || resources.get(0) != primary)
+			return false;
+		for (int i = 1; i < resources.size(); i++)
+			if (resources.get(i) != libraries.get(i - 1))
+				return false;
+		for (int i = 0; i < resources.size(); i++)
+			if (content.apply(resources.get(i)).getBackingVersion() != current.versions[i])
+				return false;
+		return true;
+	}
+
+	private void onPut(JavaResource resource, String name) {
+		Generation generation = indexed;
+		if (generation == null)
+			return;
+		List<JavaResource> current = generation.resources;
+		int priority = indexOf(current, resource);
+		// Resource is no longer part of the workspace
+		if (priority < 0)
+			return;
+		index.merge(name, resource, (existing, added) -> {
+			int existingPriority = indexOf(current, existing);
+			return existingPriority >= 0 && existingPriority < priority ? existing : added;
+		});
+	}
+
+	private static int indexOf(List<JavaResource> resources, JavaResource resource) {
+		for (int i = 0; i < resources.size(); i++)
+			if (resources.get(i) == resource)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Resources the index was built from, and the {@link ListeningMap#getBackingVersion() versions}
+	 * of their content at that time.
+	 */
+	private static final class Generation {
+		private final List<JavaResource> resources;
+		private final int[] versions;
+
+		private Generation(List<JavaResource> resources, int[] versions) {
+			this.resources = resources;
+			this.versions = versions;
+		}
+	}
+}
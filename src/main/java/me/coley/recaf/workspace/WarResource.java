@@ -10,6 +10,8 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+import static me.coley.recaf.util.Log.*;
+
 /**
  * Importable war resource.
  *
@@ -33,6 +35,22 @@ public class WarResource extends ArchiveResource {
 
 	@Override
 	protected Map<String, byte[]> loadClasses() throws IOException {
+		Map<String, byte[]> snapshot = loadSnapshot("classes");
+		if (snapshot != null)
+			return snapshot;
+		return saveSnapshot("classes", readClasses());
+	}
+
+	private Map<String, byte[]> readClasses() throws IOException {
+		MappedArchive archive = openMappedArchive();
+		if (archive != null) {
+			try (MappedArchive mapped = archive) {
+				return loadClasses(mapped);
+			} catch (IOException | RuntimeException ex) {
+				debug("Failed to read mapped archive '{}', using stream reading instead: {}",
+						getPath().getFileName(), ex.getMessage());
+			}
+		}
 		// iterate war entries
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		byte[] buffer = new byte[8192];
@@ -62,8 +80,32 @@ public class WarResource extends ArchiveResource {
 		return loader.getClasses();
 	}
 
+	private Map<String, byte[]> loadClasses(MappedArchive archive) throws IOException {
+		EntryLoader loader = getEntryLoader();
+		return loadClasses(archive, (a, entry) -> {
+			ZipEntry zipEntry = entry.toZipEntry();
+			return loader.isValidFileEntry(zipEntry) && loader.isValidClassEntry(zipEntry);
+		}, name -> name.startsWith(WAR_CLASS_PREFIX) ? name.substring(WAR_CLASS_PREFIX.length()) : name);
+	}
+
 	@Override
 	protected Map<String, byte[]> loadFiles() throws IOException {
+		Map<String, byte[]> snapshot = loadSnapshot("files");
+		if (snapshot != null)
+			return snapshot;
+		return saveSnapshot("files", readFiles());
+	}
+
+	private Map<String, byte[]> readFiles() throws IOException {
+		MappedArchive archive = openMappedArchive();
+		if (archive != null) {
+			try (MappedArchive mapped = archive) {
+				return loadFiles(mapped);
+			} catch (IOException | RuntimeException ex) {
+				debug("Failed to read mapped archive '{}', using stream reading instead: {}",
+						getPath().getFileName(), ex.getMessage());
+			}
+		}
 		// iterate war entries
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		byte[] buffer = new byte[8192];
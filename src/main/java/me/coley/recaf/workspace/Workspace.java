@@ -11,9 +11,13 @@ import me.coley.recaf.control.Controller;
 import me.coley.recaf.control.headless.HeadlessController;
 import me.coley.recaf.graph.flow.FlowGraph;
 import me.coley.recaf.graph.inheritance.HierarchyGraph;
+import me.coley.recaf.mapping.AggregateMappings;
 import me.coley.recaf.mapping.AsmMappingUtils;
 import me.coley.recaf.parse.javadoc.Javadocs;
 import me.coley.recaf.parse.source.*;
+import me.coley.recaf.search.NameIndex;
+import me.coley.recaf.search.ReferenceIndex;
+import me.coley.recaf.search.StringIndex;
 import me.coley.recaf.util.Log;
 import me.coley.recaf.util.ThreadUtil;
 import org.objectweb.asm.ClassReader;
@@ -31,12 +35,18 @@ import java.util.stream.Stream;
  */
 public class Workspace {
 	private static final LazyClasspathResource CP = LazyClasspathResource.get();
-	private final Map<String, String> aggregatedMappings = new TreeMap<>();
+	private final AggregateMappings aggregatedMappings = new AggregateMappings();
 	private final PhantomResource phantoms = new PhantomResource();
 	private final JavaResource primary;
 	private final List<JavaResource> libraries;
+	private final ResourceIndex classIndex;
+	private final ResourceIndex fileIndex;
 	private HierarchyGraph hierarchyGraph;
 	private FlowGraph flowGraph;
+	private ReferenceIndex referenceIndex;
+	private StringIndex stringIndex;
+	private NameIndex nameIndex;
+	private MemberTable memberTable;
 	private ParserConfiguration config;
 
 	/**
@@ -61,6 +71,28 @@ public class Workspace {
 		this.primary = primary;
 		this.primary.setPrimary(true);
 		this.libraries = libraries;
+		this.classIndex = new ResourceIndex(primary, libraries, JavaResource::getClasses);
+		this.fileIndex = new ResourceIndex(primary, libraries, JavaResource::getFiles);
+	}
+
+	/**
+	 * Release the save-states of the primary resource, and stop the workspace's graphs and indexes
+	 * from listening to its resources. Called when the workspace is replaced.
+	 */
+	public synchronized void close() {
+		primary.closeHistory();
+		if (hierarchyGraph != null)
+			hierarchyGraph.close();
+		if (referenceIndex != null)
+			referenceIndex.close();
+		if (stringIndex != null)
+			stringIndex.close();
+		if (nameIndex != null)
+			nameIndex.close();
+		if (memberTable != null)
+			memberTable.close();
+		classIndex.close();
+		fileIndex.close();
 	}
 
 	/**
@@ -87,12 +119,48 @@ public class Workspace {
 	/**
 	 * @return Inheritance hierarchy utility.
 	 */
-	public HierarchyGraph getHierarchyGraph() {
+	public synchronized HierarchyGraph getHierarchyGraph() {
 		if(hierarchyGraph == null)
 			hierarchyGraph = new HierarchyGraph(this);
 		return hierarchyGraph;
 	}
 
+	/**
+	 * @return Index of class and member references in the primary resource.
+	 */
+	public synchronized ReferenceIndex getReferenceIndex() {
+		if(referenceIndex == null)
+			referenceIndex = new ReferenceIndex(this);
+		return referenceIndex;
+	}
+
+	/**
+	 * @return Index of string constants in the primary resource.
+	 */
+	public synchronized StringIndex getStringIndex() {
+		if(stringIndex == null)
+			stringIndex = new StringIndex(this);
+		return stringIndex;
+	}
+
+	/**
+	 * @return Index of class and member names in the constant pools of the primary resource.
+	 */
+	public synchronized NameIndex getNameIndex() {
+		if(nameIndex == null)
+			nameIndex = new NameIndex(this);
+		return nameIndex;
+	}
+
+	/**
+	 * @return Table of class and member access in the workspace.
+	 */
+	public synchronized MemberTable getMemberTable() {
+		if(memberTable == null)
+			memberTable = new MemberTable(this);
+		return memberTable;
+	}
+
 	/**
 	 * @return Method flow utility.
 	 */
@@ -102,11 +170,26 @@ public class Workspace {
 		return flowGraph;
 	}
 
+	/**
+	 * @return Number of class and file lookups answered by the workspace's name index.
+	 */
+	public long getIndexHits() {
+		return classIndex.getHits() + fileIndex.getHits();
+	}
+
+	/**
+	 * @return Number of class and file lookups that had to be re-resolved because the indexed
+	 * resource no longer contained the name.
+	 */
+	public long getIndexMisses() {
+		return classIndex.getMisses() + fileIndex.getMisses();
+	}
+
 	/**
 	 * @return Aggregated ASM mappings for the workspace.
 	 */
 	public Map<String, String> getAggregatedMappings() {
-		return Collections.unmodifiableMap(aggregatedMappings);
+		return aggregatedMappings.getMappings();
 	}
 
 	// ====================================== RENAME UTILS ====================================== //
@@ -157,9 +240,20 @@ public class Workspace {
 		ThreadUtil.run(() -> {
 			try {
 				long start = System.currentTimeMillis();
+				// Phantoms of an unmodified archive can be restored from a snapshot
+				ArchiveResource archive = primary instanceof ArchiveResource && primary.getDirtyClasses().isEmpty() ?
+						(ArchiveResource) primary : null;
+				Map<String, byte[]> snapshot = archive == null ? null : archive.loadSnapshot("phantoms");
+				if (snapshot != null) {
+					phantoms.clear();
+					phantoms.getClasses().putAll(snapshot);
+					return;
+				}
 				phantoms.populatePhantoms(primary.getClasses());
 				Log.debug("Generated {} phantom classes in {} ms",
 						phantoms.getClasses().size(), (System.currentTimeMillis() - start));
+				if (archive != null && primary.getDirtyClasses().isEmpty())
+					archive.saveSnapshot("phantoms", phantoms.getClasses());
 			} catch (Throwable t) {
 				Log.error(t, "Failed to analyze phantom references for primary resource");
 			}
@@ -184,7 +278,7 @@ public class Workspace {
 
 			usefulMappings.put(newMapping.getKey(), newMapping.getValue());
 		}
-		AsmMappingUtils.applyMappingToExisting(this.aggregatedMappings, usefulMappings);
+		aggregatedMappings.apply(usefulMappings);
 	}
 
 	// ================================= CLASS / RESOURCE UTILS ================================= //
@@ -249,11 +343,9 @@ public class Workspace {
 	 * @return The resource that contains the class.
 	 */
 	public JavaResource getContainingResourceForClass(String name) {
-		if(getPrimary().getClasses().containsKey(name))
-			return primary;
-		for(JavaResource resource : getLibraries())
-			if(resource.getClasses().containsKey(name))
-				return resource;
+		JavaResource resource = classIndex.find(name);
+		if(resource != null)
+			return resource;
 		if(CP.getClasses().containsKey(name))
 			return CP;
 		else if (phantoms.getClasses().containsKey(name))
@@ -269,12 +361,7 @@ public class Workspace {
 	 * @return The resource that contains the file.
 	 */
 	public JavaResource getContainingResourceForFile(String name) {
-		if(getPrimary().getFiles().containsKey(name))
-			return primary;
-		for(JavaResource resource : getLibraries())
-			if(resource.getFiles().containsKey(name))
-				return resource;
-		return null;
+		return fileIndex.find(name);
 	}
 
 	/**
@@ -284,11 +371,8 @@ public class Workspace {
 	 * @return {@code true} if one of the workspace sources contains the class.
 	 */
 	public boolean hasClass(String name) {
-		if (primary.getClasses().containsKey(name))
+		if (classIndex.find(name) != null)
 			return true;
-		for (JavaResource resource : getLibraries())
-			if (resource.getClasses().containsKey(name))
-				return true;
 		if (CP.getClasses().containsKey(name))
 			return true;
 		else
@@ -302,12 +386,7 @@ public class Workspace {
 	 * @return {@code true} if one of the workspace sources contains the resource.
 	 */
 	public boolean hasFile(String name) {
-		if(primary.getFiles().containsKey(name))
-			return true;
-		for(JavaResource resource : getLibraries())
-			if(resource.getFiles().containsKey(name))
-				return true;
-		return false;
+		return fileIndex.find(name) != null;
 	}
 
 	/**
@@ -317,11 +396,9 @@ public class Workspace {
 	 * @return Raw bytecode of the class by the given name.
 	 */
 	public byte[] getRawClass(String name) {
-		byte[] ret = primary.getClasses().get(name);
-		if(ret != null)
-			return ret;
-		for(JavaResource resource : getLibraries()) {
-			ret = resource.getClasses().get(name);
+		JavaResource resource = classIndex.find(name);
+		if(resource != null) {
+			byte[] ret = resource.getClasses().get(name);
 			if(ret != null)
 				return ret;
 		}
@@ -362,13 +439,9 @@ public class Workspace {
 	 * @return Resource binary by the given name.
 	 */
 	public byte[] getFile(String name) {
-		byte[] ret = primary.getFiles().get(name);
-		if(ret != null)
-			return ret;
-		for(JavaResource resource : getLibraries())
-			ret = resource.getFiles().get(name);
-		if(ret != null)
-			return ret;
+		JavaResource resource = fileIndex.find(name);
+		if(resource != null)
+			return resource.getFiles().get(name);
 		return null;
 	}
 
@@ -0,0 +1,203 @@
+package me.coley.recaf;
+
+import me.coley.recaf.command.impl.Export;
+import me.coley.recaf.util.ArchiveWriter;
+import me.coley.recaf.util.IOUtil;
+import me.coley.recaf.workspace.MappedArchive;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the parallel archive writer.
+ *
+ * @author Matt
+ */
+public class ArchiveWriterTest extends Base {
+	@Test
+	public void testCompressedArchiveOpens() {
+		try {
+			SortedMap<String, byte[]> content = content();
+			Path output = write(new ArchiveWriter(true, Deflater.DEFAULT_COMPRESSION, 4), content);
+			assertArchive(output, content, ZipEntry.DEFLATED);
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testStoredArchiveOpens() {
+		try {
+			SortedMap<String, byte[]> content = content();
+			Path output = write(new ArchiveWriter(false, Deflater.DEFAULT_COMPRESSION, 4), content);
+			assertArchive(output, content, ZipEntry.STORED);
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testAllCompressionLevels() {
+		try {
+			SortedMap<String, byte[]> content = content();
+			for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+				Path output = write(new ArchiveWriter(true, level, 4), content);
+				assertArchive(output, content, ZipEntry.DEFLATED);
+			}
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testInvalidCompressionLevels() {
+		assertThrows(IllegalArgumentException.class, () -> new ArchiveWriter(true, -2, 1));
+		assertThrows(IllegalArgumentException.class, () -> new ArchiveWriter(true, 10, 1));
+		// The command rejects the level before writing anything
+		Export export = new Export();
+		export.compressionLevel = 10;
+		IllegalStateException ex = assertThrows(IllegalStateException.class, export::call);
+		assertTrue(ex.getMessage().contains("compression level"));
+	}
+
+	@Test
+	public void testIncrementalCopy() {
+		try {
+			SortedMap<String, byte[]> content = content();
+			Path source = write(new ArchiveWriter(true, Deflater.DEFAULT_COMPRESSION, 4), content);
+			MappedArchive archive = MappedArchive.open(source);
+			try {
+				// Unchanged content is copied as-is
+				ArchiveWriter writer = new ArchiveWriter(true, Deflater.DEFAULT_COMPRESSION, 4);
+				writer.setSource(archive, name -> true);
+				Path output = write(writer, content);
+				assertEquals(content.size(), writer.getCopiedCount());
+				assertArchive(output, content, ZipEntry.DEFLATED);
+				// Changed content fails the CRC check, even if the filter says it is unmodified
+				SortedMap<String, byte[]> modified = new TreeMap<>(content);
+				modified.put("a/b/Third.txt", text("changed"));
+				output = write(writer, modified);
+				assertEquals(content.size() - 1, writer.getCopiedCount());
+				assertArchive(output, modified, ZipEntry.DEFLATED);
+				// Entries are only copied when the filter allows it
+				writer.setSource(archive, name -> !name.equals("First.txt"));
+				output = write(writer, content);
+				assertEquals(content.size() - 1, writer.getCopiedCount());
+				assertArchive(output, content, ZipEntry.DEFLATED);
+				// Entries stored with a different method are compressed again
+				writer = new ArchiveWriter(false, Deflater.DEFAULT_COMPRESSION, 4);
+				writer.setSource(archive, name -> true);
+				output = write(writer, content);
+				assertEquals(0, writer.getCopiedCount());
+				assertArchive(output, content, ZipEntry.STORED);
+			} finally {
+				archive.close();
+			}
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testZip64EntryCount() {
+		try {
+			// Too many entries for the standard end record
+			SortedMap<String, byte[]> content = new TreeMap<>();
+			for (int i = 0; i < 0x10000; i++)
+				content.put("many/" + i + ".txt", text(String.valueOf(i)));
+			assertTrue(ArchiveWriter.canWrite(content));
+			Path output = write(new ArchiveWriter(true, Deflater.DEFAULT_COMPRESSION, 4), content);
+			assertArchive(output, content, ZipEntry.DEFLATED);
+			MappedArchive archive = MappedArchive.open(output);
+			try {
+				assertEquals(content.size() + 1, archive.getEntries().size());
+			} finally {
+				archive.close();
+			}
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	// ==================== UTILITIES ===================== //
+
+	private static SortedMap<String, byte[]> content() {
+		SortedMap<String, byte[]> content = new TreeMap<>();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			sb.append("line ").append(i).append('\n');
+		content.put("First.txt", text(sb.toString()));
+		content.put("a/Second.txt", text("second"));
+		content.put("a/b/Third.txt", text("third"));
+		content.put("a/b/c/Empty.txt", new byte[0]);
+		content.put("d/Fourth.txt", text("fourth"));
+		return content;
+	}
+
+	private static byte[] text(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static Path write(ArchiveWriter writer, SortedMap<String, byte[]> content) throws IOException {
+		Path output = Files.createTempFile("recaf-archive", ".jar");
+		output.toFile().deleteOnExit();
+		writer.write(output, content);
+		return output;
+	}
+
+	private static Set<String> directories(Set<String> names) {
+		Set<String> directories = new TreeSet<>();
+		for (String name : names)
+			for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1))
+				directories.add(name.substring(0, i + 1));
+		return directories;
+	}
+
+	private static void assertArchive(Path path, SortedMap<String, byte[]> content, int method)
+			throws IOException {
+		Set<String> directories = directories(content.keySet());
+		try (ZipFile zip = new ZipFile(path.toFile())) {
+			assertEquals(content.size() + directories.size(), zip.size());
+			for (String directory : directories) {
+				ZipEntry entry = zip.getEntry(directory);
+				assertNotNull(entry, directory);
+				assertTrue(entry.isDirectory());
+			}
+			for (Map.Entry<String, byte[]> e : content.entrySet()) {
+				ZipEntry entry = zip.getEntry(e.getKey());
+				assertNotNull(entry, e.getKey());
+				assertEquals(method, entry.getMethod());
+				try (InputStream in = zip.getInputStream(entry)) {
+					assertArrayEquals(e.getValue(), IOUtil.toByteArray(in));
+				}
+			}
+		}
+		// Directories must come before the entries inside them when read as a stream
+		Set<String> visited = new HashSet<>();
+		try (JarInputStream in = new JarInputStream(Files.newInputStream(path))) {
+			JarEntry entry;
+			while ((entry = in.getNextJarEntry()) != null) {
+				String name = entry.getName();
+				int end = name.lastIndexOf('/', name.length() - 2);
+				if (end > 0)
+					assertTrue(visited.contains(name.substring(0, end + 1)), name);
+				visited.add(name);
+				if (!entry.isDirectory())
+					assertArrayEquals(content.get(name), IOUtil.toByteArray(in));
+			}
+		}
+		assertEquals(content.size() + directories.size(), visited.size());
+	}
+}
@@ -4,9 +4,11 @@ import me.coley.recaf.graph.ClassDfsSearch;
 import me.coley.recaf.graph.SearchResult;
 import me.coley.recaf.graph.inheritance.*;
 import me.coley.recaf.workspace.JarResource;
+import me.coley.recaf.workspace.MemberTable;
 import me.coley.recaf.workspace.Workspace;
 import org.junit.jupiter.api.*;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
 
 import java.io.File;
 import java.io.IOException;
@@ -125,4 +127,57 @@ public class HierarchyGraphTest extends Base {
 		// No path between Yoda and Speech
 		assertFalse(graph.areLinked("test/Yoda", "say", "()V", "test/Speech", "say", "()V"));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testGraphTracksClassUpdates() {
+		Workspace workspace = graph.getWorkspace();
+		byte[] yoda = workspace.getPrimary().getClasses().remove("test/Yoda");
+		assertFalse(graph.getAllDescendants("test/Greetings").anyMatch("test/Yoda"::equals));
+		assertFalse(graph.areLinked("test/Person", "test/Yoda"));
+		workspace.getPrimary().getClasses().put("test/Yoda", yoda);
+		assertTrue(graph.getAllDescendants("test/Greetings").anyMatch("test/Yoda"::equals));
+		assertTrue(graph.areLinked("test/Person", "test/Yoda"));
+	}
+
+	@Test
+	public void testCommonIsCachedUntilChange() {
+		assertEquals("test/Person", graph.getCommon("test/Jedi", "test/Sith"));
+		long misses = graph.getCommonCacheMisses();
+		long hits = graph.getCommonCacheHits();
+		assertEquals("test/Person", graph.getCommon("test/Jedi", "test/Sith"));
+		assertEquals(hits + 1, graph.getCommonCacheHits());
+		assertEquals(misses, graph.getCommonCacheMisses());
+		// Changing a class invalidates cached results
+		Workspace workspace = graph.getWorkspace();
+		byte[] sith = workspace.getPrimary().getClasses().get("test/Sith");
+		workspace.getPrimary().getClasses().put("test/Sith", sith);
+		assertEquals("test/Person", graph.getCommon("test/Jedi", "test/Sith"));
+		assertEquals(misses + 1, graph.getCommonCacheMisses());
+		assertTrue(graph.isAncestor("test/Greetings", "test/Yoda"));
+		assertFalse(graph.isAncestor("test/Yoda", "test/Greetings"));
+	}
+
+	@Test
+	public void testMemberTableResolvesInheritedMembers() {
+		Workspace workspace = graph.getWorkspace();
+		MemberTable table = workspace.getMemberTable();
+		assertEquals(Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT,
+				table.getClassAccess("test/Greetings"));
+		assertEquals(Opcodes.ACC_PROTECTED,
+				table.getAccess("test/Yoda", "ability", "(Ljava/lang/String;Ljava/lang/String;)V"));
+		assertEquals(MemberTable.NOT_FOUND, table.getAccess("test/Yoda", "missing", "()V"));
+		assertEquals(Arrays.asList("test/Yoda", "test/Jedi", "test/Person", "test/Greetings"),
+				table.getDeclaringClasses("test/Yoda", "say", "()V"));
+		assertEquals(Arrays.asList("test/Absolutes", "test/Deal"),
+				table.getDeclaringClasses("test/Sith", "deal", "()V"));
+		// Fields may be looked up without a descriptor
+		assertEquals(Collections.singletonList("test/Person"),
+				table.getDeclaringClasses("test/Jedi", "abilities", null));
+		// Changing a class invalidates memoized lookups
+		byte[] jedi = workspace.getPrimary().getClasses().remove("test/Jedi");
+		assertEquals(Collections.singletonList("test/Yoda"), table.getDeclaringClasses("test/Yoda", "say", "()V"));
+		workspace.getPrimary().getClasses().put("test/Jedi", jedi);
+		assertEquals(Arrays.asList("test/Yoda", "test/Jedi", "test/Person", "test/Greetings"),
+				table.getDeclaringClasses("test/Yoda", "say", "()V"));
+	}
+}
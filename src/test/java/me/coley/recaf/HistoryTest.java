@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -116,4 +117,47 @@ public class HistoryTest extends Base {
 		assertArrayEquals(DUMMY, resource.getFileHistory(key).pop());
 		assertArrayEquals(initial, resource.getFileHistory(key).pop());
 	}
+
+	@Test
+	public void testClassRollbackThroughCompactedStates(){
+		String key = "Start";
+		byte[] initial = resource.getClassHistory(key).peek();
+		byte[][] states = new byte[5][];
+		for (int i = 0; i < states.length; i++) {
+			states[i] = new byte[1024];
+			Arrays.fill(states[i], (byte) i);
+			resource.getClasses().put(key, states[i]);
+			resource.createClassSave(key);
+		}
+		// Older states are stored compressed, but should be restored exactly
+		for (int i = states.length - 1; i >= 0; i--) {
+			assertArrayEquals(states[i], resource.getClassHistory(key).peek());
+			assertArrayEquals(states[i], resource.getClassHistory(key).pop());
+			assertArrayEquals(states[i], resource.getClasses().get(key));
+		}
+		assertArrayEquals(initial, resource.getClassHistory(key).pop());
+		assertTrue(resource.getClassHistory(key).isAtInitial());
+	}
+
+	@Test
+	public void testCloseHistoryDropsStates(){
+		String key = "Start";
+		for (int i = 0; i < 3; i++) {
+			resource.getClasses().put(key, DUMMY);
+			resource.createClassSave(key);
+		}
+		resource.closeHistory();
+		assertTrue(resource.getClassHistory().isEmpty());
+		assertTrue(resource.getFileHistory().isEmpty());
+		// Saves made after closing use new storage
+		byte[] current = resource.getClasses().get(key);
+		resource.createClassSave(key);
+		resource.getClasses().put(key, DUMMY);
+		resource.createClassSave(key);
+		resource.getClasses().put(key, new byte[] { 5 });
+		resource.createClassSave(key);
+		assertArrayEquals(new byte[] { 5 }, resource.getClassHistory(key).pop());
+		assertArrayEquals(DUMMY, resource.getClassHistory(key).pop());
+		assertArrayEquals(current, resource.getClassHistory(key).pop());
+	}
 }
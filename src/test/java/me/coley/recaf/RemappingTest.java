@@ -7,14 +7,22 @@ import me.coley.recaf.workspace.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.objectweb.asm.ClassReader.*;
+import static org.objectweb.asm.Opcodes.*;
 
 /**
  * Remapping tests.
@@ -168,6 +176,132 @@ public class RemappingTest extends Base {
 		}
 	}
 
+	@Test
+	public void testMappingTable() {
+		try {
+			Mappings mappings = MappingImpl.SIMPLE.create(methodMapFile, workspace);
+			MappingTable table = mappings.getMappingTable();
+			assertEquals("rename/Hello", table.mapClass("test/Greetings"));
+			assertEquals("speak", table.mapMethod("test/Greetings", "say", "()V"));
+			assertNull(table.mapMethod("test/Greetings", "say", "(I)V"));
+			assertNull(table.mapField("test/Greetings", "say", null));
+			assertTrue(table.hasMethod("say"));
+			assertFalse(table.hasField("say"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testMappingTableRebuildsMappings() {
+		Map<String, String> map = new HashMap<>();
+		map.put("a/A", "b/B");
+		map.put("a/A.f", "g");
+		map.put("a/A.f I", "h");
+		map.put("a/A.m()V", "n");
+		map.put("a/A.<init>()V", "o");
+		map.put("c/C.m(La/A;)V", "n");
+		assertEquals(map, new MappingTable(map).getMappings());
+	}
+
+	@Test
+	public void testParallelMatchesSerial() {
+		try {
+			JavaResource serialResource = new JarResource(getClasspathFile("inherit.jar"));
+			Workspace serialWorkspace = new Workspace(serialResource);
+			Mappings serial = MappingImpl.SIMPLE.create(methodMapFile, serialWorkspace);
+			serial.setThreads(1);
+			Map<String, byte[]> serialUpdated = serial.accept(serialResource);
+			Mappings parallel = MappingImpl.SIMPLE.create(methodMapFile, workspace);
+			parallel.setThreads(4);
+			Map<String, byte[]> parallelUpdated = parallel.accept(resource);
+			// Same classes updated, with the same output
+			assertEquals(serialUpdated.keySet(), parallelUpdated.keySet());
+			serialUpdated.forEach((name, value) -> assertArrayEquals(value, parallelUpdated.get(name)));
+			assertEquals(serialResource.getClasses().keySet(), resource.getClasses().keySet());
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testIncrementalMatchesFullWithHierarchy() {
+		// B inherits foo and value from A, C references them through B, and D overrides foo
+		Map<String, byte[]> classes = new HashMap<>();
+		classes.put("test/A", generateClass("test/A", "java/lang/Object", cw -> {
+			cw.visitField(ACC_PUBLIC, "value", "I", null, null).visitEnd();
+			generateMethod(cw, "foo", mv -> {});
+		}));
+		classes.put("test/B", generateClass("test/B", "test/A", cw -> {}));
+		classes.put("test/C", generateClass("test/C", "java/lang/Object",
+				cw -> generateMethod(cw, "run", callFoo("test/B").andThen(mv -> {
+					mv.visitTypeInsn(NEW, "test/B");
+					mv.visitInsn(DUP);
+					mv.visitMethodInsn(INVOKESPECIAL, "test/B", "<init>", "()V", false);
+					mv.visitFieldInsn(GETFIELD, "test/B", "value", "I");
+					mv.visitInsn(POP);
+				}))));
+		classes.put("test/D", generateClass("test/D", "test/B", cw -> generateMethod(cw, "foo", mv -> {})));
+		classes.put("test/E", generateClass("test/E", "java/lang/Object", cw -> generateMethod(cw, "run", mv -> {})));
+		Map<String, String> map = new HashMap<>();
+		map.put("test/A.foo()V", "bar");
+		map.put("test/A.value", "amount");
+		Map<String, byte[]> updated = assertIncrementalMatchesFull(classes, map, mappings -> {
+			mappings.setCheckMethodHierarchy(true);
+			mappings.setCheckFieldHierarchy(true);
+		});
+		assertEquals(new HashSet<>(Arrays.asList("test/A", "test/C", "test/D")), updated.keySet());
+		List<MethodInsnNode> calls = getCalls(updated.get("test/C"));
+		assertEquals("bar", calls.get(0).name);
+		assertEquals(Collections.singletonList("bar"), getMethods(updated.get("test/D")));
+	}
+
+	@Test
+	public void testIncrementalMatchesFullWithWonkyInnerClass() {
+		// Inner class "a" of Outer does not follow the "outer$inner" pattern, and User only mentions "a"
+		Map<String, byte[]> classes = new HashMap<>();
+		classes.put("test/Outer", generateClass("test/Outer", "java/lang/Object",
+				cw -> cw.visitInnerClass("test/a", "test/Outer", "a", ACC_PUBLIC | ACC_STATIC)));
+		classes.put("test/a", generateClass("test/a", "java/lang/Object",
+				cw -> cw.visitInnerClass("test/a", "test/Outer", "a", ACC_PUBLIC | ACC_STATIC)));
+		classes.put("test/User", generateClass("test/User", "java/lang/Object", cw -> generateMethod(cw, "run",
+				mv -> {
+					mv.visitTypeInsn(NEW, "test/a");
+					mv.visitInsn(POP);
+				})));
+		classes.put("test/Other", generateClass("test/Other", "java/lang/Object", cw -> {}));
+		Map<String, String> map = new HashMap<>();
+		map.put("test/Outer", "rename/Outer");
+		Map<String, byte[]> updated = assertIncrementalMatchesFull(classes, map,
+				mappings -> mappings.setCheckWonkyOuterRelation(true));
+		assertEquals(new HashSet<>(Arrays.asList("test/Outer", "test/a", "test/User")), updated.keySet());
+		assertEquals("rename/Outera", new ClassReader(updated.get("test/a")).getClassName());
+	}
+
+	@Test
+	public void testMethodMappedOnIntermediateParent() {
+		// A declares foo, B inherits it, and the reference is made through C
+		Map<String, byte[]> classes = new HashMap<>();
+		classes.put("test/A", generateClass("test/A", "java/lang/Object", cw -> generateMethod(cw, "foo", mv -> {})));
+		classes.put("test/B", generateClass("test/B", "test/A", cw -> {}));
+		classes.put("test/C", generateClass("test/C", "test/B", cw -> {}));
+		classes.put("test/D", generateClass("test/D", "java/lang/Object",
+				cw -> generateMethod(cw, "run", callFoo("test/C"))));
+		JavaResource memory = new MemoryResource(classes);
+		Workspace memoryWorkspace = new Workspace(memory);
+		// The mapping is keyed on the class that inherits the method, not the one declaring it
+		Map<String, String> map = new HashMap<>();
+		map.put("test/B.foo()V", "bar");
+		Mappings mappings = new Mappings(memoryWorkspace);
+		mappings.setMappings(map);
+		mappings.setCheckMethodHierarchy(true);
+		Map<String, byte[]> updated = mappings.accept(memory);
+		assertTrue(updated.containsKey("test/D"));
+		assertEquals("bar", getCalls(memory.getClasses().get("test/D")).get(0).name);
+		// Mappings do not apply to the parents of their owner
+		assertEquals("foo", getMethods(memory.getClasses().get("test/A")).get(0));
+	}
+
 	@Test
 	public void testEngimaMappings() {
 		testSame(MappingImpl.ENIGMA, methodEnigmaMapFile);
@@ -217,4 +351,104 @@ public class RemappingTest extends Base {
 			fail(ex);
 		}
 	}
+
+	// ==================== UTILITIES ===================== //
+
+	private static byte[] generateClass(String name, String superName, Consumer<ClassWriter> members) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, name, null, superName, null);
+		members.accept(cw);
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Applies the mappings to two copies of the classes, one with incremental remapping.
+	 *
+	 * @param classes
+	 * 		Classes to remap.
+	 * @param map
+	 * 		Mappings to apply.
+	 * @param flags
+	 * 		Action to set the lookup flags of both mappings.
+	 *
+	 * @return Classes updated by the incremental remapping.
+	 */
+	private static Map<String, byte[]> assertIncrementalMatchesFull(Map<String, byte[]> classes,
+																	 Map<String, String> map,
+																	 Consumer<Mappings> flags) {
+		JavaResource fullResource = new MemoryResource(classes);
+		Mappings full = new Mappings(new Workspace(fullResource));
+		full.setMappings(map);
+		flags.accept(full);
+		Map<String, byte[]> fullUpdated = full.accept(fullResource);
+		JavaResource resource = new MemoryResource(classes);
+		Mappings incremental = new Mappings(new Workspace(resource));
+		incremental.setMappings(map);
+		flags.accept(incremental);
+		incremental.setIncremental(true);
+		Map<String, byte[]> original = new HashMap<>(resource.getClasses());
+		Map<String, byte[]> incrementalUpdated = incremental.accept(resource);
+		// Same classes updated, with the same output
+		assertEquals(fullUpdated.keySet(), incrementalUpdated.keySet());
+		fullUpdated.forEach((name, value) -> assertArrayEquals(value, incrementalUpdated.get(name)));
+		assertEquals(fullResource.getClasses().keySet(), resource.getClasses().keySet());
+		// Classes that are not affected are left as they are
+		original.forEach((name, value) -> {
+			if (!incrementalUpdated.containsKey(name))
+				assertSame(value, resource.getClasses().get(name));
+		});
+		return incrementalUpdated;
+	}
+
+	private static void generateMethod(ClassWriter cw, String name, Consumer<MethodVisitor> code) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, name, "()V", null, null);
+		mv.visitCode();
+		code.accept(mv);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static Consumer<MethodVisitor> callFoo(String owner) {
+		return mv -> {
+			mv.visitTypeInsn(NEW, owner);
+			mv.visitInsn(DUP);
+			mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", "()V", false);
+			mv.visitMethodInsn(INVOKEVIRTUAL, owner, "foo", "()V", false);
+		};
+	}
+
+	private static List<String> getMethods(byte[] value) {
+		ClassNode node = new ClassNode();
+		new ClassReader(value).accept(node, SKIP_CODE);
+		return node.methods.stream().map(m -> m.name).collect(Collectors.toList());
+	}
+
+	private static List<MethodInsnNode> getCalls(byte[] value) {
+		ClassNode node = new ClassNode();
+		new ClassReader(value).accept(node, 0);
+		List<MethodInsnNode> calls = new ArrayList<>();
+		for (MethodNode method : node.methods)
+			for (AbstractInsnNode insn : method.instructions)
+				if (insn.getType() == AbstractInsnNode.METHOD_INSN && !"<init>".equals(((MethodInsnNode) insn).name))
+					calls.add((MethodInsnNode) insn);
+		return calls;
+	}
+
+	/**
+	 * Resource of classes generated by the test.
+	 */
+	private static class MemoryResource extends EmptyResource {
+		private final Map<String, byte[]> classes;
+
+		private MemoryResource(Map<String, byte[]> classes) {
+			this.classes = classes;
+		}
+
+		@Override
+		protected Map<String, byte[]> loadClasses() {
+			return new HashMap<>(classes);
+		}
+	}
 }
@@ -2,15 +2,22 @@ package me.coley.recaf;
 
 import me.coley.recaf.workspace.*;
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
 
 /**
  * Tests for using {@link JavaResource} implementations.
@@ -32,6 +39,138 @@ public class ResourceInputTest extends Base {
 		}
 	}
 
+	@Test
+	public void testParallelJarMatchesSerial() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			JarResource serial = new JarResource(file);
+			JarResource parallel = new JarResource(file);
+			parallel.setParallelLoad(true);
+			assertEquals(CLASSES_IN_CALC_JAR, parallel.getClasses().size());
+			assertEquals(serial.getClasses().keySet(), parallel.getClasses().keySet());
+			for (String name : serial.getClasses().keySet())
+				assertArrayEquals(serial.getClasses().get(name), parallel.getClasses().get(name));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testParallelJarWithDuplicateEntriesMatchesSerial() {
+		try {
+			// Two entries of the same name, with different classes
+			Map<String, byte[]> entries = new LinkedHashMap<>();
+			entries.put("dup/A.class", generateClass("dup/A"));
+			entries.put("dup/B.class", generateClass("dup/B"));
+			Path file = writeJar(entries);
+			byte[] data = Files.readAllBytes(file);
+			replaceAll(data, "dup/B.class", "dup/A.class");
+			Files.write(file, data);
+			JarResource serial = new JarResource(file);
+			JarResource parallel = new JarResource(file);
+			parallel.setParallelLoad(true);
+			assertEquals(2, serial.getClasses().size());
+			assertEquals(serial.getClasses().keySet(), parallel.getClasses().keySet());
+			for (String name : serial.getClasses().keySet())
+				assertArrayEquals(serial.getClasses().get(name), parallel.getClasses().get(name));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testMappedJarMatchesSerial() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			JarResource serial = new JarResource(file);
+			JarResource mapped = new JarResource(file);
+			mapped.setMappedLoad(true);
+			assertEquals(CLASSES_IN_CALC_JAR, mapped.getClasses().size());
+			assertEquals(serial.getClasses().keySet(), mapped.getClasses().keySet());
+			for (String name : serial.getClasses().keySet())
+				assertArrayEquals(serial.getClasses().get(name), mapped.getClasses().get(name));
+			assertEquals(serial.getFiles().keySet(), mapped.getFiles().keySet());
+			for (String name : serial.getFiles().keySet())
+				assertArrayEquals(serial.getFiles().get(name), mapped.getFiles().get(name));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testFailedMappedReadDoesNotLoadEntriesTwice() {
+		try {
+			Map<String, byte[]> entries = new LinkedHashMap<>();
+			entries.put("bad/A.class", generateClass("bad/A"));
+			entries.put("bad/B.class", generateClass("bad/B"));
+			Path file = writeJar(entries);
+			// Invalid deflate block type at the start of the second entry's content
+			byte[] data = Files.readAllBytes(file);
+			data[getLocalDataOffset(data, "bad/B.class")] = (byte) 0xFF;
+			Files.write(file, data);
+			List<String> loaded = new ArrayList<>();
+			JarResource resource = new JarResource(file);
+			resource.setMappedLoad(true);
+			resource.setEntryLoader(new EntryLoader() {
+				@Override
+				public boolean onClass(String entryName, byte[] value) {
+					loaded.add(entryName);
+					return super.onClass(entryName, value);
+				}
+			});
+			// The mapped reader fails before giving anything to the loader, then the stream reader
+			// loads the entries before the bad one
+			assertEquals(Collections.singleton("bad/A"), resource.getClasses().keySet());
+			assertEquals(Collections.singletonList("bad/A.class"), loaded);
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testLazyJarMatchesSerial() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			JarResource serial = new JarResource(file);
+			// Tiny cache budget so that classes are evicted and re-read
+			JarResource lazy = new JarResource(file) {
+				@Override
+				protected long getLazyCacheSize() {
+					return 1;
+				}
+			};
+			lazy.setLazyLoad(true);
+			assertEquals(CLASSES_IN_CALC_JAR, lazy.getClasses().size());
+			assertEquals(serial.getClasses().keySet(), lazy.getClasses().keySet());
+			for (int i = 0; i < 2; i++)
+				for (String name : serial.getClasses().keySet())
+					assertArrayEquals(serial.getClasses().get(name), lazy.getClasses().get(name));
+			assertFalse(lazy.getClasses().containsKey("calc/Missing"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testLazyJarUsesDeclaredClassNames() {
+		try {
+			// Entries not named after their class, or without the class extension
+			Map<String, byte[]> entries = new LinkedHashMap<>();
+			entries.put("lazy/Wrong.class", generateClass("lazy/Right"));
+			entries.put("lazy/NoExtension", generateClass("lazy/NoExtension"));
+			Path file = writeJar(entries);
+			JarResource serial = new JarResource(file);
+			JarResource lazy = new JarResource(file);
+			lazy.setLazyLoad(true);
+			assertEquals(2, lazy.getClasses().size());
+			assertEquals(serial.getClasses().keySet(), lazy.getClasses().keySet());
+			for (String name : serial.getClasses().keySet())
+				assertArrayEquals(serial.getClasses().get(name), lazy.getClasses().get(name));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
 	@Test
 	public void testJarResourcesDoNotContainClasses() {
 		try {
@@ -122,4 +261,53 @@ public class ResourceInputTest extends Base {
 	public void testMavenDoesNotExist() {
 		assertThrows(IOException.class, () -> new MavenResource("does","not","exist"));
 	}
+
+	// ==================== UTILITIES ===================== //
+
+	private static byte[] generateClass(String name) {
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, name, null, "java/lang/Object", null);
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static Path writeJar(Map<String, byte[]> entries) throws IOException {
+		Path path = Files.createTempFile("recaf-test", ".jar");
+		path.toFile().deleteOnExit();
+		try (OutputStream os = Files.newOutputStream(path); JarOutputStream jos = new JarOutputStream(os)) {
+			for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+				jos.putNextEntry(new JarEntry(e.getKey()));
+				jos.write(e.getValue());
+				jos.closeEntry();
+			}
+		}
+		return path;
+	}
+
+	private static int getLocalDataOffset(byte[] data, String name) {
+		// The first occurrence of the name is in the local header, which is 30 bytes before it
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		outer:
+		for (int i = 30; i + bytes.length <= data.length; i++) {
+			for (int j = 0; j < bytes.length; j++)
+				if (data[i + j] != bytes[j])
+					continue outer;
+			int extraLength = (data[i - 2] & 0xFF) | (data[i - 1] & 0xFF) << 8;
+			return i + bytes.length + extraLength;
+		}
+		throw new IllegalStateException("No entry: " + name);
+	}
+
+	private static void replaceAll(byte[] data, String text, String replacement) {
+		// Same length replacement of names in both the local headers and the central directory
+		byte[] from = text.getBytes(StandardCharsets.UTF_8);
+		byte[] to = replacement.getBytes(StandardCharsets.UTF_8);
+		outer:
+		for (int i = 0; i + from.length <= data.length; i++) {
+			for (int j = 0; j < from.length; j++)
+				if (data[i + j] != from[j])
+					continue outer;
+			System.arraycopy(to, 0, data, i, to.length);
+		}
+	}
 }
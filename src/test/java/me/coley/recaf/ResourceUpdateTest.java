@@ -1,5 +1,6 @@
 package me.coley.recaf;
 
+import me.coley.recaf.util.struct.BulkBiConsumer;
 import me.coley.recaf.workspace.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -7,7 +8,7 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.util.*;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Tests the listening map used in {@link me.coley.recaf.workspace.JavaResource}.
@@ -89,6 +90,25 @@ public class ResourceUpdateTest extends Base {
 		assertTrue(resource.getDirtyFiles().contains(valueToPut2));
 	}
 
+	@Test
+	public void testClassPutAllNotifiesBulkListenersOnce() {
+		Map<String, byte[]> map = new HashMap<>();
+		for (int i = 0; i < 100; i++)
+			map.put("Test" + i, new byte[0]);
+		// Record individual and bulk notifications
+		List<String> putted = new ArrayList<>();
+		List<Map<String, byte[]>> bulk = new ArrayList<>();
+		resource.getClasses().getPutListeners().add(BulkBiConsumer.of((name, code) -> putted.add(name), bulk::add));
+		// Put values in map through a transaction
+		resource.getClasses().transaction(tx -> tx.putAll(map));
+		// Assert a single coalesced event was fired
+		assertTrue(putted.isEmpty());
+		assertEquals(1, bulk.size());
+		assertEquals(map.keySet(), bulk.get(0).keySet());
+		assertEquals(map.keySet(), resource.getDirtyClasses());
+		assertEquals(map.keySet(), resource.getClasses().keySet());
+	}
+
 	@Test
 	public void testClassRemove() {
 		String valueToRemove = "Test";
@@ -113,6 +133,110 @@ public class ResourceUpdateTest extends Base {
 		assertTrue(removed.contains(valueToRemove));
 	}
 
+	@Test
+	public void testWorkspaceIndexTracksUpdates() {
+		JavaResource library = new DummyResource();
+		Workspace workspace = new Workspace(resource, new ArrayList<>(Collections.singletonList(library)));
+		byte[] libraryCode = new byte[1];
+		byte[] primaryCode = new byte[2];
+		// Library class is found through the index
+		library.getClasses().put("Test", libraryCode);
+		assertFalse(workspace.hasFile("Test"));
+		assertSame(library, workspace.getContainingResourceForClass("Test"));
+		// Primary resource takes priority over libraries
+		resource.getClasses().put("Test", primaryCode);
+		assertSame(primaryCode, workspace.getRawClass("Test"));
+		// Removal falls back to the next resource containing the class
+		resource.getClasses().remove("Test");
+		assertSame(libraryCode, workspace.getRawClass("Test"));
+		library.getClasses().remove("Test");
+		assertFalse(workspace.hasClass("Test"));
+		// Libraries added after the index is built are included
+		JavaResource added = new DummyResource();
+		added.getFiles().put("File", new byte[0]);
+		workspace.getLibraries().add(added);
+		assertSame(added, workspace.getContainingResourceForFile("File"));
+		assertTrue(workspace.getIndexHits() > 0);
+		assertTrue(workspace.getIndexMisses() > 0);
+	}
+
+	@Test
+	public void testWorkspaceIndexFindsReloadedAndReplacedItems() {
+		Map<String, byte[]> content = new HashMap<>();
+		JavaResource library = new DummyResource() {
+			@Override
+			protected Map<String, byte[]> loadClasses() {
+				return new HashMap<>(content);
+			}
+		};
+		Workspace workspace = new Workspace(resource, new ArrayList<>(Collections.singletonList(library)));
+		assertFalse(workspace.hasClass("Reloaded"));
+		// Reloading a resource does not notify put listeners
+		content.put("Reloaded", new byte[1]);
+		library.invalidate();
+		assertTrue(workspace.hasClass("Reloaded"));
+		assertSame(library, workspace.getContainingResourceForClass("Reloaded"));
+		// Replacing a library keeps the number of libraries the same
+		JavaResource replacement = new DummyResource();
+		replacement.getClasses().put("Replacement", new byte[1]);
+		workspace.getLibraries().set(0, replacement);
+		assertSame(replacement, workspace.getContainingResourceForClass("Replacement"));
+		assertFalse(workspace.hasClass("Reloaded"));
+	}
+
+	@Test
+	public void testWorkspaceIndexPrefersReloadedPrimary() {
+		Map<String, byte[]> content = new HashMap<>();
+		JavaResource primary = new DummyResource() {
+			@Override
+			protected Map<String, byte[]> loadClasses() {
+				return new HashMap<>(content);
+			}
+		};
+		JavaResource library = new DummyResource();
+		Workspace workspace = new Workspace(primary, new ArrayList<>(Collections.singletonList(library)));
+		library.getClasses().put("Shadowed", new byte[1]);
+		assertSame(library, workspace.getContainingResourceForClass("Shadowed"));
+		assertFalse(workspace.hasClass("Missing"));
+		long misses = workspace.getIndexMisses();
+		// The primary gains the class without notifying put listeners
+		content.put("Shadowed", new byte[2]);
+		primary.invalidate();
+		assertSame(primary, workspace.getContainingResourceForClass("Shadowed"));
+		// Items in no resource are answered by the index without scanning the resources
+		assertFalse(workspace.hasClass("Missing"));
+		assertEquals(misses, workspace.getIndexMisses());
+		// Items put after a miss are found
+		library.getClasses().put("Missing", new byte[1]);
+		assertSame(library, workspace.getContainingResourceForClass("Missing"));
+	}
+
+	@Test
+	public void testWorkspaceCloseRemovesListeners() {
+		JavaResource primary = new DummyResource();
+		JavaResource library = new DummyResource();
+		Workspace workspace = new Workspace(primary, new ArrayList<>(Collections.singletonList(library)));
+		int puts = primary.getClasses().getPutListeners().size();
+		int removes = primary.getClasses().getRemoveListeners().size();
+		int phantomPuts = workspace.getPhantoms().getClasses().getPutListeners().size();
+		int phantomRemoves = workspace.getPhantoms().getClasses().getRemoveListeners().size();
+		int libraryPuts = library.getClasses().getPutListeners().size();
+		workspace.getHierarchyGraph();
+		workspace.getMemberTable();
+		workspace.getReferenceIndex();
+		workspace.getStringIndex();
+		workspace.getNameIndex();
+		assertFalse(workspace.hasClass("Missing"));
+		assertFalse(workspace.hasFile("Missing"));
+		assertNotEquals(puts, primary.getClasses().getPutListeners().size());
+		workspace.close();
+		assertEquals(puts, primary.getClasses().getPutListeners().size());
+		assertEquals(removes, primary.getClasses().getRemoveListeners().size());
+		assertEquals(phantomPuts, workspace.getPhantoms().getClasses().getPutListeners().size());
+		assertEquals(phantomRemoves, workspace.getPhantoms().getClasses().getRemoveListeners().size());
+		assertEquals(libraryPuts, library.getClasses().getPutListeners().size());
+	}
+
 	/**
 	 * Empty resource that allows items to be added.
 	 */
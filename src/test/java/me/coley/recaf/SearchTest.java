@@ -281,6 +281,231 @@ public class SearchTest extends Base {
 		assertTrue(results.contains("calc/Constant"));
 	}
 
+	@Test
+	public void testParallelMatchesSerial() {
+		// Setup search - All strings, searched serially and over multiple threads
+		SearchCollector serial = SearchBuilder.in(workspace).skipDebug().parallel(1)
+				.query(new StringQuery("", CONTAINS)).build();
+		int[] progress = new int[2];
+		SearchCollector parallel = SearchBuilder.in(workspace).skipDebug().parallel(4)
+				.onProgress((done, total) -> {
+					synchronized(progress) {
+						progress[0] = Math.max(progress[0], done);
+						progress[1] = total;
+					}
+				})
+				.query(new StringQuery("", CONTAINS)).build();
+		// Results should be in the same order
+		List<String> expected = serial.getAllResults().stream()
+				.map(res -> res.getContext() + " " + res).collect(Collectors.toList());
+		List<String> actual = parallel.getAllResults().stream()
+				.map(res -> res.getContext() + " " + res).collect(Collectors.toList());
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+		assertEquals(progress[1], progress[0]);
+		assertFalse(parallel.isCancelled());
+	}
+
+	@Test
+	public void testCancelledSearch() {
+		SearchCollector collector = SearchBuilder.in(workspace).skipDebug().cancelIf(() -> true)
+				.query(new StringQuery("", CONTAINS)).build();
+		assertTrue(collector.isCancelled());
+		assertTrue(collector.getAllResults().isEmpty());
+	}
+
+	@Test
+	public void testIndexedReferenceSearchMatchesFullScan() {
+		// Setup search - References to "Expression" and calls to "evaluate", with and without the index
+		Query[] queries = {
+				new ClassReferenceQuery("calc/Expression"),
+				new MemberReferenceQuery(null, "evaluate", null, EQUALS)
+		};
+		for (Query query : queries) {
+			List<String> expected = SearchBuilder.in(workspace).indexed(false).query(query).build()
+					.getAllResults().stream()
+					.map(res -> res.getContext() + " " + res).collect(Collectors.toList());
+			List<String> actual = SearchBuilder.in(workspace).indexed(true).query(query).build()
+					.getAllResults().stream()
+					.map(res -> res.getContext() + " " + res).collect(Collectors.toList());
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, actual);
+		}
+		// Classes with results are listed by the index, others are not
+		Set<String> referencing = workspace.getReferenceIndex().getClassReferences("calc/Expression");
+		SearchBuilder.in(workspace).indexed(false).query(queries[0]).build().getAllResults()
+				.forEach(res -> assertTrue(referencing.contains(rootName(res.getContext()))));
+		assertFalse(referencing.contains("calc/MatchUtil"));
+	}
+
+	@Test
+	public void testIndexedStringSearchMatchesFullScan() {
+		// Setup search - Strings matched by each mode, with and without the index
+		Query[] queries = {
+				new StringQuery("EVAL: ", EQUALS),
+				new StringQuery("EVAL", STARTS_WITH),
+				new StringQuery("VAL", CONTAINS),
+				new StringQuery("V", CONTAINS),
+				new StringQuery("E.A", REGEX)
+		};
+		for (Query query : queries) {
+			List<String> expected = SearchBuilder.in(workspace).indexed(false).query(query).build()
+					.getAllResults().stream()
+					.map(res -> res.getContext() + " " + res).collect(Collectors.toList());
+			List<String> actual = SearchBuilder.in(workspace).indexed(true).query(query).build()
+					.getAllResults().stream()
+					.map(res -> res.getContext() + " " + res).collect(Collectors.toList());
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, actual);
+		}
+		// Strings are only listed in classes containing them
+		StringIndex index = workspace.getStringIndex();
+		assertTrue(index.getClasses("EVAL: ").contains("calc/Calculator"));
+		assertFalse(index.getClasses("EVAL: ").contains("calc/MatchUtil"));
+		assertTrue(index.getCandidates(new StringQuery("no-such-string", CONTAINS)).isEmpty());
+	}
+
+	@Test
+	public void testConstantPoolFilterMatchesFullScan() {
+		// Setup search - Queries that can be checked by constant pool, with and without the filter
+		Query[] queries = {
+				new ClassNameQuery("calc/Calc", STARTS_WITH),
+				new ClassReferenceQuery("calc/Expression"),
+				new MemberReferenceQuery("calc/MatchUtil", null, null, EQUALS),
+				new StringQuery("EVAL", STARTS_WITH)
+		};
+		for (Query query : queries) {
+			SearchCollector full = SearchBuilder.in(workspace).indexed(false).prefilter(false)
+					.query(query).build();
+			SearchCollector filtered = SearchBuilder.in(workspace).indexed(false).prefilter(true)
+					.query(query).build();
+			List<String> expected = full.getAllResults().stream()
+					.map(res -> res.getContext() + " " + res).collect(Collectors.toList());
+			List<String> actual = filtered.getAllResults().stream()
+					.map(res -> res.getContext() + " " + res).collect(Collectors.toList());
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, actual);
+			assertEquals(0, full.getPrunedCount());
+			assertTrue(filtered.getPrunedCount() > 0);
+		}
+		// Queries that cannot be checked by constant pool do not skip classes
+		SearchCollector collector = SearchBuilder.in(workspace).indexed(false)
+				.query(new ValueQuery(1)).build();
+		assertEquals(0, collector.getPrunedCount());
+	}
+
+	@Test
+	public void testNameIndexHoldsRemappableNames() {
+		NameIndex index = workspace.getNameIndex();
+		// Class names, including those in descriptors, and member names
+		assertTrue(index.getClasses("calc/Calculator").contains("calc/Calculator"));
+		assertTrue(index.getClasses("calc/Expression").contains("calc/AddAndSub"));
+		assertTrue(index.getClasses("evaluate").contains("calc/Calculator"));
+		assertTrue(index.getClasses("<init>").contains("calc/Calculator"));
+		// Attribute names, descriptors and substrings of other text are not indexed
+		assertTrue(index.getClasses("Code").isEmpty());
+		assertTrue(index.getClasses("()V").isEmpty());
+		assertTrue(index.getClasses("ength").isEmpty());
+	}
+
+	@Test
+	public void testStreamedAndLimitedResults() {
+		// Setup search - All strings, streamed to a listener
+		List<SearchResult> streamed = new ArrayList<>();
+		SearchCollector collector = SearchBuilder.in(workspace).skipDebug().parallel(4)
+				.onResult(streamed::add)
+				.query(new StringQuery("", CONTAINS)).build();
+		List<SearchResult> all = collector.getAllResults();
+		assertTrue(all.size() > 3);
+		assertEquals(all, streamed);
+		assertFalse(collector.isLimitReached());
+		// Limited searches hold the first results of a full search
+		for (int threads : new int[] { 1, 4 }) {
+			SearchCollector limited = SearchBuilder.in(workspace).skipDebug().parallel(threads).limit(3)
+					.query(new StringQuery("", CONTAINS)).build();
+			assertTrue(limited.isLimitReached());
+			assertEquals(all.subList(0, 3).stream().map(res -> res.getContext() + " " + res)
+							.collect(Collectors.toList()),
+					limited.getAllResults().stream().map(res -> res.getContext() + " " + res)
+							.collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void testInsnText() {
+		// Setup search - The "EVAL: " string being loaded in Calculator.evaluate(int, String)
+		Query query = new InsnTextQuery(Collections.singletonList("LDC \"EVAL"), STARTS_WITH);
+		List<SearchResult> results = SearchBuilder.in(workspace).skipDebug().query(query).build().getAllResults();
+		assertEquals(1, results.size());
+		contextEquals(results.get(0).getContext(), "calc/Calculator", "evaluate", "(ILjava/lang/String;)D");
+		// Searching again uses cached method code, with the same results
+		List<SearchResult> again = SearchBuilder.in(workspace).skipDebug().query(query).build().getAllResults();
+		assertEquals(results.stream().map(res -> res.getContext() + " " + res).collect(Collectors.toList()),
+				again.stream().map(res -> res.getContext() + " " + res).collect(Collectors.toList()));
+		// Bypassing the cache disassembles the methods again, with the same results
+		List<SearchResult> uncached = SearchBuilder.in(workspace).skipDebug().cacheText(false).query(query).build()
+				.getAllResults();
+		assertEquals(results.stream().map(res -> res.getContext() + " " + res).collect(Collectors.toList()),
+				uncached.stream().map(res -> res.getContext() + " " + res).collect(Collectors.toList()));
+		// No method has monitor instructions
+		assertTrue(SearchBuilder.in(workspace).skipDebug()
+				.query(new InsnTextQuery(Collections.singletonList("MONITORENTER"), EQUALS))
+				.build().getAllResults().isEmpty());
+	}
+
+	@Test
+	public void testCompiledMatchers() {
+		List<String> keys = Arrays.asList("calc/Calc", "Expression", "Exp", "ator");
+		List<String> texts = Arrays.asList("calc/Calculator", "calc/Expression", "calc/Exponent",
+				"Exp", "ator", "", "java/lang/String");
+		for (StringMatchMode mode : StringMatchMode.values()) {
+			StringMatcher any = mode.compile(keys);
+			for (String text : texts) {
+				boolean expected = false;
+				for (String key : keys) {
+					assertEquals(mode.match(key, text), mode.compile(key).matches(text));
+					expected |= mode.match(key, text);
+				}
+				assertEquals(expected, any.matches(text), mode + " " + text);
+			}
+		}
+	}
+
+	@Test
+	public void testBatchMatchesSeparateSearches() {
+		// Setup batch - Queries with different read flags, searched together
+		Query name = new ClassNameQuery("calc/", STARTS_WITH);
+		Query cref = new ClassReferenceQuery("calc/Expression");
+		Query text = new StringQuery("EVAL", STARTS_WITH);
+		Query code = new InsnTextQuery(Collections.singletonList("LDC \"EVAL"), STARTS_WITH);
+		List<BatchSearch.QueryResults> batch = BatchSearch.in(workspace)
+				.query("name", name).query("cref", cref).query("text", text).query("code", code).search();
+		assertEquals(Arrays.asList("name", "cref", "text", "code"),
+				batch.stream().map(BatchSearch.QueryResults::getLabel).collect(Collectors.toList()));
+		// Code text needs debug info skipped, class references do not
+		assertEquals(0, batch.get(0).getPass());
+		assertEquals(1, batch.get(3).getPass());
+		// Each query has the same results as a search of its own
+		List<List<SearchResult>> separate = Arrays.asList(
+				SearchBuilder.in(workspace).skipDebug().skipCode().query(name).build().getAllResults(),
+				SearchBuilder.in(workspace).query(cref).build().getAllResults(),
+				SearchBuilder.in(workspace).skipDebug().query(text).build().getAllResults(),
+				SearchBuilder.in(workspace).skipDebug().query(code).build().getAllResults());
+		for (int i = 0; i < separate.size(); i++) {
+			assertFalse(separate.get(i).isEmpty());
+			assertEquals(separate.get(i).stream().map(res -> res.getContext() + " " + res)
+							.collect(Collectors.toList()),
+					batch.get(i).getResults().stream().map(res -> res.getContext() + " " + res)
+							.collect(Collectors.toList()));
+		}
+	}
+
+	private static String rootName(Context<?> context) {
+		while (context.getParent() != null)
+			context = context.getParent();
+		return ((Context.ClassContext) context).getName();
+	}
+
 	private static void contextEquals(Context<?> context, String owner, String name, String desc) {
 		assertTrue(context instanceof Context.MemberContext);
 		Context.MemberContext member = (Context.MemberContext) context;
@@ -2,6 +2,7 @@ package me.coley.recaf.mapping;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -76,4 +77,20 @@ public class AsmMappingUtilsTest {
         assertEquals("MAX_DEPTH_LEVEL", aggregateMapping.get("calc/Calculator.MAX_DEPTH"));
         assertEquals("doEvaluate", aggregateMapping.get("calc/Calculator.evaluate(ILjava/lang/String;)D"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAggregateMappingsAcrossRenames() {
+        AggregateMappings aggregate = new AggregateMappings();
+        aggregate.apply(Collections.singletonMap("calc/Calculator", "renamed/MyCalc"));
+        aggregate.apply(Collections.singletonMap("renamed/MyCalc.MAX_DEPTH", "MAX_DEPTH_LEVEL"));
+        aggregate.apply(Collections.singletonMap("calc/Parser.parse(Lrenamed/MyCalc;)V", "read"));
+        aggregate.apply(Collections.singletonMap("renamed/MyCalc.MAX_DEPTH_LEVEL", "DEPTH"));
+        aggregate.apply(Collections.singletonMap("renamed/MyCalc", "renamed2/MyCalc2"));
+
+        Map<String, String> mappings = aggregate.getMappings();
+        assertEquals(3, mappings.size());
+        assertEquals("renamed2/MyCalc2", mappings.get("calc/Calculator"));
+        assertEquals("DEPTH", mappings.get("calc/Calculator.MAX_DEPTH"));
+        assertEquals("read", mappings.get("calc/Parser.parse(Lcalc/Calculator;)V"));
+    }
+}
@@ -0,0 +1,98 @@
+package me.coley.recaf.mapping;
+
+import me.coley.recaf.Base;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for parsing mapping files line by line.
+ *
+ * @author Matt
+ */
+public class FileMappingsTest extends Base {
+	@Test
+	public void testSimpleBlankLinesAndCrlf() {
+		try {
+			String text = "a/A b/B\n\na/A.f g\n  \na/A.m()V g\n\n";
+			Map<String, String> expected = new HashMap<>();
+			expected.put("a/A", "b/B");
+			expected.put("a/A.f", "g");
+			expected.put("a/A.m()V", "g");
+			assertEquals(expected, parse(MappingImpl.SIMPLE, text));
+			Map<String, String> mappings = parse(MappingImpl.SIMPLE, crlf(text));
+			assertEquals(expected, mappings);
+			// Repeated names share one instance
+			assertSame(mappings.get("a/A.f"), mappings.get("a/A.m()V"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testTsrgBlankLinesAndCrlf() {
+		try {
+			String text = "a/A b/B\n\n\tf g\n\n\tm ()V n\n\n";
+			Map<String, String> expected = new HashMap<>();
+			expected.put("a/A", "b/B");
+			expected.put("a/A.f", "g");
+			expected.put("a/A.m()V", "n");
+			assertEquals(expected, parse(MappingImpl.TSRG, text));
+			assertEquals(expected, parse(MappingImpl.TSRG, crlf(text)));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testProguardForwardReferences() {
+		try {
+			// Descriptors refer to a class that is only named further down in the file
+			String text = "com.Clean -> a:\n" +
+					"    com.Other field -> b\n" +
+					"    void run(com.Other,int) -> c\n" +
+					"    com.Other get() -> d\n" +
+					"    1:2:void <init>() -> <init>\n" +
+					"\n" +
+					"com.Other -> e:\n" +
+					"    int value -> f\n" +
+					"    com.Clean self(com.Other) -> g\n" +
+					"\n";
+			Map<String, String> expected = new HashMap<>();
+			expected.put("a", "com/Clean");
+			expected.put("e", "com/Other");
+			expected.put("a.b", "field");
+			expected.put("a.c(Le;I)V", "run");
+			expected.put("a.d()Le;", "get");
+			expected.put("e.f", "value");
+			expected.put("e.g(Le;)La;", "self");
+			assertEquals(expected, parse(MappingImpl.PROGUARD, text));
+			assertEquals(expected, parse(MappingImpl.PROGUARD, crlf(text)));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	// ==================== UTILITIES ===================== //
+
+	private static String crlf(String text) {
+		return text.replace("\n", "\r\n");
+	}
+
+	private static Map<String, String> parse(MappingImpl impl, String text) throws IOException {
+		Path path = Files.createTempFile("recaf-mappings", ".txt");
+		try {
+			Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+			return impl.create(path, null).getMappings();
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.Base;
+import me.coley.recaf.Recaf;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for persistent snapshots of archive content.
+ *
+ * @author Matt
+ */
+public class ArchiveSnapshotTest extends Base {
+	private static final String KEY = "key";
+	private Path directory;
+	private Path archive;
+
+	@BeforeEach
+	public void setup() {
+		try {
+			directory = Files.createTempDirectory("recaf-snapshots");
+			ArchiveSnapshot.setDirectory(directory);
+			archive = Files.createTempFile("recaf-snapshot", ".jar");
+			Files.copy(getClasspathFile("calc.jar"), archive, StandardCopyOption.REPLACE_EXISTING);
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@AfterEach
+	public void cleanup() {
+		ArchiveSnapshot.setDirectory(null);
+		FileUtils.deleteQuietly(directory.toFile());
+		FileUtils.deleteQuietly(archive.toFile());
+	}
+
+	@Test
+	public void testRoundTrip() {
+		try {
+			Map<String, byte[]> content = content();
+			ArchiveSnapshot.write(archive, KEY, "classes", content);
+			assertContent(content, ArchiveSnapshot.read(archive, KEY, "classes"));
+			// Other kinds and keys are stored separately
+			assertNull(ArchiveSnapshot.read(archive, KEY, "files"));
+			assertNull(ArchiveSnapshot.read(archive, "other", "classes"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testUnchangedArchiveHits() {
+		try {
+			Map<String, byte[]> content = content();
+			ArchiveSnapshot.write(archive, KEY, "classes", content);
+			// Same content with a different modification time is verified by its hash
+			Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+			assertContent(content, ArchiveSnapshot.read(archive, KEY, "classes"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testModifiedArchiveMisses() {
+		try {
+			ArchiveSnapshot.write(archive, KEY, "classes", content());
+			// Same size, different content
+			byte[] data = Files.readAllBytes(archive);
+			data[data.length - 1] ^= 1;
+			Files.write(archive, data);
+			Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+			assertNull(ArchiveSnapshot.read(archive, KEY, "classes"));
+			// Different size
+			ArchiveSnapshot.write(archive, KEY, "classes", content());
+			Files.write(archive, new byte[1], StandardOpenOption.APPEND);
+			assertNull(ArchiveSnapshot.read(archive, KEY, "classes"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testCorruptSnapshotIsRejected() {
+		try {
+			ArchiveSnapshot.write(archive, KEY, "classes", content());
+			Path snapshot = snapshots(".classes").get(0);
+			// Truncated
+			byte[] data = Files.readAllBytes(snapshot);
+			Files.write(snapshot, Arrays.copyOf(data, data.length / 2));
+			assertThrows(IOException.class, () -> ArchiveSnapshot.read(archive, KEY, "classes"));
+			// Not a snapshot
+			Files.write(snapshot, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+			assertNull(ArchiveSnapshot.read(archive, KEY, "classes"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testResourceUsesSnapshot() {
+		try {
+			JarResource resource = new JarResource(archive);
+			resource.setSnapshotCache(true);
+			Map<String, byte[]> content = content();
+			ArchiveSnapshot.write(archive, resource.getSnapshotKey(), "classes", content);
+			assertContent(content, resource.getClasses());
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testReadModeIsPartOfKey() {
+		try {
+			JarResource resource = new JarResource(archive);
+			resource.setSnapshotCache(true);
+			resource.setMappedLoad(false);
+			Map<String, byte[]> content = content();
+			ArchiveSnapshot.write(archive, resource.getSnapshotKey(), "classes", content);
+			// A snapshot of the stream reader is not used by the mapped reader
+			JarResource mapped = new JarResource(archive);
+			mapped.setSnapshotCache(true);
+			mapped.setMappedLoad(true);
+			assertNotEquals(resource.getSnapshotKey(), mapped.getSnapshotKey());
+			assertNull(ArchiveSnapshot.read(archive, mapped.getSnapshotKey(), "classes"));
+			assertEquals(new JarResource(archive).getClasses().keySet(), mapped.getClasses().keySet());
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testCorruptSnapshotFallsBackToNormalLoad() {
+		try {
+			Map<String, byte[]> expected = new JarResource(archive).getClasses();
+			JarResource resource = new JarResource(archive);
+			resource.setSnapshotCache(true);
+			ArchiveSnapshot.write(archive, resource.getSnapshotKey(), "classes", content());
+			Path snapshot = snapshots(".classes").get(0);
+			byte[] data = Files.readAllBytes(snapshot);
+			Files.write(snapshot, Arrays.copyOf(data, data.length - 1));
+			assertContent(expected, resource.getClasses());
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testPrune() {
+		try {
+			ArchiveSnapshot.write(archive, KEY, "classes", content());
+			ArchiveSnapshot.write(archive, KEY, "files", content());
+			Path current = snapshots(".classes").get(0);
+			Path unused = snapshots(".files").get(0);
+			long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(60);
+			Files.setLastModifiedTime(unused, FileTime.fromMillis(old));
+			// Written by another version of Recaf
+			Path otherVersion = directory.resolve("other.classes");
+			try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(otherVersion))) {
+				out.write(Files.readAllBytes(current), 0, 8);
+				out.writeUTF(Recaf.VERSION + "-old");
+			}
+			Path corrupt = Files.write(directory.resolve("corrupt.classes"), new byte[3]);
+			Path temp = Files.write(directory.resolve("snapshot1.tmp"), new byte[3]);
+			Files.setLastModifiedTime(temp, FileTime.fromMillis(old));
+			assertEquals(4, ArchiveSnapshot.prune(directory));
+			assertTrue(Files.exists(current));
+			assertFalse(Files.exists(unused));
+			assertFalse(Files.exists(otherVersion));
+			assertFalse(Files.exists(corrupt));
+			assertFalse(Files.exists(temp));
+			assertNotNull(ArchiveSnapshot.read(archive, KEY, "classes"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	// ==================== UTILITIES ===================== //
+
+	private static Map<String, byte[]> content() {
+		Map<String, byte[]> content = new HashMap<>();
+		content.put("First", new byte[] { 1, 2, 3 });
+		content.put("pkg/Second", new byte[0]);
+		content.put("pkg/Third", new byte[1000]);
+		return content;
+	}
+
+	private List<Path> snapshots(String suffix) throws IOException {
+		try (Stream<Path> stream = Files.list(directory)) {
+			return stream.filter(p -> p.getFileName().toString().endsWith(suffix)).collect(Collectors.toList());
+		}
+	}
+
+	private static void assertContent(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+		assertNotNull(actual);
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, byte[]> e : expected.entrySet())
+			assertArrayEquals(e.getValue(), actual.get(e.getKey()), e.getKey());
+	}
+}